@@ -1,5 +1,9 @@
 package ch.uzh.csg.reimbursement.application.archive;
 
+import static java.util.Calendar.MONTH;
+
+import java.util.Calendar;
+import java.util.GregorianCalendar;
 import java.util.List;
 
 import org.slf4j.Logger;
@@ -10,8 +14,9 @@ import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
-import ch.uzh.csg.reimbursement.model.Expense;
-import ch.uzh.csg.reimbursement.service.ExpenseService;
+import ch.uzh.csg.reimbursement.model.Document;
+import ch.uzh.csg.reimbursement.repository.ExpenseItemRepositoryProvider;
+import ch.uzh.csg.reimbursement.repository.ExpenseRepositoryProvider;
 
 @Service
 @Transactional
@@ -20,20 +25,46 @@ public class ExpenseArchivist {
 	private static final Logger LOG = LoggerFactory.getLogger(ExpenseArchivist.class);
 
 	@Autowired
-	private ExpenseService expenseService;
+	private ExpenseRepositoryProvider expenseRepository;
+
+	@Autowired
+	private ExpenseItemRepositoryProvider expenseItemRepository;
 
 	@Value("${reimbursement.token.guest.expirationInMonths}")
 	private int guestTokenExpirationInMonths;
 
+	@Value("${reimbursement.archive.coldStorage.enabled}")
+	private boolean coldStorageEnabled;
+
+	@Value("${reimbursement.archive.coldStorage.batchSize}")
+	private int coldStorageBatchSize;
+
 	@Scheduled(fixedRateString = "${reimbursement.archive.archivePrintedExpenses.intervalInMilliseconds}")
 	public void archivePrintedExpenses() {
-		List<Expense> printedExpenses = expenseService.getPrintedExpenses();
-		for (Expense expense : printedExpenses) {
-			// The expenses can be archived as soon as the guestToken will be deleted
-			if (expense.canBeArchived(guestTokenExpirationInMonths)) {
-				expense.goToNextState();
-				LOG.debug("An expense from user " + expense.getUserUid() + " has been archived.");
-			}
+		// The expenses can be archived as soon as the guestToken will be deleted
+		Calendar dateBefore = new GregorianCalendar();
+		dateBefore.add(MONTH, -guestTokenExpirationInMonths);
+
+		int archived = expenseRepository.archivePrintedBefore(dateBefore.getTime());
+		LOG.info(archived + " printed expenses have been archived.");
+
+		if (coldStorageEnabled) {
+			moveDocumentsToColdStorage();
+		}
+	}
+
+	// The documents of archived expenses are compressed in batches, whatever
+	// is left over is moved by the next run
+	private void moveDocumentsToColdStorage() {
+		List<Document> documents = expenseRepository.findArchivedPdfsNotInColdStorage(coldStorageBatchSize);
+		int remaining = coldStorageBatchSize - documents.size();
+		if (remaining > 0) {
+			documents.addAll(expenseItemRepository.findArchivedAttachmentsNotInColdStorage(remaining));
+		}
+
+		for (Document document : documents) {
+			document.moveToColdStorage();
 		}
+		LOG.info(documents.size() + " documents of archived expenses have been moved to the cold storage.");
 	}
 }
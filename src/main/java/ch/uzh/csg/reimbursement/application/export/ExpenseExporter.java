@@ -0,0 +1,260 @@
+package ch.uzh.csg.reimbursement.application.export;
+
+import static ch.uzh.csg.reimbursement.application.export.ExportFormat.JSON;
+import static ch.uzh.csg.reimbursement.repository.ExpenseExportRepository.ACCOUNTING;
+import static ch.uzh.csg.reimbursement.repository.ExpenseExportRepository.ACCOUNT_NUMBER;
+import static ch.uzh.csg.reimbursement.repository.ExpenseExportRepository.ASSIGNED_MANAGER_UID;
+import static ch.uzh.csg.reimbursement.repository.ExpenseExportRepository.CALCULATED_AMOUNT;
+import static ch.uzh.csg.reimbursement.repository.ExpenseExportRepository.COST_CATEGORY;
+import static ch.uzh.csg.reimbursement.repository.ExpenseExportRepository.CURRENCY;
+import static ch.uzh.csg.reimbursement.repository.ExpenseExportRepository.EXCHANGE_RATE;
+import static ch.uzh.csg.reimbursement.repository.ExpenseExportRepository.EXPENSE_DATE;
+import static ch.uzh.csg.reimbursement.repository.ExpenseExportRepository.EXPENSE_UID;
+import static ch.uzh.csg.reimbursement.repository.ExpenseExportRepository.EXPLANATION;
+import static ch.uzh.csg.reimbursement.repository.ExpenseExportRepository.FINANCE_ADMIN_UID;
+import static ch.uzh.csg.reimbursement.repository.ExpenseExportRepository.FIRST_NAME;
+import static ch.uzh.csg.reimbursement.repository.ExpenseExportRepository.ITEM_DATE;
+import static ch.uzh.csg.reimbursement.repository.ExpenseExportRepository.ITEM_UID;
+import static ch.uzh.csg.reimbursement.repository.ExpenseExportRepository.LAST_NAME;
+import static ch.uzh.csg.reimbursement.repository.ExpenseExportRepository.ORIGINAL_AMOUNT;
+import static ch.uzh.csg.reimbursement.repository.ExpenseExportRepository.PROJECT;
+import static ch.uzh.csg.reimbursement.repository.ExpenseExportRepository.STATE;
+import static ch.uzh.csg.reimbursement.repository.ExpenseExportRepository.USER_UID;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+import org.hibernate.ScrollableResults;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import ch.uzh.csg.reimbursement.repository.ExpenseExportRepository;
+import ch.uzh.csg.reimbursement.repository.ExpenseSearchSpecification;
+
+/*
+ * Writes the result of an expense search directly to the given stream. Only
+ * the exported columns are read with a forward-only cursor and the rows of one
+ * expense are collected before it is written, so the heap usage does not
+ * depend on the size of the result.
+ */
+@Service
+@Transactional(readOnly = true)
+public class ExpenseExporter {
+
+	private static final Logger LOG = LoggerFactory.getLogger(ExpenseExporter.class);
+
+	private static final int CHUNK_SIZE = 100;
+
+	private static final String[] CSV_HEADER = { "expenseUid", "date", "state", "accounting", "userUid",
+		"firstName", "lastName", "assignedManagerUid", "financeAdminUid", "totalAmount", "itemUid", "itemDate",
+		"accountNumber", "costCategory", "explanation", "project", "currency", "originalAmount", "exchangeRate",
+	"calculatedAmount" };
+
+	@Autowired
+	private ExpenseExportRepository exportRepository;
+
+	@Autowired
+	private ObjectMapper objectMapper;
+
+	public void export(ExpenseSearchSpecification specification, ExportFormat format, OutputStream outputStream)
+			throws IOException {
+		ExpenseWriter writer = format == JSON ? new JsonExpenseWriter(outputStream) : new CsvExpenseWriter(
+				outputStream);
+		ScrollableResults results = exportRepository.scroll(specification);
+		List<Object[]> rows = new ArrayList<Object[]>();
+		int count = 0;
+
+		try {
+			while (results.next()) {
+				Object[] row = results.get();
+
+				if (!rows.isEmpty() && !rows.get(0)[EXPENSE_UID].equals(row[EXPENSE_UID])) {
+					writer.write(rows);
+					rows.clear();
+
+					if (++count % CHUNK_SIZE == 0) {
+						writer.flush();
+					}
+				}
+				rows.add(row);
+			}
+			if (!rows.isEmpty()) {
+				writer.write(rows);
+				count++;
+			}
+			writer.close();
+		} finally {
+			results.close();
+		}
+		LOG.debug(count + " expenses have been exported as " + format + ".");
+	}
+
+	// Same as Expense.getTotalAmount, an expense without items has no amounts
+	private static double totalAmount(List<Object[]> rows) {
+		double totalAmount = 0.0;
+		for (Object[] row : rows) {
+			if (row[CALCULATED_AMOUNT] != null) {
+				totalAmount += (Double) row[CALCULATED_AMOUNT];
+			}
+		}
+		return totalAmount;
+	}
+
+	// All rows belong to the same expense, see ExpenseExportRepository
+	private interface ExpenseWriter {
+
+		void write(List<Object[]> rows) throws IOException;
+
+		void flush() throws IOException;
+
+		void close() throws IOException;
+	}
+
+	// One line per expense-item, an expense without items gets one line
+	private static class CsvExpenseWriter implements ExpenseWriter {
+
+		private final Writer writer;
+		private final SimpleDateFormat dateFormat = new SimpleDateFormat("yyyy-MM-dd");
+
+		public CsvExpenseWriter(OutputStream outputStream) throws IOException {
+			writer = new BufferedWriter(new OutputStreamWriter(outputStream, StandardCharsets.UTF_8));
+			writeLine(CSV_HEADER);
+		}
+
+		@Override
+		public void write(List<Object[]> rows) throws IOException {
+			Object[] expense = rows.get(0);
+			Object[] columns = { expense[EXPENSE_UID], format((Date) expense[EXPENSE_DATE]), expense[STATE],
+					expense[ACCOUNTING], expense[USER_UID], expense[FIRST_NAME], expense[LAST_NAME],
+					expense[ASSIGNED_MANAGER_UID], expense[FINANCE_ADMIN_UID], totalAmount(rows) };
+
+			for (Object[] item : rows) {
+				writeLine(columns, new Object[] { item[ITEM_UID], format((Date) item[ITEM_DATE]),
+						item[ACCOUNT_NUMBER], item[COST_CATEGORY], item[EXPLANATION], item[PROJECT], item[CURRENCY],
+						item[ORIGINAL_AMOUNT], item[EXCHANGE_RATE], item[CALCULATED_AMOUNT] });
+			}
+		}
+
+		@Override
+		public void flush() throws IOException {
+			writer.flush();
+		}
+
+		@Override
+		public void close() throws IOException {
+			writer.flush();
+		}
+
+		private void writeLine(Object[]... parts) throws IOException {
+			boolean first = true;
+			for (Object[] part : parts) {
+				for (Object value : part) {
+					if (!first) {
+						writer.write(',');
+					}
+					writer.write(escape(value));
+					first = false;
+				}
+			}
+			writer.write("\r\n");
+		}
+
+		private String escape(Object value) {
+			if (value == null) {
+				return "";
+			}
+			String text = value.toString();
+			if (text.indexOf(',') >= 0 || text.indexOf('"') >= 0 || text.indexOf('\n') >= 0
+					|| text.indexOf('\r') >= 0) {
+				return '"' + text.replace("\"", "\"\"") + '"';
+			}
+			return text;
+		}
+
+		private String format(Date date) {
+			return date == null ? null : dateFormat.format(date);
+		}
+	}
+
+	// A JSON array with one object per expense, the items are nested
+	private class JsonExpenseWriter implements ExpenseWriter {
+
+		private final JsonGenerator generator;
+		private final SimpleDateFormat dateFormat = new SimpleDateFormat("yyyy-MM-dd");
+
+		public JsonExpenseWriter(OutputStream outputStream) throws IOException {
+			generator = objectMapper.getFactory().createGenerator(outputStream, JsonEncoding.UTF8);
+			generator.writeStartArray();
+		}
+
+		@Override
+		public void write(List<Object[]> rows) throws IOException {
+			Object[] expense = rows.get(0);
+
+			generator.writeStartObject();
+			generator.writeStringField("uid", (String) expense[EXPENSE_UID]);
+			writeDateField("date", (Date) expense[EXPENSE_DATE]);
+			generator.writeStringField("state", expense[STATE] == null ? null : expense[STATE].toString());
+			generator.writeStringField("accounting", (String) expense[ACCOUNTING]);
+			generator.writeStringField("userUid", (String) expense[USER_UID]);
+			generator.writeStringField("firstName", (String) expense[FIRST_NAME]);
+			generator.writeStringField("lastName", (String) expense[LAST_NAME]);
+			generator.writeStringField("assignedManagerUid", (String) expense[ASSIGNED_MANAGER_UID]);
+			generator.writeStringField("financeAdminUid", (String) expense[FINANCE_ADMIN_UID]);
+			generator.writeNumberField("totalAmount", totalAmount(rows));
+
+			generator.writeArrayFieldStart("expenseItems");
+			for (Object[] item : rows) {
+				// the row of an expense without items
+				if (item[ITEM_UID] == null) {
+					continue;
+				}
+				generator.writeStartObject();
+				generator.writeStringField("uid", (String) item[ITEM_UID]);
+				writeDateField("date", (Date) item[ITEM_DATE]);
+				generator.writeNumberField("accountNumber", (Integer) item[ACCOUNT_NUMBER]);
+				generator.writeStringField("costCategory", (String) item[COST_CATEGORY]);
+				generator.writeStringField("explanation", (String) item[EXPLANATION]);
+				generator.writeStringField("project", (String) item[PROJECT]);
+				generator.writeStringField("currency", (String) item[CURRENCY]);
+				generator.writeNumberField("originalAmount", (Double) item[ORIGINAL_AMOUNT]);
+				generator.writeNumberField("exchangeRate", (Double) item[EXCHANGE_RATE]);
+				generator.writeNumberField("calculatedAmount", (Double) item[CALCULATED_AMOUNT]);
+				generator.writeEndObject();
+			}
+			generator.writeEndArray();
+
+			generator.writeEndObject();
+		}
+
+		@Override
+		public void flush() throws IOException {
+			generator.flush();
+		}
+
+		@Override
+		public void close() throws IOException {
+			generator.writeEndArray();
+			generator.flush();
+		}
+
+		private void writeDateField(String name, Date date) throws IOException {
+			generator.writeStringField(name, date == null ? null : dateFormat.format(date));
+		}
+	}
+}
@@ -0,0 +1,6 @@
+package ch.uzh.csg.reimbursement.application.export;
+
+public enum ExportFormat {
+
+	CSV, JSON;
+}
@@ -0,0 +1,95 @@
+package ch.uzh.csg.reimbursement.application.image;
+
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+
+import java.io.IOException;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeoutException;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+
+import ch.uzh.csg.reimbursement.model.exception.PdfGenerationException;
+
+/*
+ * Brings uploaded photos down to print resolution before they are embedded
+ * into a PDF. The images are scaled on a small pool of worker threads, so
+ * the number of photos decoded at the same time is bounded, no matter how
+ * many uploads are running.
+ */
+@Component
+public class ImageNormalizer {
+
+	private static final Logger LOG = LoggerFactory.getLogger(ImageNormalizer.class);
+
+	@Value("${reimbursement.image.maxWidth}")
+	private int maxWidth;
+
+	@Value("${reimbursement.image.maxHeight}")
+	private int maxHeight;
+
+	@Value("${reimbursement.image.jpegQuality}")
+	private float jpegQuality;
+
+	@Value("${reimbursement.image.workers}")
+	private int workers;
+
+	@Value("${reimbursement.image.timeoutInMilliseconds}")
+	private long timeoutInMilliseconds;
+
+	private ImageScaler scaler;
+	private ExecutorService executor;
+
+	@PostConstruct
+	public void init() {
+		scaler = new ImageScaler(maxWidth, maxHeight, jpegQuality);
+		executor = Executors.newFixedThreadPool(workers, new CustomizableThreadFactory("image-normalizer-"));
+	}
+
+	@PreDestroy
+	public void destroy() {
+		executor.shutdownNow();
+	}
+
+	/*
+	 * An image which cannot be scaled, e.g. a CMYK JPEG or a format ImageIO
+	 * does not read, is returned as it is. PDFBox or FOP may still be able to
+	 * embed it and fail on their own otherwise.
+	 */
+	public byte[] normalize(final byte[] content) {
+		Future<byte[]> result = executor.submit(new Callable<byte[]>() {
+			@Override
+			public byte[] call() throws IOException {
+				return scaler.scale(content);
+			}
+		});
+
+		try {
+			byte[] normalized = result.get(timeoutInMilliseconds, MILLISECONDS);
+			LOG.debug("Image normalized from " + content.length + " to " + normalized.length + " bytes.");
+			return normalized;
+		} catch (ExecutionException e) {
+			LOG.warn("The image could not be normalized, the original is used.", e.getCause());
+			return content;
+		} catch (TimeoutException e) {
+			result.cancel(true);
+			LOG.warn("The image could not be normalized within " + timeoutInMilliseconds
+					+ " ms, the original is used.");
+			return content;
+		} catch (InterruptedException e) {
+			result.cancel(true);
+			Thread.currentThread().interrupt();
+			throw new PdfGenerationException();
+		}
+	}
+}
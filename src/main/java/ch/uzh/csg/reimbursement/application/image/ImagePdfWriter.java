@@ -0,0 +1,70 @@
+package ch.uzh.csg.reimbursement.application.image;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+
+import javax.imageio.ImageIO;
+
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.PDPage;
+import org.apache.pdfbox.pdmodel.PDPageContentStream;
+import org.apache.pdfbox.pdmodel.common.PDRectangle;
+import org.apache.pdfbox.pdmodel.graphics.image.JPEGFactory;
+import org.apache.pdfbox.pdmodel.graphics.image.LosslessFactory;
+import org.apache.pdfbox.pdmodel.graphics.image.PDImageXObject;
+import org.springframework.stereotype.Component;
+
+/*
+ * Puts a single image on an A4 page, with the same layout as
+ * attachmentXml2fo.xsl: a margin of 1 cm and the image scaled to at most 90%
+ * of the remaining width and height, at the top left. A JPEG is embedded as
+ * it is, without being decoded, every other format is decoded and embedded
+ * lossless.
+ */
+@Component
+public class ImagePdfWriter {
+
+	private static final float MARGIN = 72 / 2.54f;
+	private static final float MAX_SHARE = 0.9f;
+
+	public byte[] write(byte[] image) throws IOException {
+		try (PDDocument document = new PDDocument()) {
+			PDImageXObject xObject = createImage(document, image);
+			PDPage page = new PDPage(PDRectangle.A4);
+			document.addPage(page);
+
+			PDRectangle mediaBox = page.getMediaBox();
+			float maxWidth = (mediaBox.getWidth() - 2 * MARGIN) * MAX_SHARE;
+			float maxHeight = (mediaBox.getHeight() - 2 * MARGIN) * MAX_SHARE;
+			float factor = Math.min(maxWidth / xObject.getWidth(), maxHeight / xObject.getHeight());
+			float width = xObject.getWidth() * factor;
+			float height = xObject.getHeight() * factor;
+
+			try (PDPageContentStream contentStream = new PDPageContentStream(document, page)) {
+				contentStream.drawImage(xObject, MARGIN, mediaBox.getHeight() - MARGIN - height, width, height);
+			}
+
+			ByteArrayOutputStream output = new ByteArrayOutputStream();
+			document.save(output);
+			return output.toByteArray();
+		}
+	}
+
+	private PDImageXObject createImage(PDDocument document, byte[] image) throws IOException {
+		if (isJpeg(image)) {
+			return JPEGFactory.createFromStream(document, new ByteArrayInputStream(image));
+		}
+
+		BufferedImage decoded = ImageIO.read(new ByteArrayInputStream(image));
+		if (decoded == null) {
+			throw new IOException("The image format is not supported.");
+		}
+		return LosslessFactory.createFromImage(document, decoded);
+	}
+
+	private boolean isJpeg(byte[] image) {
+		return image.length > 2 && (image[0] & 0xff) == 0xff && (image[1] & 0xff) == 0xd8;
+	}
+}
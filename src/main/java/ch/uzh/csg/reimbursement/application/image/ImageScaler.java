@@ -0,0 +1,107 @@
+package ch.uzh.csg.reimbursement.application.image;
+
+import static java.awt.RenderingHints.KEY_INTERPOLATION;
+import static java.awt.RenderingHints.KEY_RENDERING;
+import static java.awt.RenderingHints.VALUE_INTERPOLATION_BILINEAR;
+import static java.awt.RenderingHints.VALUE_RENDER_QUALITY;
+import static java.awt.image.BufferedImage.TYPE_INT_RGB;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Iterator;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageInputStream;
+import javax.imageio.stream.ImageOutputStream;
+
+/*
+ * Scales an image down to fit into the given bounds and encodes it as JPEG.
+ * The size is read from the header first, so an image which already fits is
+ * returned as it is without being decoded. A larger image is decoded with the
+ * biggest subsampling that still leaves it larger than the bounds, which
+ * keeps the decoded raster of a phone photo at a fraction of its full size.
+ */
+public class ImageScaler {
+
+	private final int maxWidth;
+	private final int maxHeight;
+	private final float jpegQuality;
+
+	public ImageScaler(int maxWidth, int maxHeight, float jpegQuality) {
+		this.maxWidth = maxWidth;
+		this.maxHeight = maxHeight;
+		this.jpegQuality = jpegQuality;
+	}
+
+	public byte[] scale(byte[] content) throws IOException {
+		try (ImageInputStream input = ImageIO.createImageInputStream(new ByteArrayInputStream(content))) {
+			Iterator<ImageReader> readers = ImageIO.getImageReaders(input);
+			if (!readers.hasNext()) {
+				throw new IOException("The image format is not supported.");
+			}
+
+			ImageReader reader = readers.next();
+			try {
+				reader.setInput(input, true, true);
+				int width = reader.getWidth(0);
+				int height = reader.getHeight(0);
+				if (width <= maxWidth && height <= maxHeight) {
+					return content;
+				}
+
+				double factor = Math.min((double) maxWidth / width, (double) maxHeight / height);
+				int subsampling = Math.max(1, (int) Math.floor(1 / factor));
+				ImageReadParam param = reader.getDefaultReadParam();
+				param.setSourceSubsampling(subsampling, subsampling, 0, 0);
+				BufferedImage decoded = reader.read(0, param);
+
+				int targetWidth = Math.max(1, (int) Math.round(width * factor));
+				int targetHeight = Math.max(1, (int) Math.round(height * factor));
+				return encode(resize(decoded, targetWidth, targetHeight));
+			} finally {
+				reader.dispose();
+			}
+		}
+	}
+
+	// A transparent background becomes white, JPEG has no alpha channel
+	private BufferedImage resize(BufferedImage image, int width, int height) {
+		BufferedImage resized = new BufferedImage(width, height, TYPE_INT_RGB);
+		Graphics2D graphics = resized.createGraphics();
+		try {
+			graphics.setColor(Color.WHITE);
+			graphics.fillRect(0, 0, width, height);
+			graphics.setRenderingHint(KEY_INTERPOLATION, VALUE_INTERPOLATION_BILINEAR);
+			graphics.setRenderingHint(KEY_RENDERING, VALUE_RENDER_QUALITY);
+			graphics.drawImage(image, 0, 0, width, height, null);
+		} finally {
+			graphics.dispose();
+		}
+		return resized;
+	}
+
+	private byte[] encode(BufferedImage image) throws IOException {
+		ImageWriter writer = ImageIO.getImageWritersByFormatName("jpeg").next();
+		ImageWriteParam param = writer.getDefaultWriteParam();
+		param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+		param.setCompressionQuality(jpegQuality);
+
+		ByteArrayOutputStream encoded = new ByteArrayOutputStream();
+		try (ImageOutputStream output = ImageIO.createImageOutputStream(encoded)) {
+			writer.setOutput(output);
+			writer.write(null, new IIOImage(image, null, null), param);
+		} finally {
+			writer.dispose();
+		}
+		return encoded.toByteArray();
+	}
+}
@@ -0,0 +1,102 @@
+package ch.uzh.csg.reimbursement.application.image;
+
+import static net.glxn.qrgen.core.image.ImageType.PNG;
+import static org.springframework.util.Base64Utils.encodeToString;
+
+import java.io.ByteArrayOutputStream;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import net.glxn.qrgen.javase.QRCode;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import ch.uzh.csg.reimbursement.model.Signature;
+
+/*
+ * Keeps the signatures and QR codes of the expense PDFs in the Base64 form
+ * they are embedded with. A signature is keyed by its id and crop version,
+ * so a cropped signature is encoded again and the old entry ages out. Both
+ * caches drop the least recently used entries when they are full. Signatures
+ * can be uploaded with several megabytes, so their cache is bounded by the
+ * total length of the encoded signatures instead of their number.
+ */
+@Component
+public class PdfImageCache {
+
+	// QR codes of the PDF links are a few hundred bytes
+	private static final int QR_CODE_BUFFER_SIZE = 2048;
+
+	private final LinkedHashMap<String, String> signatures = new LinkedHashMap<String, String>(16, 0.75f, true);
+	private final Map<String, String> qrCodes;
+	private final long maxSignatureLength;
+	private long signatureLength;
+
+	private final ThreadLocal<ByteArrayOutputStream> qrCodeBuffer = new ThreadLocal<ByteArrayOutputStream>() {
+		@Override
+		protected ByteArrayOutputStream initialValue() {
+			return new ByteArrayOutputStream(QR_CODE_BUFFER_SIZE);
+		}
+	};
+
+	public PdfImageCache(@Value("${reimbursement.pdf.imageCacheSize}") int cacheSize,
+			@Value("${reimbursement.pdf.signatureCacheSizeInBytes}") long maxSignatureLength) {
+		qrCodes = createLruMap(cacheSize);
+		this.maxSignatureLength = maxSignatureLength;
+	}
+
+	public String getSignature(Signature signature) {
+		String key = signature.getCacheKey();
+		String encoded;
+		synchronized (signatures) {
+			encoded = signatures.get(key);
+		}
+		if (encoded == null) {
+			encoded = encodeToString(signature.getContent());
+			putSignature(key, encoded);
+		}
+		return encoded;
+	}
+
+	public String getQrCode(String url) {
+		String encoded = qrCodes.get(url);
+		if (encoded == null) {
+			ByteArrayOutputStream buffer = qrCodeBuffer.get();
+			buffer.reset();
+			QRCode.from(url).to(PNG).writeTo(buffer);
+			encoded = encodeToString(buffer.toByteArray());
+			qrCodes.put(url, encoded);
+		}
+		return encoded;
+	}
+
+	// A signature larger than the whole cache is not kept
+	private void putSignature(String key, String encoded) {
+		if (encoded.length() > maxSignatureLength) {
+			return;
+		}
+		synchronized (signatures) {
+			String previous = signatures.put(key, encoded);
+			signatureLength += encoded.length() - (previous == null ? 0 : previous.length());
+
+			for (Iterator<String> iterator = signatures.values().iterator(); signatureLength > maxSignatureLength;) {
+				signatureLength -= iterator.next().length();
+				iterator.remove();
+			}
+		}
+	}
+
+	private static Map<String, String> createLruMap(final int maxEntries) {
+		return Collections.synchronizedMap(new LinkedHashMap<String, String>(16, 0.75f, true) {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<String, String> eldest) {
+				return size() > maxEntries;
+			}
+		});
+	}
+}
@@ -0,0 +1,83 @@
+package ch.uzh.csg.reimbursement.application.mail;
+
+import java.io.StringWriter;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import javax.annotation.PostConstruct;
+
+import org.apache.velocity.Template;
+import org.apache.velocity.app.VelocityEngine;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import ch.uzh.csg.reimbursement.model.EmailSendJob;
+
+/*
+ * Renders the email templates. Every template is parsed once and kept, a
+ * parsed template can be merged by several threads at the same time. Each
+ * thread renders into its own buffer, which is reused for the next email.
+ */
+@Component
+public class EmailTemplateRenderer {
+
+	private static final Logger LOG = LoggerFactory.getLogger(EmailTemplateRenderer.class);
+
+	private static final int INITIAL_BUFFER_SIZE = 16 * 1024;
+	private static final int MAX_BUFFER_SIZE = 256 * 1024;
+
+	@Autowired
+	private VelocityEngine velocityEngine;
+
+	@Value("${mail.defaultEmailTemplatePath}")
+	private String defaultEmailTemplatePath;
+
+	@Value("${mail.notificationEmailTemplatePath}")
+	private String notificationEmailTemplatePath;
+
+	private final ConcurrentMap<String, Template> templates = new ConcurrentHashMap<String, Template>();
+
+	private final ThreadLocal<StringWriter> buffers = new ThreadLocal<StringWriter>() {
+		@Override
+		protected StringWriter initialValue() {
+			return new StringWriter(INITIAL_BUFFER_SIZE);
+		}
+	};
+
+	// A broken template is reported at startup and not with the first email
+	@PostConstruct
+	public void init() {
+		getTemplate(defaultEmailTemplatePath);
+		getTemplate(notificationEmailTemplatePath);
+		LOG.debug(templates.size() + " email templates have been parsed.");
+	}
+
+	public String render(EmailSendJob sendJob) {
+		StringWriter writer = buffers.get();
+		writer.getBuffer().setLength(0);
+
+		getTemplate(sendJob.getTemplatePath()).merge(sendJob.getContext(), writer);
+		String body = writer.toString();
+
+		// a single huge email should not keep its buffer alive
+		if (writer.getBuffer().capacity() > MAX_BUFFER_SIZE) {
+			buffers.remove();
+		}
+		return body;
+	}
+
+	private Template getTemplate(String path) {
+		Template template = templates.get(path);
+		if (template == null) {
+			template = velocityEngine.getTemplate(path, "UTF-8");
+			Template existing = templates.putIfAbsent(path, template);
+			if (existing != null) {
+				template = existing;
+			}
+		}
+		return template;
+	}
+}
@@ -0,0 +1,178 @@
+package ch.uzh.csg.reimbursement.application.mail;
+
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import javax.annotation.PostConstruct;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import ch.uzh.csg.reimbursement.service.EmailService;
+
+/*
+ * Collects the unexpected exceptions of the requests and sends the emergency
+ * emails in the background. Exceptions with the same type and top stack
+ * frames share a fingerprint. The first occurrence of a fingerprint is sent
+ * as soon as the token bucket allows it, all repeats and the suppressed ones
+ * are counted and sent as one digest per interval.
+ */
+@Component
+public class EmergencyEmailAggregator {
+
+	private static final Logger LOG = LoggerFactory.getLogger(EmergencyEmailAggregator.class);
+
+	private static final int FINGERPRINT_FRAMES = 5;
+	private static final int MAX_FINGERPRINTS = 500;
+	private static final String OTHER_FINGERPRINT = "other";
+
+	@Autowired
+	private EmailService emailService;
+
+	@Value("${mail.emergency.burstSize}")
+	private int burstSize;
+
+	@Value("${mail.emergency.refillIntervalInMilliseconds}")
+	private long refillIntervalInMilliseconds;
+
+	private final ConcurrentMap<String, Occurrences> occurrences = new ConcurrentHashMap<String, Occurrences>();
+
+	private TokenBucket tokenBucket;
+
+	private long digestStart = System.currentTimeMillis();
+
+	@PostConstruct
+	public void init() {
+		tokenBucket = new TokenBucket(burstSize, refillIntervalInMilliseconds, System.currentTimeMillis());
+	}
+
+	// Called on the request thread, does not do any I/O
+	public void report(Exception ex) {
+		String exceptionFingerprint = fingerprint(ex);
+
+		while (true) {
+			String fingerprint = exceptionFingerprint;
+			Occurrences entry = occurrences.get(fingerprint);
+
+			if (entry == null) {
+				if (occurrences.size() >= MAX_FINGERPRINTS) {
+					fingerprint = OTHER_FINGERPRINT;
+				}
+				Occurrences created = new Occurrences(ex);
+				entry = occurrences.putIfAbsent(fingerprint, created);
+				if (entry == null) {
+					entry = created;
+				}
+			}
+			entry.increment();
+
+			// the digest may have removed the entry as quiet before it was
+			// incremented, the occurrence is counted again in a new entry
+			if (occurrences.get(fingerprint) == entry) {
+				return;
+			}
+		}
+	}
+
+	@Scheduled(fixedDelayString = "${mail.emergency.flushIntervalInMilliseconds}")
+	public void sendNewExceptions() {
+		for (Occurrences entry : occurrences.values()) {
+			if (!entry.isNotified() && tokenBucket.tryConsume(System.currentTimeMillis())) {
+				entry.notified();
+				emailService.sendEmergencyEmail(entry.getFirstException());
+			}
+		}
+	}
+
+	@Scheduled(fixedDelayString = "${mail.emergency.digestIntervalInMilliseconds}")
+	public void sendDigest() {
+		StringBuilder details = new StringBuilder();
+		long total = 0;
+		int kinds = 0;
+
+		for (Iterator<Map.Entry<String, Occurrences>> it = occurrences.entrySet().iterator(); it.hasNext();) {
+			Occurrences entry = it.next().getValue();
+			long unreported = entry.drainUnreported();
+
+			if (unreported == 0) {
+				// quiet fingerprints are forgotten, a recurrence is new again
+				it.remove();
+				continue;
+			}
+			Exception ex = entry.getFirstException();
+			details.append(unreported).append(" x ").append(ex.getClass().getName()).append(": ")
+			.append(ex.getMessage()).append('\n');
+			StackTraceElement[] stackTrace = ex.getStackTrace();
+			for (int i = 0; i < Math.min(FINGERPRINT_FRAMES, stackTrace.length); i++) {
+				details.append("\tat ").append(stackTrace[i]).append('\n');
+			}
+			details.append('\n');
+			total += unreported;
+			kinds++;
+		}
+
+		String since = new SimpleDateFormat("yyyy-MM-dd HH:mm").format(new Date(digestStart));
+		digestStart = System.currentTimeMillis();
+		if (total > 0) {
+			LOG.warn(total + " unexpected errors of " + kinds + " kinds have not been reported yet.");
+			emailService.sendEmergencyDigest(total + " unexpected errors of " + kinds + " kinds occurred since "
+					+ since + ".", details.toString());
+		}
+	}
+
+	private String fingerprint(Exception ex) {
+		StringBuilder fingerprint = new StringBuilder(ex.getClass().getName());
+		StackTraceElement[] stackTrace = ex.getStackTrace();
+		for (int i = 0; i < Math.min(FINGERPRINT_FRAMES, stackTrace.length); i++) {
+			fingerprint.append('|').append(stackTrace[i].getClassName()).append('.')
+			.append(stackTrace[i].getMethodName()).append(':').append(stackTrace[i].getLineNumber());
+		}
+		return fingerprint.toString();
+	}
+
+	// The occurrences of one fingerprint, the first exception is kept as sample
+	private static class Occurrences {
+
+		private final Exception firstException;
+		private long count;
+		private long reported;
+		private boolean notified;
+
+		public Occurrences(Exception firstException) {
+			this.firstException = firstException;
+		}
+
+		public Exception getFirstException() {
+			return firstException;
+		}
+
+		public synchronized void increment() {
+			count++;
+		}
+
+		public synchronized boolean isNotified() {
+			return notified;
+		}
+
+		// The occurrence sent by the immediate email is not repeated in the digest
+		public synchronized void notified() {
+			notified = true;
+			reported++;
+		}
+
+		public synchronized long drainUnreported() {
+			long unreported = count - reported;
+			reported = count;
+			notified = true;
+			return unreported;
+		}
+	}
+}
@@ -0,0 +1,77 @@
+package ch.uzh.csg.reimbursement.application.mail;
+
+import java.util.Date;
+import java.util.List;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import ch.uzh.csg.reimbursement.dto.EmailHeaderInfo;
+import ch.uzh.csg.reimbursement.model.MailOutboxEntry;
+import ch.uzh.csg.reimbursement.repository.MailOutboxRepositoryProvider;
+
+/*
+ * The emails are stored in the outbox within the transaction of the caller,
+ * so they are only sent if the transaction commits. Each state change of an
+ * entry is committed on its own, the sending happens between the
+ * transactions.
+ */
+@Service
+@Transactional
+public class MailOutbox {
+
+	private static final Logger LOG = LoggerFactory.getLogger(MailOutbox.class);
+
+	@Autowired
+	private MailOutboxRepositoryProvider repository;
+
+	@Value("${mail.maxSendAttempts}")
+	private int maxSendAttempts;
+
+	@Value("${mail.outbox.retryBackoffInMilliseconds}")
+	private long retryBackoffInMilliseconds;
+
+	public void enqueue(EmailHeaderInfo headerInfo, String body) {
+		repository.create(new MailOutboxEntry(headerInfo, body));
+	}
+
+	public List<MailOutboxEntry> claim(int limit) {
+		List<MailOutboxEntry> entries = repository.findDue(limit);
+		for (MailOutboxEntry entry : entries) {
+			entry.claim();
+		}
+		return entries;
+	}
+
+	public void markSent(List<Integer> ids) {
+		if (ids.isEmpty()) {
+			return;
+		}
+		for (MailOutboxEntry entry : repository.findAllByIds(ids)) {
+			entry.sent();
+		}
+	}
+
+	public void markFailed(int id, String error) {
+		MailOutboxEntry entry = repository.findOne(id);
+		if (entry != null) {
+			entry.failed(error, maxSendAttempts, retryBackoffInMilliseconds);
+		}
+	}
+
+	// Entries of a node that stopped while sending are given to the others
+	public void releaseClaimsOlderThan(long milliseconds) {
+		int released = repository.releaseClaimsBefore(new Date(System.currentTimeMillis() - milliseconds));
+		if (released > 0) {
+			LOG.warn(released + " emails have been claimed too long ago and are pending again.");
+		}
+	}
+
+	public void deleteSentOlderThan(long milliseconds) {
+		repository.deleteSentBefore(new Date(System.currentTimeMillis() - milliseconds));
+	}
+}
@@ -0,0 +1,134 @@
+package ch.uzh.csg.reimbursement.application.mail;
+
+import java.io.UnsupportedEncodingException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.mail.MessagingException;
+import javax.mail.internet.MimeMessage;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.mail.MailException;
+import org.springframework.mail.MailSendException;
+import org.springframework.mail.javamail.JavaMailSender;
+import org.springframework.mail.javamail.MimeMessageHelper;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import ch.uzh.csg.reimbursement.dto.EmailHeaderInfo;
+import ch.uzh.csg.reimbursement.model.MailOutboxEntry;
+
+/*
+ * Drains the mail outbox. The due entries are claimed in batches, every batch
+ * is sent over one SMTP connection. Failed entries are retried by a later run
+ * with an exponential backoff.
+ */
+@Component
+public class MailOutboxWorker {
+
+	private static final Logger LOG = LoggerFactory.getLogger(MailOutboxWorker.class);
+
+	@Autowired
+	private MailOutbox mailOutbox;
+
+	@Autowired
+	private JavaMailSender mailSender;
+
+	@Value("${mail.batchSize}")
+	private int mailBatchSize;
+
+	@Value("${mail.outbox.claimTimeoutInMilliseconds}")
+	private long claimTimeoutInMilliseconds;
+
+	@Value("${mail.outbox.sentRetentionInMilliseconds}")
+	private long sentRetentionInMilliseconds;
+
+	@Scheduled(fixedDelayString = "${mail.outbox.intervalInMilliseconds}")
+	public void drainOutbox() {
+		int batchSize = Math.max(1, mailBatchSize);
+		mailOutbox.releaseClaimsOlderThan(claimTimeoutInMilliseconds);
+
+		List<MailOutboxEntry> entries;
+		do {
+			entries = mailOutbox.claim(batchSize);
+			send(entries);
+		} while (entries.size() == batchSize);
+
+		mailOutbox.deleteSentOlderThan(sentRetentionInMilliseconds);
+	}
+
+	private void send(List<MailOutboxEntry> entries) {
+		if (entries.isEmpty()) {
+			return;
+		}
+
+		Map<MimeMessage, MailOutboxEntry> messages = new LinkedHashMap<MimeMessage, MailOutboxEntry>();
+		for (MailOutboxEntry entry : entries) {
+			try {
+				messages.put(createMimeMessage(entry), entry);
+			} catch (MessagingException | UnsupportedEncodingException e) {
+				mailOutbox.markFailed(entry.getId(), e.getMessage());
+			}
+		}
+		if (messages.isEmpty()) {
+			return;
+		}
+
+		try {
+			mailSender.send(messages.keySet().toArray(new MimeMessage[messages.size()]));
+		} catch (MailException e) {
+			LOG.warn("Sending a batch of " + messages.size() + " emails failed.", e);
+			markFailedMessages(e, messages);
+		}
+
+		List<Integer> sentIds = new ArrayList<Integer>();
+		for (MailOutboxEntry entry : messages.values()) {
+			sentIds.add(entry.getId());
+		}
+		mailOutbox.markSent(sentIds);
+		LOG.debug(sentIds.size() + " emails from the outbox have been sent.");
+	}
+
+	// Without information about single messages the whole batch has failed
+	private void markFailedMessages(MailException e, Map<MimeMessage, MailOutboxEntry> messages) {
+		if (e instanceof MailSendException && !((MailSendException) e).getFailedMessages().isEmpty()) {
+			for (Map.Entry<Object, Exception> failedMessage : ((MailSendException) e).getFailedMessages().entrySet()) {
+				MailOutboxEntry entry = messages.remove(failedMessage.getKey());
+				if (entry != null) {
+					mailOutbox.markFailed(entry.getId(), failedMessage.getValue().getMessage());
+				}
+			}
+		} else {
+			for (MailOutboxEntry entry : messages.values()) {
+				mailOutbox.markFailed(entry.getId(), e.getMessage());
+			}
+			messages.clear();
+		}
+	}
+
+	private MimeMessage createMimeMessage(MailOutboxEntry entry) throws MessagingException,
+	UnsupportedEncodingException {
+		MimeMessage mimeMessage = mailSender.createMimeMessage();
+		EmailHeaderInfo headerInfo = entry.getHeaderInfo();
+		MimeMessageHelper message = new MimeMessageHelper(mimeMessage);
+		message.setFrom(headerInfo.getFromEmail(), headerInfo.getFromName());
+		message.setTo(headerInfo.getToEmail());
+		if (headerInfo.isSetCcEmail()) {
+			message.setCc(headerInfo.getCcEmail());
+		}
+		if (headerInfo.isSetBccEmail()) {
+			message.setBcc(headerInfo.getBccEmail());
+		}
+		if (headerInfo.isSetReplyToEmail()) {
+			message.setReplyTo(headerInfo.getReplyToEmail());
+		}
+		message.setSubject(headerInfo.getSubject());
+		message.setText(entry.getBody(), true);
+		return mimeMessage;
+	}
+}
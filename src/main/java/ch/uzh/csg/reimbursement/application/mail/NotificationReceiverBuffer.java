@@ -0,0 +1,70 @@
+package ch.uzh.csg.reimbursement.application.mail;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import ch.uzh.csg.reimbursement.repository.EmailReceiverBatchRepository;
+
+/*
+ * Collects the users who have to be notified in memory. A user who is added
+ * several times before the next flush is written only once, all buffered
+ * users are written with one statement. The users are removed from the
+ * buffer only after the transaction which has written them is committed, so
+ * a rollback of the flush or of the surrounding email run keeps them for the
+ * next flush.
+ */
+@Component
+public class NotificationReceiverBuffer {
+
+	private static final Logger LOG = LoggerFactory.getLogger(NotificationReceiverBuffer.class);
+
+	@Autowired
+	private EmailReceiverBatchRepository batchRepository;
+
+	private final Set<String> pendingUids = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+
+	public void add(String uid) {
+		pendingUids.add(uid);
+	}
+
+	@Scheduled(fixedDelayString = "${mail.receiverBuffer.flushIntervalInMilliseconds}")
+	@Transactional
+	public void flush() {
+		List<String> uids = new ArrayList<String>(pendingUids);
+		if (uids.isEmpty()) {
+			return;
+		}
+
+		// a stable order keeps concurrent flushes of several nodes from
+		// locking the same rows in different orders
+		Collections.sort(uids);
+		int inserted = batchRepository.insertAll(uids);
+		removeAfterCommit(uids);
+		LOG.debug(uids.size() + " email receivers have been flushed, " + inserted + " were new.");
+	}
+
+	private void removeAfterCommit(final List<String> uids) {
+		if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+			pendingUids.removeAll(uids);
+			return;
+		}
+		TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+			@Override
+			public void afterCommit() {
+				pendingUids.removeAll(uids);
+			}
+		});
+	}
+}
@@ -0,0 +1,34 @@
+package ch.uzh.csg.reimbursement.application.mail;
+
+/*
+ * A token bucket which holds up to capacity tokens and gains one token per
+ * refill interval. The time is passed in, so the bucket is easy to test.
+ */
+public class TokenBucket {
+
+	private final int capacity;
+	private final long refillIntervalInMilliseconds;
+	private int tokens;
+	private long lastRefill;
+
+	public TokenBucket(int capacity, long refillIntervalInMilliseconds, long now) {
+		this.capacity = capacity;
+		this.refillIntervalInMilliseconds = Math.max(1, refillIntervalInMilliseconds);
+		this.tokens = capacity;
+		this.lastRefill = now;
+	}
+
+	public synchronized boolean tryConsume(long now) {
+		long refills = (now - lastRefill) / refillIntervalInMilliseconds;
+		if (refills > 0) {
+			tokens = (int) Math.min(capacity, tokens + refills);
+			lastRefill += refills * refillIntervalInMilliseconds;
+		}
+
+		if (tokens > 0) {
+			tokens--;
+			return true;
+		}
+		return false;
+	}
+}
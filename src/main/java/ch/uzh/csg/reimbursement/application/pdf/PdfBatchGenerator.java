@@ -0,0 +1,229 @@
+package ch.uzh.csg.reimbursement.application.pdf;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+
+import org.apache.pdfbox.io.MemoryUsageSetting;
+import org.apache.pdfbox.multipdf.PDFMergerUtility;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.security.concurrent.DelegatingSecurityContextRunnable;
+import org.springframework.stereotype.Service;
+
+import ch.uzh.csg.reimbursement.dto.PdfBatchJobDto;
+import ch.uzh.csg.reimbursement.model.Document;
+import ch.uzh.csg.reimbursement.model.exception.BusinessException;
+import ch.uzh.csg.reimbursement.model.exception.PdfBatchJobNotFoundException;
+import ch.uzh.csg.reimbursement.model.exception.PdfBatchSizeViolationException;
+import ch.uzh.csg.reimbursement.model.exception.PdfExportException;
+import ch.uzh.csg.reimbursement.model.exception.ServiceException;
+import ch.uzh.csg.reimbursement.service.PdfGenerationService;
+import ch.uzh.csg.reimbursement.service.UserService;
+
+/*
+ * Print runs of the finance admins. The PDFs of the given expenses are
+ * generated on a small pool of workers, each expense in its own transaction
+ * with the logged in finance admin. The progress is polled as a list of
+ * events, one per expense. On request the generated PDFs are merged into one
+ * combined PDF in the given order, which can be downloaded until the run
+ * expires.
+ */
+@Service
+public class PdfBatchGenerator {
+
+	private static final Logger LOG = LoggerFactory.getLogger(PdfBatchGenerator.class);
+
+	@Autowired
+	private PdfGenerationService pdfGenerationService;
+
+	@Autowired
+	private UserService userService;
+
+	@Value("${reimbursement.pdf.batch.workers}")
+	private int workers;
+
+	@Value("${reimbursement.pdf.batch.maxExpenses}")
+	private int maxExpenses;
+
+	@Value("${reimbursement.pdf.batch.retentionInMilliseconds}")
+	private long retentionInMilliseconds;
+
+	private final Map<String, PdfBatchJob> jobs = new ConcurrentHashMap<String, PdfBatchJob>();
+	private ExecutorService executor;
+
+	@PostConstruct
+	public void init() {
+		executor = Executors.newFixedThreadPool(workers, new CustomizableThreadFactory("pdf-batch-"));
+	}
+
+	@PreDestroy
+	public void destroy() {
+		executor.shutdownNow();
+		for (PdfBatchJob job : jobs.values()) {
+			deleteFiles(job);
+		}
+		jobs.clear();
+	}
+
+	public PdfBatchJobDto start(List<String> expenseUids, String url, boolean combined) {
+		if (expenseUids == null || expenseUids.isEmpty() || expenseUids.size() > maxExpenses) {
+			LOG.debug("A print run needs between 1 and " + maxExpenses + " expenses.");
+			throw new PdfBatchSizeViolationException();
+		}
+
+		final PdfBatchJob job = new PdfBatchJob(userService.getLoggedInUser().getUid(), expenseUids, url, combined);
+		jobs.put(job.getJobId(), job);
+
+		for (int i = 0; i < job.getTotal(); i++) {
+			final int index = i;
+			// the workers act as the finance admin who started the print run
+			executor.execute(new DelegatingSecurityContextRunnable(new Runnable() {
+				@Override
+				public void run() {
+					generate(job, index);
+				}
+			}));
+		}
+		LOG.info("Print run " + job.getJobId() + " of " + job.getTotal() + " expenses started.");
+		return toDto(job, 0);
+	}
+
+	// The events after the given number of already received events
+	public PdfBatchJobDto getStatus(String jobId, int since) {
+		return toDto(getJob(jobId), since);
+	}
+
+	public void writeCombinedPdf(String jobId, OutputStream outputStream) throws IOException {
+		File combinedPdf = getJob(jobId).getCombinedPdf();
+		if (combinedPdf == null) {
+			LOG.debug("The combined PDF of print run " + jobId + " is not available.");
+			throw new PdfExportException();
+		}
+		Files.copy(combinedPdf.toPath(), outputStream);
+	}
+
+	@Scheduled(fixedDelayString = "${reimbursement.pdf.batch.cleanupIntervalInMilliseconds}")
+	public void removeExpiredJobs() {
+		long limit = System.currentTimeMillis() - retentionInMilliseconds;
+		int removed = 0;
+
+		for (Iterator<PdfBatchJob> iterator = jobs.values().iterator(); iterator.hasNext();) {
+			PdfBatchJob job = iterator.next();
+			if (job.isFinishedBefore(limit)) {
+				iterator.remove();
+				deleteFiles(job);
+				removed++;
+			}
+		}
+		if (removed > 0) {
+			LOG.info(removed + " expired print runs have been removed.");
+		}
+	}
+
+	private void generate(PdfBatchJob job, int index) {
+		String expenseUid = job.getExpenseUid(index);
+		boolean lastOne;
+
+		try {
+			Document doc = pdfGenerationService.generatePrintPdf(expenseUid, job.getUrl());
+			lastOne = job.succeeded(index, job.isCombined() ? writePart(doc) : null);
+		} catch (BusinessException e) {
+			LOG.debug("The PDF of expense " + expenseUid + " could not be generated: " + e.getMessage());
+			lastOne = job.failed(index, e.getMessage());
+		} catch (RuntimeException | IOException e) {
+			LOG.error("The PDF of expense " + expenseUid + " could not be generated.", e);
+			lastOne = job.failed(index, new ServiceException().getMessage());
+		}
+
+		if (lastOne) {
+			job.finish(job.isCombined() ? mergeParts(job) : null, System.currentTimeMillis());
+			LOG.info("Print run " + job.getJobId() + " finished, " + job.getGenerated() + " generated, "
+					+ job.getFailed() + " failed.");
+		}
+	}
+
+	private File writePart(Document doc) throws IOException {
+		File part = File.createTempFile("pdf-batch-", ".pdf");
+		try (OutputStream outputStream = new FileOutputStream(part)) {
+			outputStream.write(doc.getContent());
+		}
+		return part;
+	}
+
+	// The parts are merged with temp files as scratch space, so the combined
+	// PDF of a print run never has to fit into the heap
+	private File mergeParts(PdfBatchJob job) {
+		List<File> parts = job.getParts();
+		if (parts.isEmpty()) {
+			return null;
+		}
+
+		File combinedPdf = null;
+		try {
+			combinedPdf = File.createTempFile("pdf-batch-", "-combined.pdf");
+			PDFMergerUtility merger = new PDFMergerUtility();
+			for (File part : parts) {
+				merger.addSource(part);
+			}
+			merger.setDestinationFileName(combinedPdf.getAbsolutePath());
+			merger.mergeDocuments(MemoryUsageSetting.setupTempFileOnly());
+			return combinedPdf;
+		} catch (IOException e) {
+			LOG.error("The combined PDF of print run " + job.getJobId() + " could not be merged.", e);
+			delete(combinedPdf);
+			return null;
+		} finally {
+			for (File part : parts) {
+				delete(part);
+			}
+		}
+	}
+
+	private PdfBatchJob getJob(String jobId) {
+		PdfBatchJob job = jobs.get(jobId);
+		if (job == null || !job.getOwnerUid().equals(userService.getLoggedInUser().getUid())) {
+			LOG.debug("The print run " + jobId + " has not been found for the logged in user.");
+			throw new PdfBatchJobNotFoundException();
+		}
+		return job;
+	}
+
+	private void deleteFiles(PdfBatchJob job) {
+		for (File part : job.getParts()) {
+			delete(part);
+		}
+		delete(job.getCombinedPdf());
+	}
+
+	private void delete(File file) {
+		if (file != null && !file.delete() && file.exists()) {
+			LOG.warn("The file " + file + " could not be deleted.");
+		}
+	}
+
+	private PdfBatchJobDto toDto(PdfBatchJob job, int since) {
+		PdfBatchJobDto dto = new PdfBatchJobDto(job.getJobId(), job.getTotal());
+		dto.setGenerated(job.getGenerated());
+		dto.setFailed(job.getFailed());
+		dto.setFinished(job.isFinished());
+		dto.setCombinedPdfAvailable(job.getCombinedPdf() != null);
+		dto.setEvents(job.getEventsSince(since));
+		return dto;
+	}
+}
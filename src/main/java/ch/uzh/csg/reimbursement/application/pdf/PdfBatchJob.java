@@ -0,0 +1,123 @@
+package ch.uzh.csg.reimbursement.application.pdf;
+
+import static java.util.UUID.randomUUID;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+
+import ch.uzh.csg.reimbursement.dto.PdfBatchEventDto;
+
+/*
+ * The state of one print run. Every expense gets an event as soon as its PDF
+ * has been generated or has failed, in the order the workers finish. For a
+ * combined PDF the generated PDFs are kept as parts in the order of the
+ * request until they are merged.
+ */
+class PdfBatchJob {
+
+	private final String jobId;
+	private final String ownerUid;
+	private final List<String> expenseUids;
+	private final String url;
+	private final boolean combined;
+	private final File[] parts;
+	private final List<PdfBatchEventDto> events = new ArrayList<PdfBatchEventDto>();
+	private int generated;
+	private int failed;
+	private File combinedPdf;
+	private boolean finished;
+	private long finishedAt;
+
+	PdfBatchJob(String ownerUid, List<String> expenseUids, String url, boolean combined) {
+		jobId = randomUUID().toString();
+		this.ownerUid = ownerUid;
+		this.expenseUids = new ArrayList<String>(expenseUids);
+		this.url = url;
+		this.combined = combined;
+		parts = new File[expenseUids.size()];
+	}
+
+	String getJobId() {
+		return jobId;
+	}
+
+	String getOwnerUid() {
+		return ownerUid;
+	}
+
+	String getExpenseUid(int index) {
+		return expenseUids.get(index);
+	}
+
+	int getTotal() {
+		return expenseUids.size();
+	}
+
+	String getUrl() {
+		return url;
+	}
+
+	boolean isCombined() {
+		return combined;
+	}
+
+	synchronized int getGenerated() {
+		return generated;
+	}
+
+	synchronized int getFailed() {
+		return failed;
+	}
+
+	synchronized boolean isFinished() {
+		return finished;
+	}
+
+	synchronized boolean isFinishedBefore(long limit) {
+		return finished && finishedAt < limit;
+	}
+
+	synchronized File getCombinedPdf() {
+		return combinedPdf;
+	}
+
+	synchronized List<PdfBatchEventDto> getEventsSince(int since) {
+		int from = Math.max(0, Math.min(since, events.size()));
+		return new ArrayList<PdfBatchEventDto>(events.subList(from, events.size()));
+	}
+
+	// Returns whether this was the last expense of the print run
+	synchronized boolean succeeded(int index, File part) {
+		parts[index] = part;
+		generated++;
+		events.add(new PdfBatchEventDto(expenseUids.get(index), true, null));
+		return isLastOne();
+	}
+
+	synchronized boolean failed(int index, String message) {
+		failed++;
+		events.add(new PdfBatchEventDto(expenseUids.get(index), false, message));
+		return isLastOne();
+	}
+
+	synchronized List<File> getParts() {
+		List<File> generatedParts = new ArrayList<File>();
+		for (File part : parts) {
+			if (part != null) {
+				generatedParts.add(part);
+			}
+		}
+		return generatedParts;
+	}
+
+	synchronized void finish(File combinedPdf, long now) {
+		this.combinedPdf = combinedPdf;
+		finished = true;
+		finishedAt = now;
+	}
+
+	private boolean isLastOne() {
+		return generated + failed == expenseUids.size();
+	}
+}
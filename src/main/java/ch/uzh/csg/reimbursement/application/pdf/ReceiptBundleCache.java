@@ -0,0 +1,143 @@
+package ch.uzh.csg.reimbursement.application.pdf;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import java.io.File;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import javax.annotation.PreDestroy;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.util.DigestUtils;
+
+import ch.uzh.csg.reimbursement.model.Document;
+
+/*
+ * Keeps the numbered receipts of an expense PDF as one merged file in the
+ * temp directory. The key is a hash over the attachments in their order, so
+ * a changed, added or removed attachment leads to a new bundle while the
+ * old one ages out. When the cache is full the least recently used bundle
+ * is deleted. A bundle returned by get or put is pinned until it is released,
+ * a pinned bundle which is evicted in the meantime is deleted on its last
+ * release.
+ */
+@Component
+public class ReceiptBundleCache {
+
+	private static final Logger LOG = LoggerFactory.getLogger(ReceiptBundleCache.class);
+
+	private final Map<String, File> bundles;
+	private final Map<File, Integer> pins = new HashMap<File, Integer>();
+	private final Set<File> evictedWhilePinned = new HashSet<File>();
+
+	public ReceiptBundleCache(@Value("${reimbursement.pdf.receiptBundleCacheSize}") final int maxEntries) {
+		bundles = new LinkedHashMap<String, File>(16, 0.75f, true) {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<String, File> eldest) {
+				if (size() > maxEntries) {
+					discard(eldest.getValue());
+					return true;
+				}
+				return false;
+			}
+		};
+	}
+
+	// The receipt number depends on the position, so the order is part of
+	// the key
+	public String createKey(List<Document> attachments) {
+		StringBuilder key = new StringBuilder();
+		for (Document attachment : attachments) {
+			key.append(attachment.getUid()).append(':').append(attachment.getLastModifiedDate().getTime())
+			.append(':').append(attachment.getFileSize()).append(';');
+		}
+		return DigestUtils.md5DigestAsHex(key.toString().getBytes(UTF_8));
+	}
+
+	// The returned bundle has to be released
+	public synchronized File get(String key) {
+		File bundle = bundles.get(key);
+		if (bundle == null) {
+			return null;
+		} else if (!bundle.exists()) {
+			bundles.remove(key);
+			return null;
+		}
+		pin(bundle);
+		return bundle;
+	}
+
+	/*
+	 * If another generation has stored a bundle for the same key in the
+	 * meantime, that one is kept and the given file is deleted. The caller
+	 * has to continue with the returned file and release it.
+	 */
+	public synchronized File put(String key, File bundle) {
+		File existing = bundles.get(key);
+		if (existing != null && existing.exists()) {
+			delete(bundle);
+			pin(existing);
+			return existing;
+		}
+		pin(bundle);
+		bundles.put(key, bundle);
+		return bundle;
+	}
+
+	public synchronized void release(File bundle) {
+		Integer count = pins.get(bundle);
+		if (count == null) {
+			return;
+		} else if (count > 1) {
+			pins.put(bundle, count - 1);
+			return;
+		}
+		pins.remove(bundle);
+		if (evictedWhilePinned.remove(bundle)) {
+			delete(bundle);
+		}
+	}
+
+	@PreDestroy
+	public synchronized void destroy() {
+		for (File bundle : bundles.values()) {
+			delete(bundle);
+		}
+		for (File bundle : evictedWhilePinned) {
+			delete(bundle);
+		}
+		bundles.clear();
+		pins.clear();
+		evictedWhilePinned.clear();
+	}
+
+	private void pin(File bundle) {
+		Integer count = pins.get(bundle);
+		pins.put(bundle, count == null ? 1 : count + 1);
+	}
+
+	// A bundle which is merged at the moment is deleted on its last release
+	private void discard(File bundle) {
+		if (pins.containsKey(bundle)) {
+			evictedWhilePinned.add(bundle);
+		} else {
+			delete(bundle);
+		}
+	}
+
+	private static void delete(File file) {
+		if (!file.delete() && file.exists()) {
+			LOG.warn("The receipt bundle " + file + " could not be deleted.");
+		}
+	}
+}
@@ -0,0 +1,140 @@
+package ch.uzh.csg.reimbursement.application.search;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import ch.uzh.csg.reimbursement.model.CostCategory;
+import ch.uzh.csg.reimbursement.model.CostCategoryTranslation;
+import ch.uzh.csg.reimbursement.model.Expense;
+import ch.uzh.csg.reimbursement.model.ExpenseItem;
+import ch.uzh.csg.reimbursement.model.ExpenseSearchIndexEntry;
+import ch.uzh.csg.reimbursement.model.User;
+import ch.uzh.csg.reimbursement.repository.ExpenseItemRepositoryProvider;
+import ch.uzh.csg.reimbursement.repository.ExpenseRepositoryProvider;
+import ch.uzh.csg.reimbursement.repository.ExpenseSearchIndexRepositoryProvider;
+
+/*
+ * Keeps the searchable text of every expense up to date and runs the ranked
+ * full-text queries against it. The services call update on every write that
+ * changes the accounting, an item, a user name or a cost category name.
+ */
+@Service
+@Transactional
+public class ExpenseFullTextIndex {
+
+	private static final Logger LOG = LoggerFactory.getLogger(ExpenseFullTextIndex.class);
+
+	@Autowired
+	private ExpenseSearchIndexRepositoryProvider searchIndexRepository;
+
+	@Autowired
+	private ExpenseRepositoryProvider expenseRepository;
+
+	@Autowired
+	private ExpenseItemRepositoryProvider expenseItemRepository;
+
+	public void update(Expense expense) {
+		String content = buildContent(expense);
+		ExpenseSearchIndexEntry entry = searchIndexRepository.findByExpense(expense);
+
+		if (entry == null) {
+			searchIndexRepository.create(new ExpenseSearchIndexEntry(expense, content));
+		} else {
+			entry.updateContent(content);
+		}
+	}
+
+	public void update(Collection<Expense> expenses) {
+		for (Expense expense : expenses) {
+			update(expense);
+		}
+	}
+
+	public void updateAllOfUser(User user) {
+		update(expenseRepository.findAllByUserWithArchived(user));
+	}
+
+	public void updateAllOfCostCategory(CostCategory costCategory) {
+		update(expenseRepository.findAllByCostCategory(costCategory));
+	}
+
+	public void remove(Expense expense) {
+		ExpenseSearchIndexEntry entry = searchIndexRepository.findByExpense(expense);
+
+		if (entry != null) {
+			searchIndexRepository.delete(entry);
+		}
+	}
+
+	// Every word of the text is searched as prefix, the best match comes first
+	public List<Expense> search(String text, int limit) {
+		List<String> terms = new ArrayList<String>();
+		for (String term : text.toLowerCase().split("[^\\p{L}\\p{N}]+")) {
+			if (!term.isEmpty()) {
+				terms.add(term);
+			}
+		}
+
+		if (terms.isEmpty()) {
+			LOG.debug("No searchable terms given.");
+			return new ArrayList<Expense>();
+		}
+
+		List<String> rankedUids = searchIndexRepository.search(terms, limit);
+		if (rankedUids.isEmpty()) {
+			return new ArrayList<Expense>();
+		}
+
+		Map<String, Expense> expenses = new HashMap<String, Expense>();
+		for (Expense expense : expenseRepository.findAllByUids(rankedUids)) {
+			expenses.put(expense.getUid(), expense);
+		}
+
+		List<Expense> result = new ArrayList<Expense>();
+		for (String uid : rankedUids) {
+			if (expenses.containsKey(uid)) {
+				result.add(expenses.get(uid));
+			}
+		}
+		return result;
+	}
+
+	private String buildContent(Expense expense) {
+		StringBuilder content = new StringBuilder();
+		append(content, expense.getAccounting());
+		append(content, expense.getUser().getFirstName());
+		append(content, expense.getUser().getLastName());
+
+		// the items are queried, because the collection of the expense does
+		// not yet contain items created in the same transaction
+		for (ExpenseItem item : expenseItemRepository.findAllByExpense(expense)) {
+			append(content, item.getExplanation());
+			append(content, item.getProject());
+
+			CostCategoryTranslation name = item.getCostCategory().getName();
+			if (name != null) {
+				append(content, name.getDe());
+				append(content, name.getEn());
+			}
+		}
+		return content.toString();
+	}
+
+	private void append(StringBuilder content, String text) {
+		if (text != null && !text.isEmpty()) {
+			if (content.length() > 0) {
+				content.append(' ');
+			}
+			content.append(text);
+		}
+	}
+}
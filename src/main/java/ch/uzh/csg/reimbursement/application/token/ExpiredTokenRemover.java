@@ -1,10 +1,10 @@
 package ch.uzh.csg.reimbursement.application.token;
 
-import static ch.uzh.csg.reimbursement.model.TokenType.ATTACHMENT_MOBILE;
-import static ch.uzh.csg.reimbursement.model.TokenType.GUEST_MOBILE;
-import static ch.uzh.csg.reimbursement.model.TokenType.SIGNATURE_MOBILE;
+import static java.util.Calendar.MILLISECOND;
+import static java.util.Calendar.MONTH;
 
-import java.util.List;
+import java.util.Calendar;
+import java.util.GregorianCalendar;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -12,10 +12,15 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
 
-import ch.uzh.csg.reimbursement.model.Token;
+import ch.uzh.csg.reimbursement.model.TokenType;
 import ch.uzh.csg.reimbursement.repository.TokenRepositoryProvider;
 
+/*
+ * Removes the expired tokens with one DELETE per token type, the statements
+ * use the index on type and created.
+ */
 @Component
 public class ExpiredTokenRemover {
 
@@ -34,36 +39,40 @@ public class ExpiredTokenRemover {
 	private int guestTokenExpirationInMonths;
 
 	@Scheduled(fixedRateString = "${reimbursement.token.destroyExpiredTokens.intervalInMilliseconds}")
+	@Transactional
 	public void removeExpiredTokens() {
-		List<Token> tokens = repository.findAll();
-		for (Token token : tokens) {
-			if (token.getType() == SIGNATURE_MOBILE) {
-				if (token.isExpiredInMilliseconds(signatureMobileExpirationInMilliseconds)) {
-					repository.delete(token);
-					LOG.info("SIGNATURE MOBILE TOKEN" + token.getUid() + " by " + token.getUser().getUid()
-							+ " was automatically removed (expired).");
-					token = null;
-				}
-			} else if (token.getType() == ATTACHMENT_MOBILE) {
-				if (token.isExpiredInMilliseconds(expenseItemAttachmentMobileExpirationInMilliseconds)) {
-					repository.delete(token);
-					LOG.info("ATTACHMENT MOBILE TOKEN " + token.getUid() + " by " + token.getUser().getUid()
-							+ " was automatically removed (expired).");
-					token = null;
-				}
-			} else if (token.getType() == GUEST_MOBILE) {
-				if (token.isExpiredInMonths(guestTokenExpirationInMonths)) {
-					repository.delete(token);
-					LOG.info("GUEST MOBILE TOKEN " + token.getUid() + " by " + token.getUser().getUid()
-							+ " was automatically removed (expired).");
-					token = null;
-				}
-			} else {
-				LOG.warn(
-						"There is an unknown Token type which is not removed from the Token List! This causes a memory leak!");
+		int total = 0;
+		for (TokenType type : TokenType.values()) {
+			Calendar createdBefore = getExpirationLimit(type);
+			if (createdBefore == null) {
+				LOG.warn("There is an unknown Token type " + type
+						+ " which is not removed from the Token List! This causes a memory leak!");
+				continue;
 			}
-			// make sure to remove all other types with their expiration here
+
+			int deleted = repository.deleteByTypeAndCreatedBefore(type, createdBefore);
+			total += deleted;
+			LOG.info(deleted + " " + type + " tokens were automatically removed (expired).");
 		}
+		LOG.info(total + " expired tokens have been removed.");
 	}
 
+	// make sure to return the expiration of all other types here
+	private Calendar getExpirationLimit(TokenType type) {
+		Calendar createdBefore = new GregorianCalendar();
+
+		switch (type) {
+		case SIGNATURE_MOBILE:
+			createdBefore.add(MILLISECOND, -signatureMobileExpirationInMilliseconds);
+			return createdBefore;
+		case ATTACHMENT_MOBILE:
+			createdBefore.add(MILLISECOND, -expenseItemAttachmentMobileExpirationInMilliseconds);
+			return createdBefore;
+		case GUEST_MOBILE:
+			createdBefore.add(MONTH, -guestTokenExpirationInMonths);
+			return createdBefore;
+		default:
+			return null;
+		}
+	}
 }
@@ -0,0 +1,153 @@
+package ch.uzh.csg.reimbursement.application.token;
+
+import static ch.uzh.csg.reimbursement.model.TokenType.ATTACHMENT_MOBILE;
+import static ch.uzh.csg.reimbursement.model.TokenType.SIGNATURE_MOBILE;
+
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.GregorianCalendar;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import javax.annotation.PostConstruct;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import ch.uzh.csg.reimbursement.model.Token;
+import ch.uzh.csg.reimbursement.model.TokenType;
+import ch.uzh.csg.reimbursement.repository.TokenRepositoryProvider;
+
+/*
+ * Keeps the uids of the short-lived mobile tokens with their expiration in
+ * memory, so the tokens known to this instance are validated without a
+ * query. The database stays the durable copy, every change is written there
+ * by the TokenService and the registry is loaded from it at startup. A token
+ * is removed from the registry as soon as it expires. Its row is only deleted
+ * if it has not been refreshed in the database in the meantime, e.g. by
+ * another instance.
+ */
+@Component
+public class MobileTokenRegistry {
+
+	private static final Logger LOG = LoggerFactory.getLogger(MobileTokenRegistry.class);
+
+	private static final Set<TokenType> SHORT_LIVED_TYPES = EnumSet.of(SIGNATURE_MOBILE, ATTACHMENT_MOBILE);
+	private static final int WHEEL_SIZE = 64;
+	private static final int NUMBER_OF_LEVELS = 3;
+
+	@Autowired
+	private TokenRepositoryProvider repository;
+
+	@Value("${reimbursement.token.signatureMobile.expirationInMilliseconds}")
+	private int signatureMobileExpirationInMilliseconds;
+
+	@Value("${reimbursement.token.expenseItemAttachmentMobile.expirationInMilliseconds}")
+	private int expenseItemAttachmentMobileExpirationInMilliseconds;
+
+	@Value("${reimbursement.token.registry.tickInMilliseconds}")
+	private long tickInMilliseconds;
+
+	private final ConcurrentMap<String, Registration> registrations = new ConcurrentHashMap<String, Registration>();
+
+	private TimingWheel<String> wheel;
+
+	@PostConstruct
+	public void init() {
+		wheel = new TimingWheel<String>(tickInMilliseconds, WHEEL_SIZE, NUMBER_OF_LEVELS, System.currentTimeMillis());
+		for (Token token : repository.findAllByTypes(SHORT_LIVED_TYPES)) {
+			register(token);
+		}
+		LOG.debug(wheel.size() + " mobile tokens have been loaded.");
+	}
+
+	public boolean isShortLived(TokenType type) {
+		return SHORT_LIVED_TYPES.contains(type);
+	}
+
+	public void register(Token token) {
+		if (isShortLived(token.getType())) {
+			long expiresAt = token.getCreated().getTimeInMillis() + getExpirationInMilliseconds(token.getType());
+			// the uid is in the wheel before it is known, see removeExpiredTokens
+			wheel.add(token.getUid(), expiresAt);
+			registrations.put(token.getUid(), new Registration(token.getType(), expiresAt));
+		}
+	}
+
+	public void remove(String uid) {
+		registrations.remove(uid);
+		wheel.remove(uid);
+	}
+
+	/*
+	 * Returns -1 if the uid is not registered with the given type. Such a uid
+	 * may have been created by another instance and has to be checked in the
+	 * database.
+	 */
+	public long getExpiresAt(String uid, TokenType type) {
+		Registration registration = registrations.get(uid);
+		return registration == null || registration.type != type ? -1 : registration.expiresAt;
+	}
+
+	/*
+	 * Not transactional, so a tick without expired tokens does not open a
+	 * transaction. The rows are deleted per type and only if their creation
+	 * time in the database is expired as well, a token refreshed by another
+	 * instance is kept.
+	 */
+	@Scheduled(fixedRateString = "${reimbursement.token.registry.tickInMilliseconds}")
+	public void removeExpiredTokens() {
+		long now = System.currentTimeMillis();
+		List<String> expiredUids = wheel.advance(now);
+		if (expiredUids.isEmpty()) {
+			return;
+		}
+
+		// a token refreshed in the meantime is in the wheel again
+		Map<TokenType, List<String>> removedUids = new EnumMap<TokenType, List<String>>(TokenType.class);
+		for (String uid : expiredUids) {
+			Registration registration = registrations.get(uid);
+			if (registration != null && !wheel.contains(uid) && registrations.remove(uid, registration)) {
+				if (!removedUids.containsKey(registration.type)) {
+					removedUids.put(registration.type, new ArrayList<String>());
+				}
+				removedUids.get(registration.type).add(uid);
+			}
+		}
+
+		int deleted = 0;
+		for (Map.Entry<TokenType, List<String>> uids : removedUids.entrySet()) {
+			Calendar createdBefore = new GregorianCalendar();
+			createdBefore.setTimeInMillis(now - getExpirationInMilliseconds(uids.getKey()));
+			deleted += repository.deleteByUidsAndTypeAndCreatedBefore(uids.getValue(), uids.getKey(), createdBefore);
+		}
+		if (deleted > 0) {
+			LOG.info(deleted + " mobile tokens were automatically removed (expired).");
+		}
+	}
+
+	private long getExpirationInMilliseconds(TokenType type) {
+		return type == SIGNATURE_MOBILE ? signatureMobileExpirationInMilliseconds
+				: expenseItemAttachmentMobileExpirationInMilliseconds;
+	}
+
+	private static class Registration {
+
+		private final TokenType type;
+		private final long expiresAt;
+
+		public Registration(TokenType type, long expiresAt) {
+			this.type = type;
+			this.expiresAt = expiresAt;
+		}
+	}
+}
@@ -0,0 +1,120 @@
+package ch.uzh.csg.reimbursement.application.token;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/*
+ * A hierarchical timing wheel. Every level has the same number of slots, a
+ * slot of a level spans all slots of the level below. A key is put into the
+ * lowest level whose range covers its expiration and moves down a level
+ * when the wheel reaches its slot. Adding, removing and checking a key are
+ * O(1), advancing costs one slot per elapsed tick.
+ */
+public class TimingWheel<K> {
+
+	private final long tickInMilliseconds;
+	private final int wheelSize;
+	private final long[] ticksPerSlot;
+	private final List<List<Set<K>>> levels = new ArrayList<List<Set<K>>>();
+	private final Map<K, Long> expirationTicks = new HashMap<K, Long>();
+	private long currentTick;
+
+	public TimingWheel(long tickInMilliseconds, int wheelSize, int numberOfLevels, long now) {
+		this.tickInMilliseconds = tickInMilliseconds;
+		this.wheelSize = wheelSize;
+		this.ticksPerSlot = new long[numberOfLevels];
+		this.currentTick = now / tickInMilliseconds;
+
+		long slotSpan = 1;
+		for (int level = 0; level < numberOfLevels; level++) {
+			ticksPerSlot[level] = slotSpan;
+			slotSpan *= wheelSize;
+
+			List<Set<K>> slots = new ArrayList<Set<K>>(wheelSize);
+			for (int slot = 0; slot < wheelSize; slot++) {
+				slots.add(new HashSet<K>());
+			}
+			levels.add(slots);
+		}
+	}
+
+	// Adding a key again replaces its expiration
+	public synchronized void add(K key, long expiresAt) {
+		long expirationTick = (expiresAt + tickInMilliseconds - 1) / tickInMilliseconds;
+		expirationTicks.put(key, expirationTick);
+		schedule(key, expirationTick, currentTick + 1);
+	}
+
+	public synchronized void remove(K key) {
+		expirationTicks.remove(key);
+	}
+
+	public synchronized boolean contains(K key) {
+		return expirationTicks.containsKey(key);
+	}
+
+	public synchronized int size() {
+		return expirationTicks.size();
+	}
+
+	// Returns the keys which expired up to now, they are no longer contained
+	public synchronized List<K> advance(long now) {
+		List<K> expired = new ArrayList<K>();
+		long targetTick = now / tickInMilliseconds;
+
+		while (currentTick < targetTick) {
+			currentTick++;
+
+			// the keys of a higher level move down when its slot is reached
+			for (int level = levels.size() - 1; level > 0; level--) {
+				if (currentTick % ticksPerSlot[level] == 0) {
+					for (K key : drain(level, currentTick)) {
+						Long expirationTick = expirationTicks.get(key);
+						if (expirationTick != null) {
+							schedule(key, expirationTick, currentTick);
+						}
+					}
+				}
+			}
+
+			for (K key : drain(0, currentTick)) {
+				Long expirationTick = expirationTicks.get(key);
+				if (expirationTick != null && expirationTick <= currentTick) {
+					expirationTicks.remove(key);
+					expired.add(key);
+				}
+			}
+		}
+		return expired;
+	}
+
+	// The slot of the earliest tick must not have been drained yet
+	private void schedule(K key, long expirationTick, long earliestTick) {
+		long delay = Math.max(expirationTick - currentTick, 0);
+		int level = 0;
+		while (level < levels.size() - 1 && delay >= ticksPerSlot[level + 1]) {
+			level++;
+		}
+
+		// keys beyond the range of the wheel wait in the last slot of the top
+		// level and are scheduled again when it is reached
+		long slotTick = Math.min(Math.max(expirationTick, earliestTick), currentTick + ticksPerSlot[level]
+				* (wheelSize - 1));
+		levels.get(level).get(slotIndex(level, slotTick)).add(key);
+	}
+
+	private List<K> drain(int level, long tick) {
+		Set<K> slot = levels.get(level).get(slotIndex(level, tick));
+		List<K> keys = new ArrayList<K>(slot);
+		slot.clear();
+		return keys;
+	}
+
+	private int slotIndex(int level, long tick) {
+		return (int) ((tick / ticksPerSlot[level]) % wheelSize);
+	}
+}
@@ -0,0 +1,247 @@
+package ch.uzh.csg.reimbursement.application.upload;
+
+import static ch.uzh.csg.reimbursement.model.TokenType.ATTACHMENT_MOBILE;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import javax.annotation.PreDestroy;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.util.DigestUtils;
+
+import ch.uzh.csg.reimbursement.dto.UploadSessionDto;
+import ch.uzh.csg.reimbursement.model.exception.ChunkChecksumMismatchException;
+import ch.uzh.csg.reimbursement.model.exception.MaxFileSizeViolationException;
+import ch.uzh.csg.reimbursement.model.exception.MinFileSizeViolationException;
+import ch.uzh.csg.reimbursement.model.exception.ServiceException;
+import ch.uzh.csg.reimbursement.model.exception.UploadOffsetMismatchException;
+import ch.uzh.csg.reimbursement.model.exception.UploadSessionNotFoundException;
+import ch.uzh.csg.reimbursement.service.MobileService;
+import ch.uzh.csg.reimbursement.service.TokenService;
+
+/*
+ * Resumable uploads of attachments from mobile devices. The phone opens an
+ * upload with the total size and sends the content in chunks, each with its
+ * offset and the MD5 checksum of the chunk. After a dropped connection the
+ * phone asks for the current offset and continues from there. The chunks are
+ * written to a temp file, the complete file is stored like a multipart
+ * upload. Uploads without a chunk for the idle timeout are discarded.
+ */
+@Service
+public class ChunkedUploadManager {
+
+	private static final Logger LOG = LoggerFactory.getLogger(ChunkedUploadManager.class);
+
+	@Autowired
+	private TokenService tokenService;
+
+	@Autowired
+	private MobileService mobileService;
+
+	@Value("${reimbursement.filesize.maxAttachmentUploadSize}")
+	private long maxAttachmentUploadSize;
+
+	@Value("${reimbursement.upload.chunked.maxChunkSize}")
+	private int maxChunkSize;
+
+	@Value("${reimbursement.upload.chunked.idleTimeoutInMilliseconds}")
+	private long idleTimeoutInMilliseconds;
+
+	@Value("${reimbursement.upload.tempDir}")
+	private String uploadTempDir;
+
+	private final Map<String, UploadSession> sessions = new ConcurrentHashMap<String, UploadSession>();
+
+	public UploadSessionDto start(String tokenString, String contentType, long size) {
+		tokenService.checkValidMobileToken(tokenString, ATTACHMENT_MOBILE);
+
+		if (size <= 0) {
+			LOG.debug("An upload without content has been started.");
+			throw new MinFileSizeViolationException();
+		} else if (size >= maxAttachmentUploadSize) {
+			LOG.debug("File too big, allowed: " + maxAttachmentUploadSize + " actual: " + size);
+			throw new MaxFileSizeViolationException();
+		}
+
+		File file;
+		try {
+			file = File.createTempFile("upload-", ".part", getTempDir());
+		} catch (IOException e) {
+			LOG.error("An IOException has been caught while creating the file of an upload.", e);
+			throw new ServiceException();
+		}
+
+		UploadSession session = new UploadSession(tokenString, contentType, size, file, System.currentTimeMillis());
+		sessions.put(session.getUploadId(), session);
+		LOG.debug("Upload " + session.getUploadId() + " of " + size + " bytes started.");
+		return toDto(session);
+	}
+
+	public UploadSessionDto getStatus(String tokenString, String uploadId) {
+		UploadSession session = getSession(tokenString, uploadId);
+		synchronized (session) {
+			session.touch(System.currentTimeMillis());
+			return toDto(session);
+		}
+	}
+
+	/*
+	 * A chunk which has already been received is accepted again, because the
+	 * phone cannot know whether the response of the last chunk got lost. The
+	 * upload is stored as soon as the last chunk has been written.
+	 */
+	public UploadSessionDto appendChunk(String tokenString, String uploadId, long offset, String checksum,
+			InputStream body) {
+		UploadSession session = getSession(tokenString, uploadId);
+		byte[] chunk = readChunk(uploadId, body);
+
+		if (!DigestUtils.md5DigestAsHex(chunk).equalsIgnoreCase(checksum)) {
+			LOG.debug("The checksum of a chunk of upload " + uploadId + " does not match.");
+			throw new ChunkChecksumMismatchException();
+		}
+
+		synchronized (session) {
+			// the upload may have been completed or discarded in the meantime
+			if (sessions.get(uploadId) != session) {
+				LOG.debug("The upload " + uploadId + " has been removed while a chunk was received.");
+				throw new UploadSessionNotFoundException();
+			} else if (offset + chunk.length <= session.getOffset()) {
+				session.touch(System.currentTimeMillis());
+				return toDto(session);
+			} else if (offset != session.getOffset() || offset + chunk.length > session.getSize()) {
+				LOG.debug("Chunk at " + offset + " rejected, the upload " + uploadId + " is at " + session.getOffset());
+				throw new UploadOffsetMismatchException();
+			}
+
+			write(session, offset, chunk);
+			session.advance(chunk.length, System.currentTimeMillis());
+
+			UploadSessionDto dto = toDto(session);
+			if (session.isComplete()) {
+				dto.setAttachmentUid(complete(session));
+			}
+			return dto;
+		}
+	}
+
+	@Scheduled(fixedDelayString = "${reimbursement.upload.chunked.cleanupIntervalInMilliseconds}")
+	public void removeIdleSessions() {
+		long limit = System.currentTimeMillis() - idleTimeoutInMilliseconds;
+		int removed = 0;
+
+		for (Iterator<UploadSession> iterator = sessions.values().iterator(); iterator.hasNext();) {
+			UploadSession session = iterator.next();
+			synchronized (session) {
+				if (session.isIdleSince(limit)) {
+					iterator.remove();
+					deleteFile(session);
+					removed++;
+				}
+			}
+		}
+		if (removed > 0) {
+			LOG.info(removed + " idle uploads have been discarded.");
+		}
+	}
+
+	@PreDestroy
+	public void destroy() {
+		for (UploadSession session : sessions.values()) {
+			deleteFile(session);
+		}
+		sessions.clear();
+	}
+
+	private String complete(UploadSession session) {
+		try {
+			String attachmentUid = mobileService.createExpenseItemAttachment(session.getTokenUid(),
+					new FileMultipartFile(session.getFile(), session.getContentType()));
+			LOG.debug("Upload " + session.getUploadId() + " has been stored as attachment " + attachmentUid);
+			return attachmentUid;
+		} finally {
+			sessions.remove(session.getUploadId());
+			deleteFile(session);
+		}
+	}
+
+	// At most one byte more than the limit is read from the body
+	private byte[] readChunk(String uploadId, InputStream body) {
+		ByteArrayOutputStream chunk = new ByteArrayOutputStream();
+		byte[] buffer = new byte[8192];
+		try {
+			int read;
+			while ((read = body.read(buffer)) != -1) {
+				chunk.write(buffer, 0, read);
+				if (chunk.size() > maxChunkSize) {
+					LOG.debug("Chunk too big, allowed: " + maxChunkSize + " actual: more than " + chunk.size());
+					throw new MaxFileSizeViolationException();
+				}
+			}
+		} catch (IOException e) {
+			LOG.error("An IOException has been caught while reading a chunk of upload " + uploadId, e);
+			throw new ServiceException();
+		}
+		return chunk.toByteArray();
+	}
+
+	// The file is cut at the offset first, a partly written chunk of an
+	// aborted request is overwritten that way
+	private void write(UploadSession session, long offset, byte[] chunk) {
+		try (RandomAccessFile file = new RandomAccessFile(session.getFile(), "rw")) {
+			FileChannel channel = file.getChannel();
+			channel.truncate(offset);
+			ByteBuffer buffer = ByteBuffer.wrap(chunk);
+			long position = offset;
+			while (buffer.hasRemaining()) {
+				position += channel.write(buffer, position);
+			}
+		} catch (IOException e) {
+			LOG.error("An IOException has been caught while writing a chunk of upload " + session.getUploadId(), e);
+			throw new ServiceException();
+		}
+	}
+
+	private UploadSession getSession(String tokenString, String uploadId) {
+		UploadSession session = sessions.get(uploadId);
+		if (session == null || !session.getTokenUid().equals(tokenString)) {
+			LOG.debug("The upload " + uploadId + " has not been found for this token.");
+			throw new UploadSessionNotFoundException();
+		}
+		return session;
+	}
+
+	private File getTempDir() {
+		File dir = new File(uploadTempDir.isEmpty() ? System.getProperty("java.io.tmpdir") : uploadTempDir);
+		if (!dir.exists() && !dir.mkdirs()) {
+			LOG.error("The upload temp directory " + dir + " cannot be created.");
+			throw new ServiceException();
+		}
+		return dir;
+	}
+
+	private void deleteFile(UploadSession session) {
+		if (!session.getFile().delete() && session.getFile().exists()) {
+			LOG.warn("The file of upload " + session.getUploadId() + " could not be deleted.");
+		}
+	}
+
+	private UploadSessionDto toDto(UploadSession session) {
+		UploadSessionDto dto = new UploadSessionDto(session.getUploadId(), session.getSize(), session.getOffset());
+		dto.setComplete(session.isComplete());
+		return dto;
+	}
+}
@@ -0,0 +1,70 @@
+package ch.uzh.csg.reimbursement.application.upload;
+
+import static java.util.UUID.randomUUID;
+
+import java.io.File;
+
+/*
+ * The state of one resumable upload. The received bytes are kept in a temp
+ * file, the offset is the number of bytes which have been written so far.
+ */
+class UploadSession {
+
+	private final String uploadId;
+	private final String tokenUid;
+	private final String contentType;
+	private final long size;
+	private final File file;
+	private long offset;
+	private long lastAccess;
+
+	UploadSession(String tokenUid, String contentType, long size, File file, long now) {
+		uploadId = randomUUID().toString();
+		this.tokenUid = tokenUid;
+		this.contentType = contentType;
+		this.size = size;
+		this.file = file;
+		lastAccess = now;
+	}
+
+	String getUploadId() {
+		return uploadId;
+	}
+
+	String getTokenUid() {
+		return tokenUid;
+	}
+
+	String getContentType() {
+		return contentType;
+	}
+
+	long getSize() {
+		return size;
+	}
+
+	File getFile() {
+		return file;
+	}
+
+	long getOffset() {
+		return offset;
+	}
+
+	boolean isComplete() {
+		return offset == size;
+	}
+
+	boolean isIdleSince(long limit) {
+		return lastAccess < limit;
+	}
+
+	void advance(long length, long now) {
+		offset += length;
+		lastAccess = now;
+	}
+
+	void touch(long now) {
+		lastAccess = now;
+	}
+}
@@ -54,6 +54,10 @@ public class MailConfiguration {
 		Properties props = new Properties();
 		props.put("resource.loader", "class");
 		props.put("class.resource.loader.class", "org.apache.velocity.runtime.resource.loader." + "ClasspathResourceLoader");
+		// the templates are part of the war and never change at runtime
+		props.put("class.resource.loader.cache", "true");
+		props.put("class.resource.loader.modificationCheckInterval", "-1");
+		props.put("input.encoding", "UTF-8");
 		factory.setVelocityProperties(props);
 		return factory.createVelocityEngine();
 	}
@@ -3,12 +3,15 @@ package ch.uzh.csg.reimbursement.configuration;
 import static ch.uzh.csg.reimbursement.configuration.BuildLevel.DEVELOPMENT;
 import static ch.uzh.csg.reimbursement.configuration.BuildLevel.INTEGRATION;
 
+import java.io.IOException;
+
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.core.io.FileSystemResource;
 import org.springframework.http.HttpMethod;
 import org.springframework.security.config.annotation.authentication.builders.AuthenticationManagerBuilder;
 import org.springframework.security.config.annotation.method.configuration.EnableGlobalMethodSecurity;
@@ -22,6 +25,7 @@ import org.springframework.security.web.csrf.HttpSessionCsrfTokenRepository;
 import org.springframework.web.multipart.commons.CommonsMultipartResolver;
 
 import ch.uzh.csg.reimbursement.application.ldap.LdapUserDetailsAuthoritiesPopulator;
+import ch.uzh.csg.reimbursement.model.exception.ServiceException;
 import ch.uzh.csg.reimbursement.security.CsrfHeaderFilter;
 import ch.uzh.csg.reimbursement.security.FormLoginFailureHandler;
 import ch.uzh.csg.reimbursement.security.FormLoginSuccessHandler;
@@ -57,6 +61,9 @@ public class WebSecurityConfiguration extends WebSecurityConfigurerAdapter {
 	@Value("${reimbursement.filesize.maxUploadFileSize}")
 	private long maxUploadFileSize;
 
+	@Value("${reimbursement.upload.tempDir}")
+	private String uploadTempDir;
+
 	@Value("${reimbursement.buildLevel}")
 	private BuildLevel buildLevel;
 
@@ -71,6 +78,17 @@ public class WebSecurityConfiguration extends WebSecurityConfigurerAdapter {
 	public CommonsMultipartResolver filterMultipartResolver() {
 		CommonsMultipartResolver resolver = new CommonsMultipartResolver();
 		resolver.setMaxUploadSize(maxUploadFileSize);
+		// Uploads above the default in-memory size of 10 KB are spooled to the
+		// temp directory, without a configured directory the one of the servlet
+		// container is used
+		if (!uploadTempDir.isEmpty()) {
+			try {
+				resolver.setUploadTempDir(new FileSystemResource(uploadTempDir + "/"));
+			} catch (IOException e) {
+				LOG.error("The upload temp directory " + uploadTempDir + " cannot be used.", e);
+				throw new ServiceException();
+			}
+		}
 		return resolver;
 	}
 
@@ -6,11 +6,13 @@ import org.springframework.security.web.context.AbstractSecurityWebApplicationIn
 import org.springframework.web.multipart.support.MultipartFilter;
 
 import ch.uzh.csg.reimbursement.security.CorsHeaderFilter;
+import ch.uzh.csg.reimbursement.security.UploadLimitFilter;
 
 public class WebSecurityInitializer extends AbstractSecurityWebApplicationInitializer {
 
 	@Override
 	protected void beforeSpringSecurityFilterChain(ServletContext servletContext) {
+		insertFilters(servletContext, new UploadLimitFilter());
 		insertFilters(servletContext,  new MultipartFilter());
 		insertFilters(servletContext, new CorsHeaderFilter());
 	}
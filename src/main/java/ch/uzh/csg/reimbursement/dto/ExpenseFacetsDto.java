@@ -0,0 +1,16 @@
+package ch.uzh.csg.reimbursement.dto;
+
+import java.util.Map;
+
+import lombok.Data;
+
+@Data
+public class ExpenseFacetsDto {
+
+	private long totalNumberOfExpenses;
+	private Map<String, Long> states;
+	private Map<String, Long> costCategories;
+	private Map<String, Long> months;
+	private Map<String, Long> assignedManagers;
+	private Map<String, Long> currencies;
+}
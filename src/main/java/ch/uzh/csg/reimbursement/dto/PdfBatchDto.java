@@ -0,0 +1,14 @@
+package ch.uzh.csg.reimbursement.dto;
+
+import java.util.List;
+
+import lombok.Data;
+
+@Data
+public class PdfBatchDto {
+
+	private List<String> expenseUids;
+	private String url;
+	private boolean combined;
+
+}
@@ -0,0 +1,16 @@
+package ch.uzh.csg.reimbursement.dto;
+
+import lombok.Data;
+
+@Data
+public class PdfBatchEventDto {
+	private String expenseUid;
+	private boolean success;
+	private String message;
+
+	public PdfBatchEventDto(String expenseUid, boolean success, String message) {
+		this.expenseUid = expenseUid;
+		this.success = success;
+		this.message = message;
+	}
+}
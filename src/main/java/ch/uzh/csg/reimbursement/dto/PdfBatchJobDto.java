@@ -0,0 +1,21 @@
+package ch.uzh.csg.reimbursement.dto;
+
+import java.util.List;
+
+import lombok.Data;
+
+@Data
+public class PdfBatchJobDto {
+	private String jobId;
+	private int total;
+	private int generated;
+	private int failed;
+	private boolean finished;
+	private boolean combinedPdfAvailable;
+	private List<PdfBatchEventDto> events;
+
+	public PdfBatchJobDto(String jobId, int total) {
+		this.jobId = jobId;
+		this.total = total;
+	}
+}
@@ -0,0 +1,18 @@
+package ch.uzh.csg.reimbursement.dto;
+
+import java.util.Set;
+
+import lombok.Data;
+import ch.uzh.csg.reimbursement.model.Expense;
+
+@Data
+public class SearchExpenseResultDto {
+
+	private Set<Expense> expenses;
+	private ExpenseFacetsDto facets;
+
+	public SearchExpenseResultDto(Set<Expense> expenses, ExpenseFacetsDto facets) {
+		this.expenses = expenses;
+		this.facets = facets;
+	}
+}
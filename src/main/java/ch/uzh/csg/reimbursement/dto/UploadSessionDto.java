@@ -0,0 +1,18 @@
+package ch.uzh.csg.reimbursement.dto;
+
+import lombok.Data;
+
+@Data
+public class UploadSessionDto {
+	private String uploadId;
+	private long size;
+	private long offset;
+	private boolean complete;
+	private String attachmentUid;
+
+	public UploadSessionDto(String uploadId, long size, long offset) {
+		this.uploadId = uploadId;
+		this.size = size;
+		this.offset = offset;
+	}
+}
@@ -0,0 +1,77 @@
+package ch.uzh.csg.reimbursement.model;
+
+import static javax.persistence.GenerationType.IDENTITY;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.GeneratedValue;
+import javax.persistence.Id;
+import javax.persistence.Table;
+import javax.persistence.Transient;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import ch.uzh.csg.reimbursement.model.exception.ServiceException;
+
+/*
+ * The gzip compressed content of a document of an archived expense. It is
+ * kept apart from Document_, so the table of the live documents stays small.
+ */
+@Entity
+@Table(name = "ColdStorageContent_")
+public class ColdStorageContent {
+
+	@Transient
+	private final Logger LOG = LoggerFactory.getLogger(ColdStorageContent.class);
+
+	@Id
+	@GeneratedValue(strategy = IDENTITY)
+	private int id;
+
+	@Column(nullable = false, updatable = false, unique = false, name = "content", columnDefinition = "blob")
+	private byte[] compressedContent;
+
+	public ColdStorageContent(byte[] content) {
+		ByteArrayOutputStream compressed = new ByteArrayOutputStream(content.length / 2 + 64);
+		try (OutputStream out = new GZIPOutputStream(compressed)) {
+			out.write(content);
+		} catch (IOException e) {
+			LOG.error("An IOException has been caught while compressing a document.", e);
+			throw new ServiceException();
+		}
+		compressedContent = compressed.toByteArray();
+		LOG.debug("ColdStorageContent constructor: " + content.length + " bytes compressed to "
+				+ compressedContent.length);
+	}
+
+	public byte[] decompress() {
+		ByteArrayOutputStream content = new ByteArrayOutputStream(compressedContent.length * 2);
+		try (InputStream in = new GZIPInputStream(new ByteArrayInputStream(compressedContent))) {
+			byte[] buffer = new byte[8192];
+			int read;
+			while ((read = in.read(buffer)) != -1) {
+				content.write(buffer, 0, read);
+			}
+		} catch (IOException e) {
+			LOG.error("An IOException has been caught while decompressing a document.", e);
+			throw new ServiceException();
+		}
+		return content.toByteArray();
+	}
+
+	/*
+	 * The default constructor is needed by Hibernate, but should not be used at
+	 * all.
+	 */
+	protected ColdStorageContent() {
+	}
+}
@@ -20,6 +20,7 @@ import javax.persistence.Transient;
 import lombok.Getter;
 import lombok.Setter;
 
+import org.hibernate.annotations.BatchSize;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.transaction.annotation.Transactional;
@@ -32,6 +33,7 @@ import com.fasterxml.jackson.annotation.JsonView;
 @Entity
 @Table(name = "CostCategory_")
 @Transactional
+@BatchSize(size = 25)
 public class CostCategory {
 
 	@Transient
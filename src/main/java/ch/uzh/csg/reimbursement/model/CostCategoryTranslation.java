@@ -13,6 +13,7 @@ import javax.persistence.Transient;
 
 import lombok.Getter;
 
+import org.hibernate.annotations.BatchSize;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.transaction.annotation.Transactional;
@@ -22,6 +23,7 @@ import ch.uzh.csg.reimbursement.dto.CostCategoryTranslationDto;
 @Entity
 @Table(name = "CostCategoryTranslation_")
 @Transactional
+@BatchSize(size = 25)
 public class CostCategoryTranslation {
 
 	@Transient
@@ -1,7 +1,9 @@
 package ch.uzh.csg.reimbursement.model;
 
 import static java.util.UUID.randomUUID;
+import static javax.persistence.CascadeType.ALL;
 import static javax.persistence.EnumType.STRING;
+import static javax.persistence.FetchType.LAZY;
 import static javax.persistence.GenerationType.IDENTITY;
 
 import java.util.Date;
@@ -11,11 +13,14 @@ import javax.persistence.Entity;
 import javax.persistence.Enumerated;
 import javax.persistence.GeneratedValue;
 import javax.persistence.Id;
+import javax.persistence.JoinColumn;
+import javax.persistence.OneToOne;
 import javax.persistence.Table;
 import javax.persistence.Transient;
 
 import lombok.Getter;
 
+import org.hibernate.annotations.BatchSize;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -27,6 +32,7 @@ import com.fasterxml.jackson.annotation.JsonView;
 
 @Entity
 @Table(name = "Document_")
+@BatchSize(size = 25)
 public class Document {
 
 	@Transient
@@ -56,10 +62,14 @@ public class Document {
 	@Column(nullable = false, updatable = true, unique = false, name = "file_size")
 	private long fileSize;
 
-	@Getter
 	@Column(nullable = false, updatable = true, unique = false, name = "content", columnDefinition = "blob")
 	private byte[] content;
 
+	@JsonIgnore
+	@OneToOne(fetch = LAZY, cascade = ALL, orphanRemoval = true)
+	@JoinColumn(name = "cold_storage_content_id")
+	private ColdStorageContent coldStorageContent;
+
 	@Getter
 	@Column(nullable = false, updatable = true, unique = false, name = "last_modified_date")
 	private Date lastModifiedDate;
@@ -78,10 +88,32 @@ public class Document {
 		this.contentType = contentType;
 		this.fileSize = fileSize;
 		this.content = content;
+		coldStorageContent = null;
 		lastModifiedDate = new Date();
 		LOG.debug("Document updated: Document updated");
 	}
 
+	// The content of a document in the cold storage is decompressed on access
+	public byte[] getContent() {
+		if (coldStorageContent != null) {
+			return coldStorageContent.decompress();
+		}
+		return content;
+	}
+
+	@JsonIgnore
+	public boolean isInColdStorage() {
+		return coldStorageContent != null;
+	}
+
+	public void moveToColdStorage() {
+		if (coldStorageContent == null) {
+			coldStorageContent = new ColdStorageContent(content);
+			content = new byte[0];
+			LOG.debug("Document moved to the cold storage: " + uid);
+		}
+	}
+
 	/*
 	 * The default constructor is needed by Hibernate, but should not be used at
 	 * all.
@@ -14,7 +14,8 @@ import lombok.Setter;
 public class EmergencyEmailSendJob extends EmailSendJob{
 
 	private String serverProtocolAndIp;
-	private Exception ex;
+	private String exceptionMessage;
+	private String exceptionStackTrace;
 	private String greeting = "Bad News!";
 	private String lead = "An unexpectet error hinders the reimbursement ifi system to perfom correctly. Please do not hesitate to correct the situation.";
 	private String message = "You receive this message because your email address is registered as support email address.";
@@ -22,7 +23,21 @@ public class EmergencyEmailSendJob extends EmailSendJob{
 
 	public EmergencyEmailSendJob(EmailHeaderInfo headerInfo, String templatePath, Exception ex, String serverProtocolAndIp) {
 		super(headerInfo, templatePath);
-		this.ex = ex;
+		this.serverProtocolAndIp = serverProtocolAndIp;
+		if(ex != null){
+			this.exceptionMessage = ex.getLocalizedMessage();
+			StringWriter sw = new StringWriter();
+			PrintWriter pw = new PrintWriter(sw);
+			ex.printStackTrace(pw);
+			this.exceptionStackTrace = sw.toString();
+		}
+	}
+
+	// Used for the digest of repeated errors, which has no single exception
+	public EmergencyEmailSendJob(EmailHeaderInfo headerInfo, String templatePath, String exceptionMessage, String exceptionStackTrace, String serverProtocolAndIp) {
+		super(headerInfo, templatePath);
+		this.exceptionMessage = exceptionMessage;
+		this.exceptionStackTrace = exceptionStackTrace;
 		this.serverProtocolAndIp = serverProtocolAndIp;
 	}
 
@@ -56,12 +71,9 @@ public class EmergencyEmailSendJob extends EmailSendJob{
 		context.put("message", message);
 		context.put("callout", callout);
 
-		if(ex != null){
-			context.put("exceptionMessage", ex.getLocalizedMessage());
-			StringWriter sw = new StringWriter();
-			PrintWriter pw = new PrintWriter(sw);
-			ex.printStackTrace(pw);
-			context.put("exceptionStackTrace", sw.toString());
+		if(exceptionMessage != null || exceptionStackTrace != null){
+			context.put("exceptionMessage", exceptionMessage);
+			context.put("exceptionStackTrace", exceptionStackTrace);
 		}
 
 
@@ -33,6 +33,10 @@ import javax.persistence.GeneratedValue;
 import javax.persistence.Id;
 import javax.persistence.JoinColumn;
 import javax.persistence.ManyToOne;
+import javax.persistence.NamedAttributeNode;
+import javax.persistence.NamedEntityGraph;
+import javax.persistence.NamedEntityGraphs;
+import javax.persistence.NamedSubgraph;
 import javax.persistence.OneToMany;
 import javax.persistence.OneToOne;
 import javax.persistence.OrderBy;
@@ -42,6 +46,7 @@ import javax.persistence.Transient;
 import lombok.Getter;
 import lombok.Setter;
 
+import org.hibernate.annotations.BatchSize;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.transaction.annotation.Transactional;
@@ -60,9 +65,31 @@ import com.fasterxml.jackson.databind.annotation.JsonSerialize;
 @Entity
 @Table(name = "Expense_")
 @Transactional
+@NamedEntityGraphs({
+	// lists on the dashboard and in the search only need the involved users
+	@NamedEntityGraph(name = Expense.GRAPH_DASHBOARD, attributeNodes = { @NamedAttributeNode("user"),
+			@NamedAttributeNode("financeAdmin"), @NamedAttributeNode("assignedManager") }),
+	// the detail view additionally shows the items with their cost categories
+	@NamedEntityGraph(name = Expense.GRAPH_DETAIL, attributeNodes = { @NamedAttributeNode("user"),
+			@NamedAttributeNode("financeAdmin"), @NamedAttributeNode("assignedManager"),
+			@NamedAttributeNode(value = "expenseItems", subgraph = "expenseItems") }, subgraphs = {
+			@NamedSubgraph(name = "expenseItems", attributeNodes = { @NamedAttributeNode(value = "costCategory", subgraph = "costCategory") }),
+			@NamedSubgraph(name = "costCategory", attributeNodes = { @NamedAttributeNode("name"),
+					@NamedAttributeNode("description"), @NamedAttributeNode("accountingPolicy") }) }),
+	// the pdf generation needs the receipts of all items
+	@NamedEntityGraph(name = Expense.GRAPH_PDF, attributeNodes = { @NamedAttributeNode("user"),
+			@NamedAttributeNode("financeAdmin"), @NamedAttributeNode("assignedManager"),
+			@NamedAttributeNode(value = "expenseItems", subgraph = "expenseItems") }, subgraphs = {
+			@NamedSubgraph(name = "expenseItems", attributeNodes = { @NamedAttributeNode("attachment"),
+					@NamedAttributeNode(value = "costCategory", subgraph = "costCategory") }),
+			@NamedSubgraph(name = "costCategory", attributeNodes = { @NamedAttributeNode("name") }) }) })
 @JsonIdentityInfo(generator = ObjectIdGenerators.PropertyGenerator.class, property = "uid")
 public class Expense {
 
+	public static final String GRAPH_DASHBOARD = "Expense.dashboard";
+	public static final String GRAPH_DETAIL = "Expense.detail";
+	public static final String GRAPH_PDF = "Expense.pdf";
+
 	@Transient
 	private final Logger LOG = LoggerFactory.getLogger(Expense.class);
 
@@ -151,6 +178,7 @@ public class Expense {
 
 	@Getter
 	@OneToMany(mappedBy = "expense", fetch = EAGER, orphanRemoval = true)
+	@BatchSize(size = 25)
 	@OrderBy("date ASC")
 	private Set<ExpenseItem> expenseItems;
 
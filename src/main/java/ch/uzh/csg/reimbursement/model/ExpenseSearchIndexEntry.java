@@ -0,0 +1,60 @@
+package ch.uzh.csg.reimbursement.model;
+
+import static javax.persistence.GenerationType.IDENTITY;
+
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.GeneratedValue;
+import javax.persistence.Id;
+import javax.persistence.JoinColumn;
+import javax.persistence.OneToOne;
+import javax.persistence.Table;
+import javax.persistence.Transient;
+
+import lombok.Getter;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/*
+ * Holds the searchable text of an expense, its items, its user and the used
+ * cost categories. The full-text index of the database is built on the
+ * content column.
+ */
+@Entity
+@Table(name = "ExpenseSearchIndex_")
+public class ExpenseSearchIndexEntry {
+
+	@Transient
+	private final Logger LOG = LoggerFactory.getLogger(ExpenseSearchIndexEntry.class);
+
+	@Id
+	@GeneratedValue(strategy = IDENTITY)
+	private int id;
+
+	@Getter
+	@OneToOne(optional = false)
+	@JoinColumn(name = "expense_id")
+	private Expense expense;
+
+	@Getter
+	@Column(nullable = false, updatable = true, unique = false, name = "content")
+	private String content;
+
+	public ExpenseSearchIndexEntry(Expense expense, String content) {
+		this.expense = expense;
+		this.content = content;
+		LOG.debug("ExpenseSearchIndexEntry constructor: ExpenseSearchIndexEntry created");
+	}
+
+	public void updateContent(String content) {
+		this.content = content;
+	}
+
+	/*
+	 * The default constructor is needed by Hibernate, but should not be used at
+	 * all.
+	 */
+	protected ExpenseSearchIndexEntry() {
+	}
+}
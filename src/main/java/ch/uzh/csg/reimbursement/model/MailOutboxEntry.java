@@ -0,0 +1,161 @@
+package ch.uzh.csg.reimbursement.model;
+
+import static ch.uzh.csg.reimbursement.model.MailOutboxState.FAILED;
+import static ch.uzh.csg.reimbursement.model.MailOutboxState.PENDING;
+import static ch.uzh.csg.reimbursement.model.MailOutboxState.SENDING;
+import static ch.uzh.csg.reimbursement.model.MailOutboxState.SENT;
+import static javax.persistence.EnumType.STRING;
+import static javax.persistence.GenerationType.IDENTITY;
+import static javax.persistence.TemporalType.TIMESTAMP;
+
+import java.util.Date;
+
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.Enumerated;
+import javax.persistence.GeneratedValue;
+import javax.persistence.Id;
+import javax.persistence.Table;
+import javax.persistence.Temporal;
+import javax.persistence.Transient;
+
+import lombok.Getter;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import ch.uzh.csg.reimbursement.dto.EmailHeaderInfo;
+
+/*
+ * A rendered email waiting in the outbox. The entry is written in the same
+ * transaction as the change that caused it and sent later by the outbox
+ * worker.
+ */
+@Entity
+@Table(name = "MailOutbox_")
+public class MailOutboxEntry {
+
+	@Transient
+	private final Logger LOG = LoggerFactory.getLogger(MailOutboxEntry.class);
+
+	private static final int MAX_ERROR_LENGTH = 1000;
+
+	@Getter
+	@Id
+	@GeneratedValue(strategy = IDENTITY)
+	private int id;
+
+	@Getter
+	@Column(nullable = false, updatable = false, unique = false, name = "from_email")
+	private String fromEmail;
+
+	@Getter
+	@Column(nullable = true, updatable = false, unique = false, name = "from_name")
+	private String fromName;
+
+	@Getter
+	@Column(nullable = false, updatable = false, unique = false, name = "to_email")
+	private String toEmail;
+
+	@Getter
+	@Column(nullable = true, updatable = false, unique = false, name = "cc_email")
+	private String ccEmail;
+
+	@Getter
+	@Column(nullable = true, updatable = false, unique = false, name = "bcc_email")
+	private String bccEmail;
+
+	@Getter
+	@Column(nullable = true, updatable = false, unique = false, name = "reply_to_email")
+	private String replyToEmail;
+
+	@Getter
+	@Column(nullable = true, updatable = false, unique = false, name = "subject")
+	private String subject;
+
+	@Getter
+	@Column(nullable = false, updatable = false, unique = false, name = "body")
+	private String body;
+
+	@Getter
+	@Enumerated(STRING)
+	@Column(nullable = false, updatable = true, unique = false, name = "state")
+	private MailOutboxState state;
+
+	@Getter
+	@Column(nullable = false, updatable = true, unique = false, name = "attempts")
+	private int attempts;
+
+	@Getter
+	@Temporal(TIMESTAMP)
+	@Column(nullable = false, updatable = true, unique = false, name = "next_attempt")
+	private Date nextAttempt;
+
+	@Temporal(TIMESTAMP)
+	@Column(nullable = true, updatable = true, unique = false, name = "claimed")
+	private Date claimed;
+
+	@Getter
+	@Column(nullable = true, updatable = true, unique = false, name = "last_error")
+	private String lastError;
+
+	@Temporal(TIMESTAMP)
+	@Column(nullable = false, updatable = false, unique = false, name = "created")
+	private Date created;
+
+	public MailOutboxEntry(EmailHeaderInfo headerInfo, String body) {
+		fromEmail = headerInfo.getFromEmail();
+		fromName = headerInfo.getFromName();
+		toEmail = headerInfo.getToEmail();
+		ccEmail = headerInfo.getCcEmail();
+		bccEmail = headerInfo.getBccEmail();
+		replyToEmail = headerInfo.getReplyToEmail();
+		subject = headerInfo.getSubject();
+		this.body = body;
+		state = PENDING;
+		attempts = 0;
+		created = new Date();
+		nextAttempt = created;
+		LOG.debug("MailOutboxEntry constructor: MailOutboxEntry created for " + toEmail);
+	}
+
+	public EmailHeaderInfo getHeaderInfo() {
+		EmailHeaderInfo headerInfo = new EmailHeaderInfo(fromEmail, fromName, toEmail, subject);
+		headerInfo.setCcEmail(ccEmail);
+		headerInfo.setBccEmail(bccEmail);
+		headerInfo.setReplyToEmail(replyToEmail);
+		return headerInfo;
+	}
+
+	public void claim() {
+		state = SENDING;
+		claimed = new Date();
+		attempts++;
+	}
+
+	public void sent() {
+		state = SENT;
+		lastError = null;
+	}
+
+	// The delay before the next attempt doubles with every failed attempt
+	public void failed(String error, int maxAttempts, long retryBackoffInMilliseconds) {
+		lastError = error != null && error.length() > MAX_ERROR_LENGTH ? error.substring(0, MAX_ERROR_LENGTH) : error;
+
+		if (attempts >= maxAttempts) {
+			state = FAILED;
+			LOG.warn("The email to " + toEmail + " could not be sent after " + attempts + " attempts: " + lastError);
+		} else {
+			state = PENDING;
+			long delay = retryBackoffInMilliseconds << Math.min(attempts - 1, 20);
+			nextAttempt = new Date(System.currentTimeMillis() + delay);
+		}
+	}
+
+	/*
+	 * The default constructor is needed by Hibernate, but should not be used at
+	 * all.
+	 */
+	protected MailOutboxEntry() {
+	}
+}
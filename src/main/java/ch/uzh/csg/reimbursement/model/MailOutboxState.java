@@ -0,0 +1,6 @@
+package ch.uzh.csg.reimbursement.model;
+
+public enum MailOutboxState {
+
+	PENDING, SENDING, SENT, FAILED;
+}
@@ -0,0 +1,16 @@
+package ch.uzh.csg.reimbursement.model;
+
+public enum NotificationFrequency {
+
+	IMMEDIATE(0), HOURLY(60 * 60 * 1000L), DAILY(24 * 60 * 60 * 1000L);
+
+	private final long intervalInMilliseconds;
+
+	private NotificationFrequency(long intervalInMilliseconds) {
+		this.intervalInMilliseconds = intervalInMilliseconds;
+	}
+
+	public long getIntervalInMilliseconds() {
+		return intervalInMilliseconds;
+	}
+}
@@ -25,6 +25,7 @@ import org.slf4j.LoggerFactory;
 
 import ch.uzh.csg.reimbursement.model.exception.SignatureCroppingException;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonProperty;
 
 @Entity
@@ -62,6 +63,11 @@ public class Signature {
 	@Column(nullable = true, updatable = true, unique = false, name = "crop_left")
 	private int cropLeft;
 
+	// Changes with every cropping, the cached images of the PDF generation are
+	// keyed by it
+	@Column(nullable = false, updatable = true, unique = false, name = "crop_version")
+	private int cropVersion;
+
 	public Signature(String contentType, long fileSize, byte[] content) {
 		this.contentType = contentType;
 		this.fileSize = fileSize;
@@ -75,9 +81,15 @@ public class Signature {
 		cropTop = top;
 		cropLeft = left;
 		content = cropImage();
+		cropVersion++;
 		LOG.debug("addCropping: method called");
 	}
 
+	@JsonIgnore
+	public String getCacheKey() {
+		return id + ":" + cropVersion;
+	}
+
 	private byte[] cropImage() {
 		byte[] croppedImageInByte = null;
 
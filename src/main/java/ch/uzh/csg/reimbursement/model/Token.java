@@ -61,7 +61,7 @@ public class Token {
 	private String content;
 
 	@Getter
-	@Column(nullable = false, updatable = false, unique = false, name = "created")
+	@Column(nullable = false, updatable = true, unique = false, name = "created")
 	private Calendar created;
 
 	public Token(TokenType type, User user) {
@@ -1,16 +1,22 @@
 package ch.uzh.csg.reimbursement.model;
 
 import static ch.uzh.csg.reimbursement.model.Language.DE;
+import static ch.uzh.csg.reimbursement.model.NotificationFrequency.IMMEDIATE;
 import static ch.uzh.csg.reimbursement.model.Role.REGISTERED_USER;
 import static ch.uzh.csg.reimbursement.model.Role.USER;
+import static java.util.Calendar.HOUR_OF_DAY;
 import static java.util.Collections.unmodifiableSet;
 import static javax.persistence.CascadeType.ALL;
 import static javax.persistence.EnumType.STRING;
 import static javax.persistence.FetchType.EAGER;
 import static javax.persistence.FetchType.LAZY;
 import static javax.persistence.GenerationType.IDENTITY;
+import static javax.persistence.TemporalType.TIMESTAMP;
 
 import java.io.IOException;
+import java.util.Calendar;
+import java.util.Date;
+import java.util.GregorianCalendar;
 import java.util.HashSet;
 import java.util.Set;
 
@@ -26,16 +32,19 @@ import javax.persistence.ManyToOne;
 import javax.persistence.OneToMany;
 import javax.persistence.OneToOne;
 import javax.persistence.Table;
+import javax.persistence.Temporal;
 import javax.persistence.Transient;
 
 import lombok.Getter;
 import lombok.Setter;
 
+import org.hibernate.annotations.BatchSize;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.transaction.annotation.Transactional;
 import org.springframework.web.multipart.MultipartFile;
 
+import ch.uzh.csg.reimbursement.model.exception.InvalidQuietHoursException;
 import ch.uzh.csg.reimbursement.model.exception.MaxFileSizeViolationException;
 import ch.uzh.csg.reimbursement.model.exception.MinFileSizeViolationException;
 import ch.uzh.csg.reimbursement.model.exception.ServiceException;
@@ -52,6 +61,7 @@ import com.fasterxml.jackson.databind.annotation.JsonSerialize;
 @Entity
 @Table(name = "User_")
 @Transactional
+@BatchSize(size = 25)
 @JsonIgnoreProperties({ "signature" })
 @JsonIdentityInfo(generator = ObjectIdGenerators.PropertyGenerator.class, property = "uid")
 public class User {
@@ -59,6 +69,13 @@ public class User {
 	@Transient
 	private final Logger LOG = LoggerFactory.getLogger(User.class);
 
+	// PropertyProvider can't be removed and replaced with @Value
+	// because this is another context, the limits are parsed once
+	private static final long MIN_SIGNATURE_SIZE = Long.parseLong(PropertyProvider.INSTANCE
+			.getProperty("reimbursement.filesize.minUploadFileSize"));
+	private static final long MAX_SIGNATURE_SIZE = Long.parseLong(PropertyProvider.INSTANCE
+			.getProperty("reimbursement.filesize.maxSignatureUploadSize"));
+
 	@Id
 	@GeneratedValue(strategy = IDENTITY)
 	private int id;
@@ -99,6 +116,7 @@ public class User {
 	private String managerName;
 
 	@ElementCollection(fetch = EAGER, targetClass = Role.class)
+	@BatchSize(size = 25)
 	@JoinTable(name = "Role_", joinColumns = @JoinColumn(name = "user_id"))
 	@Column(nullable = false, updatable = true, unique = false, name = "role")
 	@Enumerated(STRING)
@@ -129,6 +147,25 @@ public class User {
 	@Column(nullable = false, updatable = true, unique = false, name = "language")
 	private Language language;
 
+	@Getter
+	@Setter
+	@Enumerated(STRING)
+	@Column(nullable = false, updatable = true, unique = false, name = "notification_frequency")
+	private NotificationFrequency notificationFrequency;
+
+	@Getter
+	@Column(nullable = true, updatable = true, unique = false, name = "quiet_hours_start")
+	private Integer quietHoursStart;
+
+	@Getter
+	@Column(nullable = true, updatable = true, unique = false, name = "quiet_hours_end")
+	private Integer quietHoursEnd;
+
+	@JsonIgnore
+	@Temporal(TIMESTAMP)
+	@Column(nullable = true, updatable = true, unique = false, name = "last_notification")
+	private Date lastNotification;
+
 	public User(String firstName, String lastName, String uid, String email, String managerName, Set<Role> ldapRoles) {
 		this.firstName = firstName;
 		this.lastName = lastName;
@@ -137,23 +174,16 @@ public class User {
 		this.managerName = managerName;
 		setRoles(ldapRoles);
 		setLanguage(DE);
+		setNotificationFrequency(IMMEDIATE);
 		LOG.debug("User constructor: User created");
 	}
 
 	public void setSignature(MultipartFile multipartFile) {
-		// PropertyProvider can't be removed and replaced with @Value
-		// because this is another context
-		if (multipartFile.getSize() <= Long.parseLong(PropertyProvider.INSTANCE
-				.getProperty("reimbursement.filesize.minUploadFileSize"))) {
-			LOG.debug("File too small, allowed: "
-					+ PropertyProvider.INSTANCE.getProperty("reimbursement.filesize.minUploadFileSize")
-					+ " actual: " + multipartFile.getSize());
+		if (multipartFile.getSize() <= MIN_SIGNATURE_SIZE) {
+			LOG.debug("File too small, allowed: " + MIN_SIGNATURE_SIZE + " actual: " + multipartFile.getSize());
 			throw new MinFileSizeViolationException();
-		} else if (multipartFile.getSize() >= Long.parseLong(PropertyProvider.INSTANCE
-				.getProperty("reimbursement.filesize.maxUploadFileSize"))) {
-			LOG.debug("File to big, allowed: "
-					+ PropertyProvider.INSTANCE.getProperty("reimbursement.filesize.maxUploadFileSize")
-					+ " actual: " + multipartFile.getSize());
+		} else if (multipartFile.getSize() >= MAX_SIGNATURE_SIZE) {
+			LOG.debug("File to big, allowed: " + MAX_SIGNATURE_SIZE + " actual: " + multipartFile.getSize());
 			throw new MaxFileSizeViolationException();
 		} else {
 			byte[] content = null;
@@ -196,6 +226,43 @@ public class User {
 		roles.add(REGISTERED_USER);
 	}
 
+	/*
+	 * Both hours or none have to be given. The window may span midnight, e.g.
+	 * from 22 to 7.
+	 */
+	public void setQuietHours(Integer start, Integer end) {
+		if ((start == null) != (end == null) || (start != null && (start < 0 || start > 23 || end < 0 || end > 23))) {
+			throw new InvalidQuietHoursException();
+		}
+		quietHoursStart = start;
+		quietHoursEnd = end;
+	}
+
+	/*
+	 * A notification is held back during the quiet hours and until the
+	 * interval of the notification frequency has passed since the last one.
+	 */
+	public boolean isNotificationDue(Date now) {
+		if (quietHoursStart != null && quietHoursEnd != null) {
+			Calendar calendar = new GregorianCalendar();
+			calendar.setTime(now);
+			int hour = calendar.get(HOUR_OF_DAY);
+			boolean quiet = quietHoursStart <= quietHoursEnd ? hour >= quietHoursStart && hour < quietHoursEnd
+					: hour >= quietHoursStart || hour < quietHoursEnd;
+			if (quiet) {
+				return false;
+			}
+		}
+
+		NotificationFrequency frequency = notificationFrequency == null ? IMMEDIATE : notificationFrequency;
+		return lastNotification == null
+				|| now.getTime() - lastNotification.getTime() >= frequency.getIntervalInMilliseconds();
+	}
+
+	public void notificationSent(Date now) {
+		lastNotification = now;
+	}
+
 	/*
 	 * The default constructor is needed by Hibernate, but should not be used at
 	 * all.
@@ -0,0 +1,9 @@
+package ch.uzh.csg.reimbursement.model.exception;
+
+@SuppressWarnings("serial")
+public class ChunkChecksumMismatchException extends UploadException {
+	private final static String MESSAGE = "The checksum of the chunk does not match its content.";
+	public ChunkChecksumMismatchException() {
+		super(MESSAGE);
+	}
+}
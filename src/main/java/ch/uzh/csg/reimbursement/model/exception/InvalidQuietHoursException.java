@@ -0,0 +1,9 @@
+package ch.uzh.csg.reimbursement.model.exception;
+
+@SuppressWarnings("serial")
+public class InvalidQuietHoursException extends UserException {
+	private final static String MESSAGE = "The quiet hours have to be between 0 and 23 and be given both or not at all.";
+	public InvalidQuietHoursException(){
+		super(MESSAGE);
+	}
+}
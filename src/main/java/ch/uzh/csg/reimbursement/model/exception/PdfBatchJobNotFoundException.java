@@ -0,0 +1,9 @@
+package ch.uzh.csg.reimbursement.model.exception;
+
+@SuppressWarnings("serial")
+public class PdfBatchJobNotFoundException extends BusinessException {
+	private final static String MESSAGE = "The PDF print run has not been found or has expired.";
+	public PdfBatchJobNotFoundException() {
+		super(MESSAGE);
+	}
+}
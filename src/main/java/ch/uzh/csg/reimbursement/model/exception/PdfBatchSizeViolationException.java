@@ -0,0 +1,9 @@
+package ch.uzh.csg.reimbursement.model.exception;
+
+@SuppressWarnings("serial")
+public class PdfBatchSizeViolationException extends BusinessException {
+	private final static String MESSAGE = "The number of expenses of the PDF print run is not allowed.";
+	public PdfBatchSizeViolationException() {
+		super(MESSAGE);
+	}
+}
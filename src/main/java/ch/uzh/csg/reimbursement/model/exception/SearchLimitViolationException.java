@@ -0,0 +1,9 @@
+package ch.uzh.csg.reimbursement.model.exception;
+
+@SuppressWarnings("serial")
+public class SearchLimitViolationException extends BusinessException {
+	private final static String MESSAGE = "The number of results of the full-text search is not allowed.";
+	public SearchLimitViolationException() {
+		super(MESSAGE);
+	}
+}
@@ -0,0 +1,8 @@
+package ch.uzh.csg.reimbursement.model.exception;
+
+@SuppressWarnings("serial")
+public abstract class UploadException extends BusinessException {
+	public UploadException(String message) {
+		super(message);
+	}
+}
@@ -0,0 +1,9 @@
+package ch.uzh.csg.reimbursement.model.exception;
+
+@SuppressWarnings("serial")
+public class UploadOffsetMismatchException extends UploadException {
+	private final static String MESSAGE = "The chunk does not start at the current offset of the upload.";
+	public UploadOffsetMismatchException() {
+		super(MESSAGE);
+	}
+}
@@ -0,0 +1,9 @@
+package ch.uzh.csg.reimbursement.model.exception;
+
+@SuppressWarnings("serial")
+public class UploadSessionNotFoundException extends UploadException {
+	private final static String MESSAGE = "The upload has not been found or has expired.";
+	public UploadSessionNotFoundException() {
+		super(MESSAGE);
+	}
+}
@@ -0,0 +1,58 @@
+package ch.uzh.csg.reimbursement.repository;
+
+import static ch.uzh.csg.reimbursement.configuration.BuildLevel.DEVELOPMENT;
+
+import java.util.Collection;
+
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import javax.persistence.Query;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import ch.uzh.csg.reimbursement.configuration.BuildLevel;
+
+/*
+ * Queues many email receivers with one statement. Receivers which are
+ * already queued are skipped by the database, which relies on the unique
+ * constraint on the uid. The development build runs on H2, all others on
+ * Postgres.
+ */
+@Service
+public class EmailReceiverBatchRepository {
+
+	@PersistenceContext
+	private EntityManager entityManager;
+
+	@Value("${reimbursement.buildLevel}")
+	private BuildLevel buildLevel;
+
+	public int insertAll(Collection<String> uids) {
+		if (uids.isEmpty()) {
+			return 0;
+		}
+
+		StringBuilder values = new StringBuilder();
+		for (int i = 1; i <= uids.size(); i++) {
+			if (i > 1) {
+				values.append(", ");
+			}
+			values.append("(?").append(i).append(')');
+		}
+
+		String sql;
+		if (buildLevel == DEVELOPMENT) {
+			sql = "MERGE INTO EmailReceiver_ (uid) KEY (uid) VALUES " + values;
+		} else {
+			sql = "INSERT INTO EmailReceiver_ (uid) VALUES " + values + " ON CONFLICT (uid) DO NOTHING";
+		}
+
+		Query query = entityManager.createNativeQuery(sql);
+		int position = 1;
+		for (String uid : uids) {
+			query.setParameter(position++, uid);
+		}
+		return query.executeUpdate();
+	}
+}
@@ -0,0 +1,85 @@
+package ch.uzh.csg.reimbursement.repository;
+
+import static javax.persistence.criteria.JoinType.LEFT;
+
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import javax.persistence.criteria.CriteriaBuilder;
+import javax.persistence.criteria.CriteriaQuery;
+import javax.persistence.criteria.Join;
+import javax.persistence.criteria.Root;
+
+import org.hibernate.CacheMode;
+import org.hibernate.Query;
+import org.hibernate.ScrollMode;
+import org.hibernate.ScrollableResults;
+import org.springframework.stereotype.Service;
+
+import ch.uzh.csg.reimbursement.model.CostCategory;
+import ch.uzh.csg.reimbursement.model.CostCategoryTranslation;
+import ch.uzh.csg.reimbursement.model.Expense;
+import ch.uzh.csg.reimbursement.model.ExpenseItem;
+import ch.uzh.csg.reimbursement.model.User;
+
+/*
+ * Reads the result of a search row by row, so that exports do not have to
+ * hold the whole result in memory. Only the exported columns are selected, no
+ * entities are loaded into the persistence context.
+ */
+@Service
+public class ExpenseExportRepository {
+
+	private static final int FETCH_SIZE = 100;
+
+	/*
+	 * Every row of the scroll holds these columns in this order. There is one
+	 * row per expense-item, an expense without items gets one row with the
+	 * item columns set to null. The rows of an expense follow each other.
+	 */
+	public static final int EXPENSE_UID = 0;
+	public static final int EXPENSE_DATE = 1;
+	public static final int STATE = 2;
+	public static final int ACCOUNTING = 3;
+	public static final int USER_UID = 4;
+	public static final int FIRST_NAME = 5;
+	public static final int LAST_NAME = 6;
+	public static final int ASSIGNED_MANAGER_UID = 7;
+	public static final int FINANCE_ADMIN_UID = 8;
+	public static final int ITEM_UID = 9;
+	public static final int ITEM_DATE = 10;
+	public static final int ACCOUNT_NUMBER = 11;
+	public static final int COST_CATEGORY = 12;
+	public static final int EXPLANATION = 13;
+	public static final int PROJECT = 14;
+	public static final int CURRENCY = 15;
+	public static final int ORIGINAL_AMOUNT = 16;
+	public static final int EXCHANGE_RATE = 17;
+	public static final int CALCULATED_AMOUNT = 18;
+
+	@PersistenceContext
+	private EntityManager entityManager;
+
+	// The caller has to close the returned results
+	public ScrollableResults scroll(ExpenseSearchSpecification specification) {
+		CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+		CriteriaQuery<Object[]> query = cb.createQuery(Object[].class);
+		Root<Expense> expense = query.from(Expense.class);
+		Join<Expense, User> user = expense.join("user");
+		Join<Expense, User> assignedManager = expense.join("assignedManager", LEFT);
+		Join<Expense, User> financeAdmin = expense.join("financeAdmin", LEFT);
+		Join<Expense, ExpenseItem> item = expense.join("expenseItems", LEFT);
+		Join<ExpenseItem, CostCategory> costCategory = item.join("costCategory", LEFT);
+		Join<CostCategory, CostCategoryTranslation> costCategoryName = costCategory.join("name", LEFT);
+
+		query.multiselect(expense.get("uid"), expense.get("date"), expense.get("state"), expense.get("accounting"),
+				user.get("uid"), user.get("firstName"), user.get("lastName"), assignedManager.get("uid"),
+				financeAdmin.get("uid"), item.get("uid"), item.get("date"), costCategory.get("accountNumber"),
+				costCategoryName.get("de"), item.get("explanation"), item.get("project"), item.get("currency"),
+				item.get("originalAmount"), item.get("exchangeRate"), item.get("calculatedAmount"));
+		query.where(specification.toPredicate(expense, query, cb)).orderBy(cb.asc(expense.get("id")),
+				cb.asc(item.get("date")), cb.asc(item.get("id")));
+
+		return entityManager.createQuery(query).unwrap(Query.class).setReadOnly(true).setFetchSize(FETCH_SIZE)
+				.setCacheMode(CacheMode.IGNORE).scroll(ScrollMode.FORWARD_ONLY);
+	}
+}
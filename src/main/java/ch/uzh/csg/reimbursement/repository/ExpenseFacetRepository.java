@@ -0,0 +1,127 @@
+package ch.uzh.csg.reimbursement.repository;
+
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import javax.persistence.criteria.CriteriaBuilder;
+import javax.persistence.criteria.CriteriaQuery;
+import javax.persistence.criteria.Expression;
+import javax.persistence.criteria.Join;
+import javax.persistence.criteria.JoinType;
+import javax.persistence.criteria.Path;
+import javax.persistence.criteria.Root;
+
+import org.springframework.stereotype.Service;
+
+import ch.uzh.csg.reimbursement.dto.ExpenseFacetsDto;
+import ch.uzh.csg.reimbursement.model.Expense;
+import ch.uzh.csg.reimbursement.model.ExpenseItem;
+
+/*
+ * Counts the expenses matching a search per state, cost category, month,
+ * assigned manager and currency. Every facet is a single grouped query over
+ * the same filter as the search itself.
+ */
+@Service
+public class ExpenseFacetRepository {
+
+	@PersistenceContext
+	private EntityManager entityManager;
+
+	public ExpenseFacetsDto countFacets(ExpenseSearchSpecification specification) {
+		ExpenseFacetsDto facets = new ExpenseFacetsDto();
+		facets.setTotalNumberOfExpenses(countTotal(specification));
+		facets.setStates(countByState(specification));
+		facets.setCostCategories(countByCostCategory(specification));
+		facets.setMonths(countByMonth(specification));
+		facets.setAssignedManagers(countByAssignedManager(specification));
+		facets.setCurrencies(countByCurrency(specification));
+		return facets;
+	}
+
+	private long countTotal(ExpenseSearchSpecification specification) {
+		CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+		CriteriaQuery<Long> query = cb.createQuery(Long.class);
+		Root<Expense> expense = query.from(Expense.class);
+
+		query.select(cb.count(expense)).where(specification.toPredicate(expense, query, cb));
+		return entityManager.createQuery(query).getSingleResult();
+	}
+
+	private Map<String, Long> countByState(ExpenseSearchSpecification specification) {
+		CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+		CriteriaQuery<Object[]> query = cb.createQuery(Object[].class);
+		Root<Expense> expense = query.from(Expense.class);
+		Path<Object> state = expense.get("state");
+
+		query.multiselect(state, cb.count(expense)).where(specification.toPredicate(expense, query, cb))
+		.groupBy(state);
+		return toCounts(entityManager.createQuery(query).getResultList());
+	}
+
+	// An expense is counted once per cost category, even with several items
+	private Map<String, Long> countByCostCategory(ExpenseSearchSpecification specification) {
+		CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+		CriteriaQuery<Object[]> query = cb.createQuery(Object[].class);
+		Root<Expense> expense = query.from(Expense.class);
+		Join<ExpenseItem, Object> costCategory = expense.<Expense, ExpenseItem> join("expenseItems").join(
+				"costCategory");
+		Path<Object> uid = costCategory.get("uid");
+
+		query.multiselect(uid, cb.countDistinct(expense)).where(specification.toPredicate(expense, query, cb))
+		.groupBy(uid);
+		return toCounts(entityManager.createQuery(query).getResultList());
+	}
+
+	private Map<String, Long> countByMonth(ExpenseSearchSpecification specification) {
+		CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+		CriteriaQuery<Object[]> query = cb.createQuery(Object[].class);
+		Root<Expense> expense = query.from(Expense.class);
+		Expression<Integer> year = cb.function("year", Integer.class, expense.get("date"));
+		Expression<Integer> month = cb.function("month", Integer.class, expense.get("date"));
+
+		query.multiselect(year, month, cb.count(expense)).where(specification.toPredicate(expense, query, cb))
+		.groupBy(year, month);
+
+		Map<String, Long> counts = new TreeMap<String, Long>();
+		for (Object[] row : entityManager.createQuery(query).getResultList()) {
+			counts.put(String.format("%04d-%02d", row[0], row[1]), (Long) row[2]);
+		}
+		return counts;
+	}
+
+	// Expenses without an assigned manager are not part of this facet
+	private Map<String, Long> countByAssignedManager(ExpenseSearchSpecification specification) {
+		CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+		CriteriaQuery<Object[]> query = cb.createQuery(Object[].class);
+		Root<Expense> expense = query.from(Expense.class);
+		Path<Object> uid = expense.join("assignedManager", JoinType.INNER).get("uid");
+
+		query.multiselect(uid, cb.count(expense)).where(specification.toPredicate(expense, query, cb)).groupBy(uid);
+		return toCounts(entityManager.createQuery(query).getResultList());
+	}
+
+	private Map<String, Long> countByCurrency(ExpenseSearchSpecification specification) {
+		CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+		CriteriaQuery<Object[]> query = cb.createQuery(Object[].class);
+		Root<Expense> expense = query.from(Expense.class);
+		Path<Object> currency = expense.join("expenseItems").get("currency");
+
+		query.multiselect(currency, cb.countDistinct(expense)).where(specification.toPredicate(expense, query, cb))
+		.groupBy(currency);
+		return toCounts(entityManager.createQuery(query).getResultList());
+	}
+
+	private Map<String, Long> toCounts(List<Object[]> rows) {
+		Map<String, Long> counts = new TreeMap<String, Long>();
+		for (Object[] row : rows) {
+			if (row[0] != null) {
+				counts.put(row[0].toString(), (Long) row[1]);
+			}
+		}
+		return counts;
+	}
+}
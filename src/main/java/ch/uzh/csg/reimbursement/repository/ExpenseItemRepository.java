@@ -1,9 +1,14 @@
 package ch.uzh.csg.reimbursement.repository;
 
+import java.util.List;
+
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 
+import ch.uzh.csg.reimbursement.model.Document;
+import ch.uzh.csg.reimbursement.model.Expense;
 import ch.uzh.csg.reimbursement.model.ExpenseItem;
 
 public interface ExpenseItemRepository extends JpaRepository<ExpenseItem, Integer> {
@@ -11,4 +16,10 @@ public interface ExpenseItemRepository extends JpaRepository<ExpenseItem, Intege
 	@Query("SELECT e FROM ExpenseItem e WHERE e.uid = :uid")
 	public ExpenseItem findByUid(@Param("uid") String uid);
 
+	@Query("SELECT e FROM ExpenseItem e WHERE e.expense = :expense")
+	public List<ExpenseItem> findAllByExpense(@Param("expense") Expense expense);
+
+	@Query("SELECT d FROM ExpenseItem e JOIN e.attachment d WHERE e.expense.state = 'ARCHIVED' AND d.coldStorageContent IS NULL")
+	public List<Document> findArchivedAttachmentsNotInColdStorage(Pageable pageable);
+
 }
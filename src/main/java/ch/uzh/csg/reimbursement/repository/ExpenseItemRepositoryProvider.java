@@ -1,8 +1,13 @@
 package ch.uzh.csg.reimbursement.repository;
 
+import java.util.List;
+
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.stereotype.Service;
 
+import ch.uzh.csg.reimbursement.model.Document;
+import ch.uzh.csg.reimbursement.model.Expense;
 import ch.uzh.csg.reimbursement.model.ExpenseItem;
 
 @Service
@@ -21,8 +26,18 @@ public class ExpenseItemRepositoryProvider {
 		return expenseItemRepository.findByUid(uid);
 	}
 
+	public List<ExpenseItem> findAllByExpense(Expense expense) {
+
+		return expenseItemRepository.findAllByExpense(expense);
+	}
+
 	public void delete(ExpenseItem expenseItem) {
 
 		expenseItemRepository.delete(expenseItem);
 	}
+
+	public List<Document> findArchivedAttachmentsNotInColdStorage(int limit) {
+
+		return expenseItemRepository.findArchivedAttachmentsNotInColdStorage(new PageRequest(0, limit));
+	}
 }
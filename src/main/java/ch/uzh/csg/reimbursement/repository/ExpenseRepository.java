@@ -4,37 +4,83 @@ import java.util.Date;
 import java.util.List;
 import java.util.Set;
 
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.domain.Specification;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 
 import ch.uzh.csg.reimbursement.model.CostCategory;
+import ch.uzh.csg.reimbursement.model.Document;
 import ch.uzh.csg.reimbursement.model.Expense;
 import ch.uzh.csg.reimbursement.model.ExpenseState;
 import ch.uzh.csg.reimbursement.model.User;
 
-public interface ExpenseRepository extends JpaRepository<Expense, Integer> {
+public interface ExpenseRepository extends JpaRepository<Expense, Integer>, JpaSpecificationExecutor<Expense> {
 
+	@EntityGraph(Expense.GRAPH_DETAIL)
 	@Query("SELECT e FROM Expense e WHERE e.uid = :uid")
 	public Expense findByUid(@Param("uid") String uid);
 
+	@EntityGraph(Expense.GRAPH_PDF)
+	@Query("SELECT e FROM Expense e WHERE e.uid = :uid")
+	public Expense findByUidForPdf(@Param("uid") String uid);
+
+	@EntityGraph(Expense.GRAPH_DASHBOARD)
 	@Query("SELECT e FROM Expense e JOIN e.user user WHERE user.uid = :uid AND NOT e.state = 'ARCHIVED'")
 	public Set<Expense> findAllByUser(@Param("uid") String uid);
 
+	@EntityGraph(Expense.GRAPH_DASHBOARD)
 	@Query("SELECT e FROM Expense e JOIN e.assignedManager assignedManager WHERE assignedManager = :user AND NOT (e.state = 'ARCHIVED' OR e.state = 'PRINTED')")
 	public Set<Expense> findAllByAssignedManager(@Param("user") User user);
 
+	@EntityGraph(Expense.GRAPH_DASHBOARD)
 	@Query("SELECT e FROM Expense e JOIN e.financeAdmin financeAdmin WHERE financeAdmin = :user AND NOT e.user = :user AND NOT (e.state = 'ARCHIVED' OR e.state = 'PRINTED')")
 	public Set<Expense> findAllByFinanceAdmin(@Param("user") User user);
 
+	@EntityGraph(Expense.GRAPH_DASHBOARD)
 	@Query("SELECT e FROM Expense e WHERE e.state = :state AND NOT e.user = :user")
 	public Set<Expense> findAllByStateWithoutUser(@Param("state") ExpenseState state, @Param("user") User user);
 
+	@EntityGraph(Expense.GRAPH_DASHBOARD)
 	@Query("SELECT e FROM Expense e WHERE e.state = :state AND e.user = :user")
 	public Set<Expense> findAllByStateForUser(@Param("state") ExpenseState state, @Param("user") User user);
 
-	@Query("SELECT e FROM Expense e LEFT OUTER JOIN e.expenseItems expenseItems WHERE (expenseItems.costCategory = :costCategory OR:costCategory is null) AND lower(e.accounting) LIKE lower(:accountingText) AND e.user IN :relevantUsers AND e.date >= :startTime AND e.date <= :endTime AND (e.state = :state OR:state is null)")
-	public Set<Expense> search(@Param("relevantUsers") List<User> relevantUsers, @Param("accountingText") String accountingText, @Param("startTime") Date startTime, @Param("endTime") Date endTime, @Param("state") ExpenseState state, @Param("costCategory") CostCategory costCategory);
+	// The state is a literal, so the query can use the partial index of the
+	// archived expenses
+	@EntityGraph(Expense.GRAPH_DASHBOARD)
+	@Query("SELECT e FROM Expense e WHERE e.state = 'ARCHIVED' AND e.user = :user")
+	public Set<Expense> findArchiveByUser(@Param("user") User user);
+
+	@EntityGraph(Expense.GRAPH_DASHBOARD)
+	@Query("SELECT e FROM Expense e WHERE e.uid IN :uids")
+	public List<Expense> findAllByUids(@Param("uids") List<String> uids);
+
+	@Query("SELECT e FROM Expense e WHERE e.user = :user")
+	public List<Expense> findAllByUserWithArchived(@Param("user") User user);
+
+	@Query("SELECT DISTINCT i.expense FROM ExpenseItem i WHERE i.costCategory = :costCategory")
+	public List<Expense> findAllByCostCategory(@Param("costCategory") CostCategory costCategory);
+
+	@Override
+	@EntityGraph(Expense.GRAPH_DASHBOARD)
+	public List<Expense> findAll(Specification<Expense> specification);
+
+	// Per email receiver and state: own expenses, expenses assigned to the
+	// receiver as finance admin and as manager, unassigned expenses of others
+	@Query("SELECT r.uid, e.state, "
+			+ "SUM(CASE WHEN e.user.id = u.id THEN 1 ELSE 0 END), "
+			+ "SUM(CASE WHEN e.financeAdmin.id = u.id AND NOT e.user.id = u.id THEN 1 ELSE 0 END), "
+			+ "SUM(CASE WHEN e.assignedManager.id = u.id THEN 1 ELSE 0 END), "
+			+ "SUM(CASE WHEN e.state = 'TO_BE_ASSIGNED' AND NOT e.user.id = u.id THEN 1 ELSE 0 END) "
+			+ "FROM EmailReceiver r, User u, Expense e WHERE u.uid = r.uid "
+			+ "AND e.state IN ('TO_SIGN_BY_USER', 'SIGNED', 'TO_BE_ASSIGNED', 'ASSIGNED_TO_FINANCE_ADMIN', 'TO_SIGN_BY_FINANCE_ADMIN', 'ASSIGNED_TO_MANAGER', 'TO_SIGN_BY_MANAGER') "
+			+ "AND (e.user.id = u.id OR e.financeAdmin.id = u.id OR e.assignedManager.id = u.id OR e.state = 'TO_BE_ASSIGNED') "
+			+ "GROUP BY r.uid, e.state")
+	public List<Object[]> countNotificationsOfEmailReceivers();
 
 	@Query("SELECT COUNT(e) FROM Expense e WHERE e.state = :state")
 	public int countByState(@Param("state") ExpenseState state);
@@ -48,4 +94,12 @@ public interface ExpenseRepository extends JpaRepository<Expense, Integer> {
 	@Query("SELECT e FROM Expense e WHERE e.state = 'PRINTED'")
 	public List<Expense> getPrintedExpenses();
 
+	@Modifying
+	@Query("UPDATE Expense e SET e.state = :archived, e.date = :now WHERE e.state = :printed AND e.date < :dateBefore")
+	public int archivePrintedBefore(@Param("printed") ExpenseState printed, @Param("archived") ExpenseState archived,
+			@Param("dateBefore") Date dateBefore, @Param("now") Date now);
+
+	@Query("SELECT d FROM Expense e JOIN e.expensePdf d WHERE e.state = 'ARCHIVED' AND d.coldStorageContent IS NULL")
+	public List<Document> findArchivedPdfsNotInColdStorage(Pageable pageable);
+
 }
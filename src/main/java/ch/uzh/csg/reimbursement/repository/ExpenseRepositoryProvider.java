@@ -1,13 +1,20 @@
 package ch.uzh.csg.reimbursement.repository;
 
+import static ch.uzh.csg.reimbursement.model.ExpenseState.ARCHIVED;
+import static ch.uzh.csg.reimbursement.model.ExpenseState.PRINTED;
+
 import java.util.Date;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Set;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.stereotype.Service;
 
+import ch.uzh.csg.reimbursement.dto.ExpenseFacetsDto;
 import ch.uzh.csg.reimbursement.model.CostCategory;
+import ch.uzh.csg.reimbursement.model.Document;
 import ch.uzh.csg.reimbursement.model.Expense;
 import ch.uzh.csg.reimbursement.model.ExpenseState;
 import ch.uzh.csg.reimbursement.model.User;
@@ -18,6 +25,9 @@ public class ExpenseRepositoryProvider {
 	@Autowired
 	private ExpenseRepository repository;
 
+	@Autowired
+	private ExpenseFacetRepository facetRepository;
+
 	public void create(Expense expense) {
 
 		repository.save(expense);
@@ -33,6 +43,11 @@ public class ExpenseRepositoryProvider {
 		return repository.findByUid(uid);
 	}
 
+	public Expense findByUidForPdf(String uid) {
+
+		return repository.findByUidForPdf(uid);
+	}
+
 	public Set<Expense> findAllByAssignedManager(User user) {
 
 		return repository.findAllByAssignedManager(user);
@@ -53,13 +68,41 @@ public class ExpenseRepositoryProvider {
 		return repository.findAllByStateForUser(state, user);
 	}
 
+	public Set<Expense> findArchiveByUser(User user) {
+
+		return repository.findArchiveByUser(user);
+	}
+
+	public List<Expense> findAllByUserWithArchived(User user) {
+
+		return repository.findAllByUserWithArchived(user);
+	}
+
+	public List<Expense> findAllByCostCategory(CostCategory costCategory) {
+
+		return repository.findAllByCostCategory(costCategory);
+	}
+
+	public List<Expense> findAllByUids(List<String> uids) {
+
+		return repository.findAllByUids(uids);
+	}
+
 	public void delete(Expense expense) {
 
 		repository.delete(expense);
 	}
 
-	public Set<Expense> search(List<User> relevantUsers, String accountingText, Date startTime, Date endTime, ExpenseState state, CostCategory costCategory) {
-		return repository.search(relevantUsers, accountingText, startTime, endTime, state, costCategory);
+	public Set<Expense> search(ExpenseSearchSpecification specification) {
+		return new LinkedHashSet<Expense>(repository.findAll(specification));
+	}
+
+	public ExpenseFacetsDto countFacets(ExpenseSearchSpecification specification) {
+		return facetRepository.countFacets(specification);
+	}
+
+	public List<Object[]> countNotificationsOfEmailReceivers() {
+		return repository.countNotificationsOfEmailReceivers();
 	}
 
 	public int countByState(ExpenseState state) {
@@ -77,4 +120,12 @@ public class ExpenseRepositoryProvider {
 	public List<Expense> getPrintedExpenses() {
 		return repository.getPrintedExpenses();
 	}
-}
\ No newline at end of file
+
+	public int archivePrintedBefore(Date dateBefore) {
+		return repository.archivePrintedBefore(PRINTED, ARCHIVED, dateBefore, new Date());
+	}
+
+	public List<Document> findArchivedPdfsNotInColdStorage(int limit) {
+		return repository.findArchivedPdfsNotInColdStorage(new PageRequest(0, limit));
+	}
+}
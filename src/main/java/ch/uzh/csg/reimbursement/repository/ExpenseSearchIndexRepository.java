@@ -0,0 +1,22 @@
+package ch.uzh.csg.reimbursement.repository;
+
+import java.util.List;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import ch.uzh.csg.reimbursement.model.Expense;
+import ch.uzh.csg.reimbursement.model.ExpenseSearchIndexEntry;
+
+public interface ExpenseSearchIndexRepository extends JpaRepository<ExpenseSearchIndexEntry, Integer> {
+
+	@Query("SELECT s FROM ExpenseSearchIndexEntry s WHERE s.expense = :expense")
+	public ExpenseSearchIndexEntry findByExpense(@Param("expense") Expense expense);
+
+	@Query(value = "SELECT e.uid, ts_rank(to_tsvector('simple', s.content), to_tsquery('simple', :query)) AS rank FROM ExpenseSearchIndex_ s JOIN Expense_ e ON e.id = s.expense_id WHERE to_tsvector('simple', s.content) @@ to_tsquery('simple', :query) ORDER BY rank DESC LIMIT :limit", nativeQuery = true)
+	public List<Object[]> searchPostgres(@Param("query") String query, @Param("limit") int limit);
+
+	@Query(value = "SELECT e.uid, ft.SCORE FROM FTL_SEARCH_DATA(:query, :limit, 0) ft, ExpenseSearchIndex_ s, Expense_ e WHERE ft.TABLE = 'EXPENSESEARCHINDEX_' AND s.id = ft.KEYS[0] AND e.id = s.expense_id ORDER BY ft.SCORE DESC", nativeQuery = true)
+	public List<Object[]> searchH2(@Param("query") String query, @Param("limit") int limit);
+}
@@ -0,0 +1,82 @@
+package ch.uzh.csg.reimbursement.repository;
+
+import static ch.uzh.csg.reimbursement.configuration.BuildLevel.DEVELOPMENT;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import ch.uzh.csg.reimbursement.configuration.BuildLevel;
+import ch.uzh.csg.reimbursement.model.Expense;
+import ch.uzh.csg.reimbursement.model.ExpenseSearchIndexEntry;
+
+@Service
+public class ExpenseSearchIndexRepositoryProvider {
+
+	@Autowired
+	private ExpenseSearchIndexRepository repository;
+
+	@Value("${reimbursement.buildLevel}")
+	private BuildLevel buildLevel;
+
+	public void create(ExpenseSearchIndexEntry entry) {
+
+		repository.save(entry);
+	}
+
+	public void delete(ExpenseSearchIndexEntry entry) {
+
+		repository.delete(entry);
+	}
+
+	public ExpenseSearchIndexEntry findByExpense(Expense expense) {
+
+		return repository.findByExpense(expense);
+	}
+
+	/*
+	 * Returns the uids of the matching expenses, the best match first. Every
+	 * term is searched as prefix and all terms have to match. The development
+	 * build runs on H2 with its Lucene index, all others on Postgres.
+	 */
+	public List<String> search(List<String> terms, int limit) {
+		List<Object[]> rows;
+
+		if (buildLevel == DEVELOPMENT) {
+			rows = repository.searchH2(toLuceneQuery(terms), limit);
+		} else {
+			rows = repository.searchPostgres(toTsQuery(terms), limit);
+		}
+
+		List<String> expenseUids = new ArrayList<String>();
+		for (Object[] row : rows) {
+			expenseUids.add((String) row[0]);
+		}
+		return expenseUids;
+	}
+
+	private String toLuceneQuery(List<String> terms) {
+		StringBuilder query = new StringBuilder();
+		for (String term : terms) {
+			if (query.length() > 0) {
+				query.append(" AND ");
+			}
+			query.append(term).append('*');
+		}
+		return query.toString();
+	}
+
+	private String toTsQuery(List<String> terms) {
+		StringBuilder query = new StringBuilder();
+		for (String term : terms) {
+			if (query.length() > 0) {
+				query.append(" & ");
+			}
+			query.append(term).append(":*");
+		}
+		return query.toString();
+	}
+}
@@ -0,0 +1,107 @@
+package ch.uzh.csg.reimbursement.repository;
+
+import static ch.uzh.csg.reimbursement.model.Role.USER;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Set;
+
+import javax.persistence.criteria.CriteriaBuilder;
+import javax.persistence.criteria.CriteriaQuery;
+import javax.persistence.criteria.Expression;
+import javax.persistence.criteria.Join;
+import javax.persistence.criteria.Predicate;
+import javax.persistence.criteria.Root;
+import javax.persistence.criteria.Subquery;
+
+import lombok.Getter;
+
+import org.springframework.data.jpa.domain.Specification;
+
+import ch.uzh.csg.reimbursement.model.CostCategory;
+import ch.uzh.csg.reimbursement.model.Expense;
+import ch.uzh.csg.reimbursement.model.ExpenseItem;
+import ch.uzh.csg.reimbursement.model.ExpenseState;
+import ch.uzh.csg.reimbursement.model.Role;
+import ch.uzh.csg.reimbursement.model.User;
+
+/*
+ * Builds the search query from the criteria that were actually given, null
+ * criteria are left out of the query.
+ */
+@Getter
+public class ExpenseSearchSpecification implements Specification<Expense> {
+
+	private final String lastName;
+	private final Role role;
+	private final String accountingText;
+	private final Date startTime;
+	private final Date endTime;
+	private final ExpenseState state;
+	private final CostCategory costCategory;
+
+	public ExpenseSearchSpecification(String lastName, Role role, String accountingText, Date startTime,
+			Date endTime, ExpenseState state, CostCategory costCategory) {
+		this.lastName = lastName;
+		this.role = role;
+		this.accountingText = accountingText;
+		this.startTime = startTime;
+		this.endTime = endTime;
+		this.state = state;
+		this.costCategory = costCategory;
+	}
+
+	@Override
+	public Predicate toPredicate(Root<Expense> expense, CriteriaQuery<?> query, CriteriaBuilder cb) {
+		List<Predicate> predicates = new ArrayList<Predicate>();
+
+		if (lastName != null || role != null) {
+			Join<Expense, User> user = expense.join("user");
+
+			if (lastName != null) {
+				predicates.add(cb.like(cb.lower(user.<String> get("lastName")), "%" + lastName.toLowerCase() + "%"));
+			}
+
+			if (role != null) {
+				Expression<Set<Role>> roles = user.get("roles");
+				predicates.add(cb.isMember(role, roles));
+
+				if (role == USER) {
+					// if role is user, only the users and not admin/fadmin
+					// etc are searched
+					predicates.add(cb.equal(cb.size(roles), 1));
+				}
+			}
+		}
+
+		if (accountingText != null) {
+			predicates.add(cb.like(cb.lower(expense.<String> get("accounting")), "%" + accountingText.toLowerCase()
+					+ "%"));
+		}
+
+		if (startTime != null) {
+			predicates.add(cb.greaterThanOrEqualTo(expense.<Date> get("date"), startTime));
+		}
+
+		if (endTime != null) {
+			predicates.add(cb.lessThanOrEqualTo(expense.<Date> get("date"), endTime));
+		}
+
+		if (state != null) {
+			predicates.add(cb.equal(expense.get("state"), state));
+		}
+
+		if (costCategory != null) {
+			// EXISTS instead of a join, so that an expense with several
+			// matching items is returned only once
+			Subquery<Integer> items = query.subquery(Integer.class);
+			Root<ExpenseItem> item = items.from(ExpenseItem.class);
+			items.select(item.<Integer> get("id")).where(cb.equal(item.get("expense"), expense),
+					cb.equal(item.get("costCategory"), costCategory));
+			predicates.add(cb.exists(items));
+		}
+
+		return cb.and(predicates.toArray(new Predicate[predicates.size()]));
+	}
+}
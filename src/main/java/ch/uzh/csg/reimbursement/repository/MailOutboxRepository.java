@@ -0,0 +1,31 @@
+package ch.uzh.csg.reimbursement.repository;
+
+import java.util.Date;
+import java.util.List;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import ch.uzh.csg.reimbursement.model.MailOutboxEntry;
+
+public interface MailOutboxRepository extends JpaRepository<MailOutboxEntry, Integer> {
+
+	@Query(value = "SELECT * FROM MailOutbox_ WHERE state = 'PENDING' AND next_attempt <= :now ORDER BY id LIMIT :limit FOR UPDATE SKIP LOCKED", nativeQuery = true)
+	public List<MailOutboxEntry> findDuePostgres(@Param("now") Date now, @Param("limit") int limit);
+
+	@Query(value = "SELECT * FROM MailOutbox_ WHERE state = 'PENDING' AND next_attempt <= :now ORDER BY id LIMIT :limit FOR UPDATE", nativeQuery = true)
+	public List<MailOutboxEntry> findDueH2(@Param("now") Date now, @Param("limit") int limit);
+
+	@Query("SELECT m FROM MailOutboxEntry m WHERE m.id IN :ids")
+	public List<MailOutboxEntry> findAllByIds(@Param("ids") List<Integer> ids);
+
+	@Modifying
+	@Query("UPDATE MailOutboxEntry m SET m.state = 'PENDING' WHERE m.state = 'SENDING' AND m.claimed < :claimedBefore")
+	public int releaseClaimsBefore(@Param("claimedBefore") Date claimedBefore);
+
+	@Modifying
+	@Query("DELETE FROM MailOutboxEntry m WHERE m.state = 'SENT' AND m.created < :createdBefore")
+	public int deleteSentBefore(@Param("createdBefore") Date createdBefore);
+}
@@ -0,0 +1,61 @@
+package ch.uzh.csg.reimbursement.repository;
+
+import static ch.uzh.csg.reimbursement.configuration.BuildLevel.DEVELOPMENT;
+
+import java.util.Date;
+import java.util.List;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import ch.uzh.csg.reimbursement.configuration.BuildLevel;
+import ch.uzh.csg.reimbursement.model.MailOutboxEntry;
+
+@Service
+public class MailOutboxRepositoryProvider {
+
+	@Autowired
+	private MailOutboxRepository repository;
+
+	@Value("${reimbursement.buildLevel}")
+	private BuildLevel buildLevel;
+
+	public void create(MailOutboxEntry entry) {
+
+		repository.save(entry);
+	}
+
+	public MailOutboxEntry findOne(int id) {
+
+		return repository.findOne(id);
+	}
+
+	public List<MailOutboxEntry> findAllByIds(List<Integer> ids) {
+
+		return repository.findAllByIds(ids);
+	}
+
+	/*
+	 * Locks the pending entries which are due. On Postgres rows locked by
+	 * another node are skipped, so several nodes can drain the outbox at the
+	 * same time. H2 has no SKIP LOCKED and waits for the lock instead.
+	 */
+	public List<MailOutboxEntry> findDue(int limit) {
+
+		if (buildLevel == DEVELOPMENT) {
+			return repository.findDueH2(new Date(), limit);
+		}
+		return repository.findDuePostgres(new Date(), limit);
+	}
+
+	public int releaseClaimsBefore(Date claimedBefore) {
+
+		return repository.releaseClaimsBefore(claimedBefore);
+	}
+
+	public int deleteSentBefore(Date createdBefore) {
+
+		return repository.deleteSentBefore(createdBefore);
+	}
+}
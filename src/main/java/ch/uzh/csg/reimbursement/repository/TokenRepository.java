@@ -1,6 +1,11 @@
 package ch.uzh.csg.reimbursement.repository;
 
+import java.util.Calendar;
+import java.util.Collection;
+import java.util.List;
+
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 
@@ -19,4 +24,16 @@ public interface TokenRepository extends JpaRepository<Token, Integer>{
 	@Query("SELECT t FROM Token t WHERE t.content = :uid")
 	public Token findByContent(@Param("uid") String uid);
 
+	@Query("SELECT t FROM Token t WHERE t.type IN :types")
+	public List<Token> findAllByTypes(@Param("types") Collection<TokenType> types);
+
+	@Modifying
+	@Query("DELETE FROM Token t WHERE t.uid IN :uids AND t.type = :type AND t.created < :createdBefore")
+	public int deleteByUidsAndTypeAndCreatedBefore(@Param("uids") Collection<String> uids,
+			@Param("type") TokenType type, @Param("createdBefore") Calendar createdBefore);
+
+	@Modifying
+	@Query("DELETE FROM Token t WHERE t.type = :type AND t.created < :createdBefore")
+	public int deleteByTypeAndCreatedBefore(@Param("type") TokenType type, @Param("createdBefore") Calendar createdBefore);
+
 }
@@ -1,9 +1,12 @@
 package ch.uzh.csg.reimbursement.repository;
 
+import java.util.Calendar;
+import java.util.Collection;
 import java.util.List;
 
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
 import ch.uzh.csg.reimbursement.model.Token;
 import ch.uzh.csg.reimbursement.model.TokenType;
@@ -44,4 +47,20 @@ public class TokenRepositoryProvider {
 
 		return tokenRepository.findByContent(uid);
 	}
+
+	public int deleteByTypeAndCreatedBefore(TokenType type, Calendar createdBefore) {
+
+		return tokenRepository.deleteByTypeAndCreatedBefore(type, createdBefore);
+	}
+
+	public List<Token> findAllByTypes(Collection<TokenType> types) {
+
+		return tokenRepository.findAllByTypes(types);
+	}
+
+	@Transactional
+	public int deleteByUidsAndTypeAndCreatedBefore(Collection<String> uids, TokenType type, Calendar createdBefore) {
+
+		return tokenRepository.deleteByUidsAndTypeAndCreatedBefore(uids, type, createdBefore);
+	}
 }
@@ -14,6 +14,9 @@ public interface UserRepository extends JpaRepository<User, Integer> {
 	@Query("SELECT u FROM User u WHERE u.uid = :uid")
 	public User findByUid(@Param("uid") String uid);
 
+	@Query("SELECT u FROM User u WHERE u.uid IN :uids")
+	public List<User> findAllByUids(@Param("uids") List<String> uids);
+
 	@Query("SELECT u FROM User u WHERE lower(u.lastName) LIKE lower(:lastName)")
 	public List<User> findAllByLastName(@Param("lastName") String lastName);
 
@@ -34,6 +34,11 @@ public class UserRepositoryProvider {
 		return userRepository.findByUid(uid);
 	}
 
+	public List<User> findAllByUids(List<String> uids) {
+
+		return userRepository.findAllByUids(uids);
+	}
+
 	public List<User> findAllByLastName(String lastName) {
 
 		return userRepository.findAllByLastName(lastName);
@@ -1,5 +1,7 @@
 package ch.uzh.csg.reimbursement.rest;
 
+import static ch.uzh.csg.reimbursement.application.export.ExportFormat.JSON;
+import static org.apache.xmlgraphics.util.MimeConstants.MIME_PDF;
 import static org.springframework.http.HttpStatus.CREATED;
 import static org.springframework.http.HttpStatus.OK;
 import static org.springframework.web.bind.annotation.RequestMethod.DELETE;
@@ -7,8 +9,12 @@ import static org.springframework.web.bind.annotation.RequestMethod.GET;
 import static org.springframework.web.bind.annotation.RequestMethod.POST;
 import static org.springframework.web.bind.annotation.RequestMethod.PUT;
 
+import java.io.IOException;
+import java.util.List;
 import java.util.Set;
 
+import javax.servlet.http.HttpServletResponse;
+
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.PathVariable;
@@ -23,9 +29,14 @@ import com.fasterxml.jackson.annotation.JsonView;
 import com.wordnik.swagger.annotations.Api;
 import com.wordnik.swagger.annotations.ApiOperation;
 
+import ch.uzh.csg.reimbursement.application.export.ExportFormat;
+import ch.uzh.csg.reimbursement.application.pdf.PdfBatchGenerator;
 import ch.uzh.csg.reimbursement.dto.ExpenseItemDto;
 import ch.uzh.csg.reimbursement.dto.ExpenseStateStatisticsDto;
+import ch.uzh.csg.reimbursement.dto.PdfBatchDto;
+import ch.uzh.csg.reimbursement.dto.PdfBatchJobDto;
 import ch.uzh.csg.reimbursement.dto.SearchExpenseDto;
+import ch.uzh.csg.reimbursement.dto.SearchExpenseResultDto;
 import ch.uzh.csg.reimbursement.model.Document;
 import ch.uzh.csg.reimbursement.model.Expense;
 import ch.uzh.csg.reimbursement.model.ExpenseItem;
@@ -57,6 +68,9 @@ public class ExpenseResource {
 	@Autowired
 	private TokenService tokenService;
 
+	@Autowired
+	private PdfBatchGenerator pdfBatchGenerator;
+
 	@PreAuthorize("hasRole('REGISTERED_USER')")
 	@JsonView(SummaryWithUid.class)
 	@RequestMapping(method = POST)
@@ -287,6 +301,35 @@ public class ExpenseResource {
 		pdfGenerationService.generateExpensePdf(uid, url);
 	}
 
+	@PreAuthorize("hasRole('FINANCE_ADMIN')")
+	@RequestMapping(value = "/generate-pdfs", method = POST)
+	@ApiOperation(value = "Start PDF print run", notes = "Generates the PDFs of the given signed expenses in the background, optionally merged into one combined PDF. \n Authorization for finance admins.")
+	@ResponseStatus(CREATED)
+	public PdfBatchJobDto startPdfBatch(@RequestBody PdfBatchDto dto) {
+
+		return pdfBatchGenerator.start(dto.getExpenseUids(), dto.getUrl(), dto.isCombined());
+	}
+
+	@PreAuthorize("hasRole('FINANCE_ADMIN')")
+	@RequestMapping(value = "/generate-pdfs/{job-id}", method = GET)
+	@ApiOperation(value = "Get PDF print run", notes = "Returns the progress of a print run with the events after the given number of already received events. \n Authorization for finance admins.")
+	public PdfBatchJobDto getPdfBatch(@PathVariable("job-id") String jobId,
+			@RequestParam(value = "since", defaultValue = "0") int since) {
+
+		return pdfBatchGenerator.getStatus(jobId, since);
+	}
+
+	@PreAuthorize("hasRole('FINANCE_ADMIN')")
+	@RequestMapping(value = "/generate-pdfs/{job-id}/combined-pdf", method = GET)
+	@ApiOperation(value = "Export combined PDF of print run", notes = "Streams the combined PDF of a finished print run. \n Authorization for finance admins.")
+	public void exportCombinedPdf(@PathVariable("job-id") String jobId, HttpServletResponse response)
+			throws IOException {
+
+		response.setContentType(MIME_PDF);
+		response.setHeader("Content-Disposition", "attachment; filename=\"print-run.pdf\"");
+		pdfBatchGenerator.writeCombinedPdf(jobId, response.getOutputStream());
+	}
+
 	@PreAuthorize("hasRole('FINANCE_ADMIN')")
 	@RequestMapping(value = "/search", method = POST)
 	@ApiOperation(value = "Search for expenses", notes = "Returns all expenses according to the defined search criteria. \n Authorization for finance admins.")
@@ -295,6 +338,41 @@ public class ExpenseResource {
 		return expenseService.search(dto);
 	}
 
+	@PreAuthorize("hasRole('FINANCE_ADMIN')")
+	@RequestMapping(value = "/search/faceted", method = POST)
+	@ApiOperation(value = "Search for expenses with facet counts", notes = "Returns all expenses according to the defined search criteria, together with the number of matching expenses per state, cost category, month, assigned manager and currency. \n Authorization for finance admins.")
+	public SearchExpenseResultDto searchExpensesWithFacets(@RequestBody SearchExpenseDto dto) {
+
+		return expenseService.searchWithFacets(dto);
+	}
+
+	@PreAuthorize("hasRole('FINANCE_ADMIN')")
+	@RequestMapping(value = "/search/export", method = POST)
+	@ApiOperation(value = "Export searched expenses", notes = "Streams all expenses according to the defined search criteria as CSV (one line per expense-item) or JSON. \n Authorization for finance admins.")
+	public void exportExpenses(@RequestBody SearchExpenseDto dto,
+			@RequestParam(value = "format", defaultValue = "CSV") ExportFormat format, HttpServletResponse response)
+					throws IOException {
+
+		if (format == JSON) {
+			response.setContentType("application/json;charset=UTF-8");
+			response.setHeader("Content-Disposition", "attachment; filename=\"expenses.json\"");
+		} else {
+			response.setContentType("text/csv;charset=UTF-8");
+			response.setHeader("Content-Disposition", "attachment; filename=\"expenses.csv\"");
+		}
+		expenseService.export(dto, format, response.getOutputStream());
+	}
+
+	@PreAuthorize("hasRole('FINANCE_ADMIN')")
+	@JsonView(DashboardSummary.class)
+	@RequestMapping(value = "/search/fulltext", method = GET)
+	@ApiOperation(value = "Full-text search for expenses", notes = "Returns the expenses whose accounting, items, user or cost categories match all words of the given text, the best match first. Every word is matched as prefix. \n Authorization for finance admins.")
+	public List<Expense> searchExpensesFullText(@RequestParam("text") String text,
+			@RequestParam(value = "limit", defaultValue = "50") int limit) {
+
+		return expenseService.searchFullText(text, limit);
+	}
+
 	@PreAuthorize("hasRole('REGISTERED_USER')")
 	@RequestMapping(value = "/user/{user-uid}", method = GET)
 	@ApiOperation(value = "Get expenses for a given user.", notes = "Returns all expenses that were created by the given user.")
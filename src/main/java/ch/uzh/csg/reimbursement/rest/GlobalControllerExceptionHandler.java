@@ -33,11 +33,11 @@ import org.springframework.web.multipart.support.MissingServletRequestPartExcept
 import org.springframework.web.servlet.NoHandlerFoundException;
 import org.springframework.web.servlet.mvc.multiaction.NoSuchRequestHandlingMethodException;
 
+import ch.uzh.csg.reimbursement.application.mail.EmergencyEmailAggregator;
 import ch.uzh.csg.reimbursement.dto.ErrorDto;
 import ch.uzh.csg.reimbursement.model.exception.AccessException;
 import ch.uzh.csg.reimbursement.model.exception.BusinessException;
 import ch.uzh.csg.reimbursement.model.exception.ServiceException;
-import ch.uzh.csg.reimbursement.service.EmailService;
 
 
 @ControllerAdvice
@@ -46,7 +46,7 @@ public class GlobalControllerExceptionHandler {
 	private Logger LOG = LoggerFactory.getLogger(GlobalControllerExceptionHandler.class);
 
 	@Autowired
-	EmailService emailService;
+	EmergencyEmailAggregator emergencyEmailAggregator;
 
 
 	// General Runtime Exceptions
@@ -55,7 +55,7 @@ public class GlobalControllerExceptionHandler {
 	public ResponseEntity<ErrorDto> handleRuntimeException(HttpServletRequest req, RuntimeException ex) {
 		if (!(ex instanceof BusinessException) && !(ex instanceof AccessDeniedException)) {
 			LOG.warn(ex.getMessage(), ex);
-			emailService.sendEmergencyEmail(ex);
+			emergencyEmailAggregator.report(ex);
 			ex = new ServiceException();
 		}
 		return new ResponseEntity<ErrorDto>(new ErrorDto(ex), BAD_REQUEST);
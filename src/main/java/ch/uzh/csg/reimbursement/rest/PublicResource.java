@@ -1,9 +1,12 @@
 package ch.uzh.csg.reimbursement.rest;
 
 import static org.springframework.http.HttpStatus.CREATED;
+import static org.springframework.http.MediaType.APPLICATION_OCTET_STREAM_VALUE;
 import static org.springframework.web.bind.annotation.RequestMethod.GET;
 import static org.springframework.web.bind.annotation.RequestMethod.POST;
+import static org.springframework.web.bind.annotation.RequestMethod.PUT;
 
+import java.io.InputStream;
 import java.util.List;
 import java.util.Map;
 import java.util.regex.Pattern;
@@ -19,8 +22,10 @@ import org.springframework.web.multipart.MultipartFile;
 import com.wordnik.swagger.annotations.Api;
 import com.wordnik.swagger.annotations.ApiOperation;
 
+import ch.uzh.csg.reimbursement.application.upload.ChunkedUploadManager;
 import ch.uzh.csg.reimbursement.application.validation.ValidationService;
 import ch.uzh.csg.reimbursement.dto.ExchangeRateDto;
+import ch.uzh.csg.reimbursement.dto.UploadSessionDto;
 import ch.uzh.csg.reimbursement.model.CostCategory;
 import ch.uzh.csg.reimbursement.model.Language;
 import ch.uzh.csg.reimbursement.service.CostCategoryService;
@@ -48,6 +53,9 @@ public class PublicResource {
 	@Autowired
 	private ValidationService validationService;
 
+	@Autowired
+	private ChunkedUploadManager chunkedUploadManager;
+
 	@RequestMapping(value = "/mobile/{token}/signature", method = POST)
 	@ApiOperation(value = "Create signature", notes = "Creates signature from mobile device.")
 	@ResponseStatus(CREATED)
@@ -65,6 +73,32 @@ public class PublicResource {
 		mobileService.createExpenseItemAttachment(token, file);
 	}
 
+	@RequestMapping(value = "/mobile/{token}/attachment/uploads", method = POST)
+	@ApiOperation(value = "Start resumable attachment upload", notes = "Starts a chunked upload of an attachment with the given content type and size in bytes.")
+	@ResponseStatus(CREATED)
+	public UploadSessionDto startAttachmentUpload(@PathVariable("token") String token,
+			@RequestParam("contentType") String contentType, @RequestParam("size") long size) {
+
+		return chunkedUploadManager.start(token, contentType, size);
+	}
+
+	@RequestMapping(value = "/mobile/{token}/attachment/uploads/{upload-id}", method = GET)
+	@ApiOperation(value = "Get attachment upload", notes = "Returns the offset from which a chunked upload has to be continued.")
+	public UploadSessionDto getAttachmentUpload(@PathVariable("token") String token,
+			@PathVariable("upload-id") String uploadId) {
+
+		return chunkedUploadManager.getStatus(token, uploadId);
+	}
+
+	@RequestMapping(value = "/mobile/{token}/attachment/uploads/{upload-id}", method = PUT, consumes = APPLICATION_OCTET_STREAM_VALUE)
+	@ApiOperation(value = "Upload attachment chunk", notes = "Appends a chunk at the given offset. The checksum is the MD5 hex digest of the chunk. The attachment is created with the last chunk.")
+	public UploadSessionDto uploadAttachmentChunk(@PathVariable("token") String token,
+			@PathVariable("upload-id") String uploadId, @RequestParam("offset") long offset,
+			@RequestParam("checksum") String checksum, InputStream chunk) {
+
+		return chunkedUploadManager.appendChunk(token, uploadId, offset, checksum, chunk);
+	}
+
 	@RequestMapping(value = "/exchange-rate", method = GET)
 	@ApiOperation(value = "Get exchange rate", notes = "Returns the exchange rate from a date. The date needs to be in the format YYYY-MM-DD.")
 	public ExchangeRateDto getExchangeRateFromDate(@RequestParam("date") String date) {
@@ -22,6 +22,7 @@ import com.wordnik.swagger.annotations.ApiOperation;
 
 import ch.uzh.csg.reimbursement.dto.CroppingDto;
 import ch.uzh.csg.reimbursement.model.Language;
+import ch.uzh.csg.reimbursement.model.NotificationFrequency;
 import ch.uzh.csg.reimbursement.model.Signature;
 import ch.uzh.csg.reimbursement.model.Token;
 import ch.uzh.csg.reimbursement.model.User;
@@ -92,6 +93,23 @@ public class UserResource {
 		userService.updatePhoneNumber(phoneNumber);
 	}
 
+	@RequestMapping(value = "/settings/notification-frequency", method = PUT)
+	@ApiOperation(value = "Update notification frequency", notes = "Updates how often the logged in user receives the notification email at most.")
+	@ResponseStatus(OK)
+	public void updateSettingsNotificationFrequency(@RequestParam("notificationFrequency") NotificationFrequency notificationFrequency) {
+
+		userService.updateNotificationFrequency(notificationFrequency);
+	}
+
+	@RequestMapping(value = "/settings/quiet-hours", method = PUT)
+	@ApiOperation(value = "Update quiet hours", notes = "Updates the hours in which the logged in user receives no notification email. Without parameters the quiet hours are removed.")
+	@ResponseStatus(OK)
+	public void updateSettingsQuietHours(@RequestParam(value = "start", required = false) Integer start,
+			@RequestParam(value = "end", required = false) Integer end) {
+
+		userService.updateQuietHours(start, end);
+	}
+
 	@RequestMapping(value = "/settings/is-active", method = PUT)
 	@ApiOperation(value = "Update active state", notes = "Updates the logged in user's active state.")
 	@ResponseStatus(OK)
@@ -0,0 +1,244 @@
+package ch.uzh.csg.reimbursement.security;
+
+import static org.springframework.http.MediaType.APPLICATION_JSON_VALUE;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ReadListener;
+import javax.servlet.ServletException;
+import javax.servlet.ServletInputStream;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletRequestWrapper;
+import javax.servlet.http.HttpServletResponse;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.util.AntPathMatcher;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.multipart.MultipartException;
+
+import ch.uzh.csg.reimbursement.dto.ErrorDto;
+import ch.uzh.csg.reimbursement.model.exception.MaxFileSizeViolationException;
+import ch.uzh.csg.reimbursement.utils.PropertyProvider;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/*
+ * Rejects uploads which exceed the limit of their endpoint before the
+ * multipart resolver reads the body. A request with a too large
+ * Content-Length is answered right away, a request without one is aborted
+ * as soon as the limit is passed while reading. The chunks of resumable
+ * uploads are not multipart, they are only checked by their Content-Length
+ * and the ChunkedUploadManager caps the read. This filter runs outside of
+ * the Spring context, so the limits are read with the PropertyProvider.
+ */
+public class UploadLimitFilter extends OncePerRequestFilter {
+
+	private static final Logger LOG = LoggerFactory.getLogger(UploadLimitFilter.class);
+
+	// The boundaries and part headers of the multipart body
+	private static final long MULTIPART_OVERHEAD = 16 * 1024;
+
+	private static final String CHUNK_PATH = "/public/mobile/*/attachment/uploads/*";
+
+	private final Map<String, Long> limits = new LinkedHashMap<String, Long>();
+	private final long defaultLimit;
+	private final long chunkLimit;
+	private final AntPathMatcher pathMatcher = new AntPathMatcher();
+	private final ObjectMapper mapper = new ObjectMapper();
+
+	public UploadLimitFilter() {
+		long signatureLimit = getLimit("reimbursement.filesize.maxSignatureUploadSize");
+		long attachmentLimit = getLimit("reimbursement.filesize.maxAttachmentUploadSize");
+		long signedPdfLimit = getLimit("reimbursement.filesize.maxSignedPdfUploadSize");
+
+		limits.put("/user/signature", signatureLimit);
+		limits.put("/public/mobile/*/signature", signatureLimit);
+		limits.put("/expenses/expense-items/*/attachments", attachmentLimit);
+		limits.put("/public/mobile/*/attachment", attachmentLimit);
+		limits.put("/expenses/*/sign-digitally", signedPdfLimit);
+		defaultLimit = getLimit("reimbursement.filesize.maxUploadFileSize");
+		chunkLimit = Long.parseLong(PropertyProvider.INSTANCE.getProperty("reimbursement.upload.chunked.maxChunkSize"));
+	}
+
+	@Override
+	protected boolean shouldNotFilter(HttpServletRequest request) {
+		if (isChunk(request)) {
+			return false;
+		}
+		String contentType = request.getContentType();
+		return contentType == null || !contentType.toLowerCase().startsWith("multipart/");
+	}
+
+	@Override
+	protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+			throws ServletException, IOException {
+
+		boolean chunk = isChunk(request);
+		long limit = chunk ? chunkLimit : getLimitOfPath(getPath(request));
+		long contentLength = getContentLength(request);
+
+		if (contentLength > limit) {
+			LOG.debug("Upload rejected by its Content-Length, allowed: " + limit + " actual: " + contentLength);
+			reject(response);
+			return;
+		} else if (chunk) {
+			filterChain.doFilter(request, response);
+			return;
+		}
+
+		try {
+			filterChain.doFilter(new LimitedRequest(request, limit), response);
+		} catch (MultipartException e) {
+			// the multipart resolver wraps the exception of the limited stream
+			if (!isCausedByLimit(e) || response.isCommitted()) {
+				throw e;
+			}
+			LOG.debug("Upload aborted while reading: " + e.getMessage());
+			reject(response);
+		}
+	}
+
+	// The header is parsed, getContentLength is an int and getContentLengthLong
+	// needs Servlet 3.1
+	private long getContentLength(HttpServletRequest request) {
+		String contentLength = request.getHeader("Content-Length");
+		if (contentLength == null) {
+			return -1;
+		}
+		try {
+			return Long.parseLong(contentLength.trim());
+		} catch (NumberFormatException e) {
+			return -1;
+		}
+	}
+
+	private boolean isCausedByLimit(Throwable exception) {
+		for (Throwable cause = exception; cause != null; cause = cause.getCause()) {
+			if (cause instanceof UploadLimitExceededException) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private boolean isChunk(HttpServletRequest request) {
+		return "PUT".equals(request.getMethod()) && pathMatcher.match(CHUNK_PATH, getPath(request));
+	}
+
+	private String getPath(HttpServletRequest request) {
+		return request.getRequestURI().substring(request.getContextPath().length());
+	}
+
+	private long getLimitOfPath(String path) {
+		for (Map.Entry<String, Long> limit : limits.entrySet()) {
+			if (pathMatcher.match(limit.getKey(), path)) {
+				return limit.getValue();
+			}
+		}
+		return defaultLimit;
+	}
+
+	private long getLimit(String propertyName) {
+		return Long.parseLong(PropertyProvider.INSTANCE.getProperty(propertyName)) + MULTIPART_OVERHEAD;
+	}
+
+	// The connection is closed, so the container does not drain the rest of
+	// the body
+	private void reject(HttpServletResponse response) throws IOException {
+		response.setStatus(HttpServletResponse.SC_BAD_REQUEST);
+		response.setHeader("Connection", "close");
+		response.setContentType(APPLICATION_JSON_VALUE);
+		PrintWriter writer = response.getWriter();
+		mapper.writeValue(writer, new ErrorDto(new MaxFileSizeViolationException()));
+		writer.flush();
+	}
+
+	private static class LimitedRequest extends HttpServletRequestWrapper {
+
+		private final long limit;
+		private ServletInputStream inputStream;
+
+		public LimitedRequest(HttpServletRequest request, long limit) {
+			super(request);
+			this.limit = limit;
+		}
+
+		@Override
+		public ServletInputStream getInputStream() throws IOException {
+			if (inputStream == null) {
+				inputStream = new LimitedInputStream(super.getInputStream(), limit);
+			}
+			return inputStream;
+		}
+	}
+
+	private static class LimitedInputStream extends ServletInputStream {
+
+		private final ServletInputStream in;
+		private final long limit;
+		private long count;
+
+		public LimitedInputStream(ServletInputStream in, long limit) {
+			this.in = in;
+			this.limit = limit;
+		}
+
+		@Override
+		public int read() throws IOException {
+			int b = in.read();
+			if (b != -1) {
+				count(1);
+			}
+			return b;
+		}
+
+		@Override
+		public int read(byte[] b, int off, int len) throws IOException {
+			int read = in.read(b, off, len);
+			if (read > 0) {
+				count(read);
+			}
+			return read;
+		}
+
+		private void count(int read) throws IOException {
+			count += read;
+			if (count > limit) {
+				throw new UploadLimitExceededException(limit);
+			}
+		}
+
+		@Override
+		public boolean isFinished() {
+			return in.isFinished();
+		}
+
+		@Override
+		public boolean isReady() {
+			return in.isReady();
+		}
+
+		@Override
+		public void setReadListener(ReadListener readListener) {
+			in.setReadListener(readListener);
+		}
+
+		@Override
+		public void close() throws IOException {
+			in.close();
+		}
+	}
+
+	@SuppressWarnings("serial")
+	private static class UploadLimitExceededException extends IOException {
+
+		public UploadLimitExceededException(long limit) {
+			super("The upload exceeds the limit of " + limit + " bytes");
+		}
+	}
+}
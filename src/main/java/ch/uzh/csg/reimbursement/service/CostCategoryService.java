@@ -8,6 +8,7 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import ch.uzh.csg.reimbursement.application.search.ExpenseFullTextIndex;
 import ch.uzh.csg.reimbursement.application.validation.ValidationService;
 import ch.uzh.csg.reimbursement.dto.CostCategoryDto;
 import ch.uzh.csg.reimbursement.model.CostCategory;
@@ -28,6 +29,9 @@ public class CostCategoryService {
 	@Autowired
 	private ValidationService validationService;
 
+	@Autowired
+	private ExpenseFullTextIndex fullTextIndex;
+
 	public List<CostCategory> getAll() {
 		return costCategoryRepository.findAll();
 
@@ -68,6 +72,7 @@ public class CostCategoryService {
 	public void updateCostCategory(String uid, CostCategoryDto dto) {
 		CostCategory costCategory = getByUid(uid);
 		costCategory.updateCostCategory(dto);
+		fullTextIndex.updateAllOfCostCategory(costCategory);
 	}
 
 	public void deactivateCostCategory(String uid) {
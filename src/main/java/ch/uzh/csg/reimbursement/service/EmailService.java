@@ -13,32 +13,32 @@ import static ch.uzh.csg.reimbursement.model.Role.HEAD_OF_INSTITUTE;
 
 import java.io.FileWriter;
 import java.io.IOException;
-import java.io.StringWriter;
-import java.util.HashSet;
-import java.util.Set;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 
-import javax.mail.internet.MimeMessage;
 import javax.servlet.ServletContext;
 
-import org.apache.velocity.Template;
-import org.apache.velocity.app.VelocityEngine;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
-import org.springframework.mail.javamail.JavaMailSender;
-import org.springframework.mail.javamail.MimeMessageHelper;
-import org.springframework.mail.javamail.MimeMessagePreparator;
-import org.springframework.scheduling.annotation.Async;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
+import ch.uzh.csg.reimbursement.application.mail.EmailTemplateRenderer;
+import ch.uzh.csg.reimbursement.application.mail.MailOutbox;
+import ch.uzh.csg.reimbursement.application.mail.NotificationReceiverBuffer;
 import ch.uzh.csg.reimbursement.dto.EmailHeaderInfo;
 import ch.uzh.csg.reimbursement.dto.ExpenseCountsDto;
 import ch.uzh.csg.reimbursement.model.EmailReceiver;
 import ch.uzh.csg.reimbursement.model.EmailSendJob;
 import ch.uzh.csg.reimbursement.model.EmergencyEmailSendJob;
-import ch.uzh.csg.reimbursement.model.Expense;
+import ch.uzh.csg.reimbursement.model.ExpenseState;
 import ch.uzh.csg.reimbursement.model.NotificationSendJob;
 import ch.uzh.csg.reimbursement.model.Role;
 import ch.uzh.csg.reimbursement.model.User;
@@ -51,6 +51,11 @@ public class EmailService {
 
 	private static final Logger LOG = LoggerFactory.getLogger(EmailService.class);
 
+	private static final int COUNT_OWN = 0;
+	private static final int COUNT_FINANCE_ADMIN = 1;
+	private static final int COUNT_MANAGER = 2;
+	private static final int COUNT_NOT_ASSIGNED = 3;
+
 	@Autowired
 	private ServletContext ctx;
 	@Autowired
@@ -59,14 +64,17 @@ public class EmailService {
 	@Autowired
 	private EmailReceiverRepositoryProvider emailReceiverProvider;
 
+	@Autowired
+	private NotificationReceiverBuffer receiverBuffer;
+
 	@Autowired
 	private UserRepositoryProvider userProvider;
 
 	@Autowired
-	private JavaMailSender mailSender;
+	private MailOutbox mailOutbox;
 
 	@Autowired
-	private VelocityEngine velocityEngine;
+	private EmailTemplateRenderer templateRenderer;
 
 	@Value("${mail.defaultEmailTemplatePath}")
 	private String defaultEmailTemplatePath;
@@ -92,51 +100,34 @@ public class EmailService {
 	@Value("${mail.serverProtocolAndIp}")
 	private String serverProtocolAndIp;
 
-	public void processSendJob(final EmailSendJob sendJob) {
-		MimeMessagePreparator preparator = new MimeMessagePreparator() {
-			@Override
-			public void prepare(MimeMessage mimeMessage) throws Exception {
-				final EmailHeaderInfo headerInfo = sendJob.getHeaderInfo();
-				MimeMessageHelper message = new MimeMessageHelper(mimeMessage);
-				message.setFrom(headerInfo.getFromEmail(), headerInfo.getFromName());
-				message.setTo(headerInfo.getToEmail());
-				if (headerInfo.isSetCcEmail()) {
-					message.setCc(headerInfo.getCcEmail());
-				}
-				if (headerInfo.isSetBccEmail()) {
-					message.setBcc(headerInfo.getBccEmail());
-				}
-				if (headerInfo.isSetReplyToEmail()) {
-					message.setReplyTo(headerInfo.getReplyToEmail());
-				}
-				message.setSubject(headerInfo.getSubject());
-
-				Template template = velocityEngine.getTemplate( sendJob.getTemplatePath() );
-				StringWriter writer = new StringWriter();
-				template.merge( sendJob.getContext(), writer );
-				String body = writer.toString();
-				message.setText(body, true);
-			}
-		};
-		this.mailSender.send(preparator);
+	// The rendered email is sent by the MailOutboxWorker after the commit
+	public void processSendJob(EmailSendJob sendJob) {
+		mailOutbox.enqueue(sendJob.getHeaderInfo(), templateRenderer.render(sendJob));
 	}
 
+	// Repeated state changes for the same user result in one queued receiver
 	public void addToNotificationEmailReceiverQueue(User emailRecipient) {
-		if(!emailReceiverProvider.contains(emailRecipient.getUid())){
-			emailReceiverProvider.create(new EmailReceiver(emailRecipient.getUid()));
-		}
+		receiverBuffer.add(emailRecipient.getUid());
 	}
 
 	public void sendEmergencyEmail(Exception ex){
 		LOG.debug("Message: "+ex.getMessage());
-		EmailHeaderInfo headerInfo = new EmailHeaderInfo(emergencyEmailAddress, "ReimbursementIFI", emergencyEmailAddress, "[reimbursement] Your attention is required!");
-		EmergencyEmailSendJob emergencyEmailSendJob = new EmergencyEmailSendJob(headerInfo, defaultEmailTemplatePath, ex, serverProtocolAndIp);
+		EmergencyEmailSendJob emergencyEmailSendJob = new EmergencyEmailSendJob(createEmergencyHeaderInfo(), defaultEmailTemplatePath, ex, serverProtocolAndIp);
+		sendEmergencyEmail(emergencyEmailSendJob);
+	}
 
+	public void sendEmergencyDigest(String summary, String details){
+		EmergencyEmailSendJob emergencyEmailSendJob = new EmergencyEmailSendJob(createEmergencyHeaderInfo(), defaultEmailTemplatePath, summary, details, serverProtocolAndIp);
+		sendEmergencyEmail(emergencyEmailSendJob);
+	}
+
+	private EmailHeaderInfo createEmergencyHeaderInfo(){
+		return new EmailHeaderInfo(emergencyEmailAddress, "ReimbursementIFI", emergencyEmailAddress, "[reimbursement] Your attention is required!");
+	}
+
+	private void sendEmergencyEmail(EmergencyEmailSendJob emergencyEmailSendJob){
 		if(redirectMailsToFile){
-			Template template = velocityEngine.getTemplate( emergencyEmailSendJob.getTemplatePath() );
-			StringWriter writer = new StringWriter();
-			template.merge( emergencyEmailSendJob.getContext(), writer );
-			String body = writer.toString();
+			String body = templateRenderer.render(emergencyEmailSendJob);
 
 			long millis = System.currentTimeMillis();
 			String path = ctx.getRealPath("/" + "EmergencyEmail" + millis + ".html");
@@ -150,26 +141,56 @@ public class EmailService {
 			}
 		}else{
 			//in production
-			processSendJob(emergencyEmailSendJob);
+			try {
+				processSendJob(emergencyEmailSendJob);
+			} catch (RuntimeException e) {
+				LOG.error("The emergency email could not be stored in the outbox.", e);
+			}
 		}
 	}
 
 
 	@Scheduled(cron="${mail.sendEmailsIntervalCron}")
-	@Async
+	@Transactional
 	public void sendOutEmails(){
-		for(EmailReceiver emailReceiver : emailReceiverProvider.findAll()){
-			User user = userProvider.findByUid(emailReceiver.getUid());
-			ExpenseCountsDto counts = getCountsForUser(user);
+		receiverBuffer.flush();
+		List<EmailReceiver> emailReceivers = emailReceiverProvider.findAll();
+		if(emailReceivers.isEmpty()){
+			return;
+		}
+
+		List<String> receiverUids = new ArrayList<String>();
+		for(EmailReceiver emailReceiver : emailReceivers){
+			receiverUids.add(emailReceiver.getUid());
+		}
+		Map<String, User> users = new HashMap<String, User>();
+		for(User user : userProvider.findAllByUids(receiverUids)){
+			users.put(user.getUid(), user);
+		}
+		Map<String, Map<ExpenseState, long[]>> notificationCounts = getNotificationCounts();
+		Date now = new Date();
+
+		// the emails are stored in the outbox together with the removal of
+		// the receivers, the MailOutboxWorker sends them in batches
+		for(EmailReceiver emailReceiver : emailReceivers){
+			User user = users.get(emailReceiver.getUid());
+			if(user == null){
+				LOG.warn("The email receiver " + emailReceiver.getUid() + " is not a known user.");
+				emailReceiverProvider.delete(emailReceiver);
+				continue;
+			}
+			if(!user.isNotificationDue(now)){
+				// the receiver stays queued until the quiet hours or the
+				// interval of the notification frequency are over
+				continue;
+			}
+			ExpenseCountsDto counts = getCountsForUser(user, notificationCounts.get(user.getUid()));
 			if(counts.getTotal() > 0){
 				EmailHeaderInfo headerInfo = new EmailHeaderInfo(defaultFromEmail, defaultFromName, user.getEmail(), defaultSubject);
 				NotificationSendJob notification = new NotificationSendJob(headerInfo, notificationEmailTemplatePath, user, serverProtocolAndIp, counts);
 
 				if(redirectMailsToFile){
-					Template template = velocityEngine.getTemplate( notification.getTemplatePath() );
-					StringWriter writer = new StringWriter();
-					template.merge( notification.getContext(), writer );
-					String body = writer.toString();
+					String body = templateRenderer.render(notification);
 
 					long millis = System.currentTimeMillis();
 					String path = ctx.getRealPath("/" + user.getUid() + "Email" + millis + ".html");
@@ -185,54 +206,53 @@ public class EmailService {
 					//in production
 					processSendJob(notification);
 				}
+				user.notificationSent(now);
 			}
 			emailReceiverProvider.delete(emailReceiver);
 		}
-		assert emailReceiverProvider.findAll().size() == 0;
-		LOG.debug("All emails from the send queue have been sent successfully.");
+		LOG.debug("All emails from the send queue have been moved to the outbox.");
 	}
 
-	private ExpenseCountsDto getCountsForUser(User user){
-		if(user.getRoles().contains(FINANCE_ADMIN)){
+	// Loads the expense counts of all queued receivers with one query, per
+	// receiver and state the counts are indexed by the COUNT_* constants
+	private Map<String, Map<ExpenseState, long[]>> getNotificationCounts(){
+		Map<String, Map<ExpenseState, long[]>> notificationCounts = new HashMap<String, Map<ExpenseState, long[]>>();
+
+		for(Object[] row : expenseRepoProvider.countNotificationsOfEmailReceivers()){
+			String receiverUid = (String) row[0];
+			Map<ExpenseState, long[]> countsByState = notificationCounts.get(receiverUid);
+			if(countsByState == null){
+				countsByState = new EnumMap<ExpenseState, long[]>(ExpenseState.class);
+				notificationCounts.put(receiverUid, countsByState);
+			}
+			countsByState.put((ExpenseState) row[1], new long[] { (Long) row[2], (Long) row[3], (Long) row[4], (Long) row[5] });
+		}
+		return notificationCounts;
+	}
+
+	private ExpenseCountsDto getCountsForUser(User user, Map<ExpenseState, long[]> countsByState){
+		if(countsByState == null){
+			return new ExpenseCountsDto(0, 0, 0, 0, 0);
+		}
 
-			//expenses of the finance admin himself
-			Set<Expense> ownExpensesToSign = expenseRepoProvider.findAllByStateForUser(TO_SIGN_BY_USER, user);
-			Set<Expense> ownExpensesToPrint = expenseRepoProvider.findAllByStateForUser(SIGNED, user);
+		//expenses of the user himself
+		int ownExpensesToSign = count(countsByState, TO_SIGN_BY_USER, COUNT_OWN);
+		int ownExpensesToPrint = count(countsByState, SIGNED, COUNT_OWN);
 
+		if(user.getRoles().contains(FINANCE_ADMIN)){
 			//finance Admin Check
-			Set<Expense> expensesNotAssignedToAnyone = expenseRepoProvider.findAllByStateWithoutUser(TO_BE_ASSIGNED, user);
-			Set<Expense> expensesAssignedToFinanceAdmin = expenseRepoProvider.findAllByFinanceAdmin(user);
-			Set<Expense> expensesAssignedToFinanceAdminStateToSign = new HashSet<Expense>();
-			Set<Expense> expensesAssignedToFinanceAdminStateToCheck = new HashSet<Expense>();
-			for(Expense expense : expensesAssignedToFinanceAdmin){
-				if(expense.getState().equals(TO_SIGN_BY_FINANCE_ADMIN)){
-					expensesAssignedToFinanceAdminStateToSign.add(expense);
-				}else if(expense.getState().equals(ASSIGNED_TO_FINANCE_ADMIN)){
-					expensesAssignedToFinanceAdminStateToCheck.add(expense);
-				}
-			}
-			return new ExpenseCountsDto(expensesAssignedToFinanceAdminStateToCheck.size(),expensesAssignedToFinanceAdminStateToSign.size(), expensesNotAssignedToAnyone.size(), ownExpensesToSign.size(),ownExpensesToPrint.size());
+			return new ExpenseCountsDto(count(countsByState, ASSIGNED_TO_FINANCE_ADMIN, COUNT_FINANCE_ADMIN), count(countsByState, TO_SIGN_BY_FINANCE_ADMIN, COUNT_FINANCE_ADMIN), count(countsByState, TO_BE_ASSIGNED, COUNT_NOT_ASSIGNED), ownExpensesToSign, ownExpensesToPrint);
 		}else if(user.getRoles().contains(Role.PROF) || user.getRoles().contains(DEPARTMENT_MANAGER) || user.getRoles().contains(HEAD_OF_INSTITUTE)){
-
-			//expenses of the manager himself
-			Set<Expense> ownExpensesToSign = expenseRepoProvider.findAllByStateForUser(TO_SIGN_BY_USER, user);
-			Set<Expense> ownExpensesToPrint = expenseRepoProvider.findAllByStateForUser(SIGNED, user);
-
 			//Manager Checks
-			Set<Expense> expensesAssignedToManager = expenseRepoProvider.findAllByAssignedManager(user);
-			Set<Expense> expensesAssignedToManagerStateToSign = new HashSet<Expense>();
-			Set<Expense> expensesAssignedToManagerStateToCheck = new HashSet<Expense>();
-			for(Expense expense : expensesAssignedToManager){
-				if(expense.getState().equals(TO_SIGN_BY_MANAGER)){
-					expensesAssignedToManagerStateToSign.add(expense);
-				}else if(expense.getState().equals(ASSIGNED_TO_MANAGER)){
-					expensesAssignedToManagerStateToCheck.add(expense);
-				}
-			}
-			return new ExpenseCountsDto(expensesAssignedToManagerStateToCheck.size(),expensesAssignedToManagerStateToSign.size(),0, ownExpensesToSign.size(),ownExpensesToPrint.size());
+			return new ExpenseCountsDto(count(countsByState, ASSIGNED_TO_MANAGER, COUNT_MANAGER), count(countsByState, TO_SIGN_BY_MANAGER, COUNT_MANAGER), 0, ownExpensesToSign, ownExpensesToPrint);
 		}
 		else{
-			return new ExpenseCountsDto(0, 0,0,expenseRepoProvider.findAllByStateForUser(TO_SIGN_BY_USER, user).size(), expenseRepoProvider.findAllByStateForUser(SIGNED, user).size());
+			return new ExpenseCountsDto(0, 0, 0, ownExpensesToSign, ownExpensesToPrint);
 		}
 	}
-}
\ No newline at end of file
+
+	private int count(Map<ExpenseState, long[]> countsByState, ExpenseState state, int index){
+		long[] counts = countsByState.get(state);
+		return counts == null ? 0 : (int) counts[index];
+	}
+}
@@ -19,6 +19,7 @@ import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 import org.springframework.web.multipart.MultipartFile;
 
+import ch.uzh.csg.reimbursement.application.search.ExpenseFullTextIndex;
 import ch.uzh.csg.reimbursement.application.validation.ValidationService;
 import ch.uzh.csg.reimbursement.dto.ExchangeRateDto;
 import ch.uzh.csg.reimbursement.dto.ExpenseItemDto;
@@ -72,8 +73,11 @@ public class ExpenseItemService {
 	@Autowired
 	private ValidationService validationService;
 
-	@Value("${reimbursement.filesize.maxUploadFileSize}")
-	private int maxUploadFileSize;
+	@Autowired
+	private ExpenseFullTextIndex fullTextIndex;
+
+	@Value("${reimbursement.filesize.maxAttachmentUploadSize}")
+	private int maxAttachmentUploadSize;
 
 	public ExpenseItem createExpenseItem(String uid, ExpenseItemDto dto) {
 		Expense expense = expenseService.getByUid(uid);
@@ -109,6 +113,7 @@ public class ExpenseItemService {
 			calculatedAmount = calculateAmount(dto.getOriginalAmount(), exchangeRate);
 			ExpenseItem expenseItem = new ExpenseItem(category, exchangeRate, calculatedAmount, expense, dto);
 			expenseItemRepository.create(expenseItem);
+			fullTextIndex.update(expense);
 
 			return expenseItem;
 
@@ -145,6 +150,7 @@ public class ExpenseItemService {
 				}
 				calculatedAmount = calculateAmount(dto.getOriginalAmount(), exchangeRate);
 				expenseItem.updateExpenseItem(category, exchangeRate, calculatedAmount, dto);
+				fullTextIndex.update(expenseItem.getExpense());
 			} else {
 				LOG.debug("The logged in user has no access to this expense");
 				throw new AccessException();
@@ -221,8 +227,8 @@ public class ExpenseItemService {
 
 			LOG.debug("The uploaded file type is not supported.");
 			throw new NotSupportedFileTypeException();
-		} else if (multipartFile.getSize() >= maxUploadFileSize) {
-			LOG.debug("File too big, allowed: " + maxUploadFileSize + " actual: " + multipartFile.getSize());
+		} else if (multipartFile.getSize() >= maxAttachmentUploadSize) {
+			LOG.debug("File too big, allowed: " + maxAttachmentUploadSize + " actual: " + multipartFile.getSize());
 			throw new MaxFileSizeViolationException();
 
 		} else if (token != null) {
@@ -277,6 +283,7 @@ public class ExpenseItemService {
 
 		if (authorizationService.checkEditAuthorization(expenseItem)) {
 			expenseItemRepository.delete(getByUid(uid));
+			fullTextIndex.update(expenseItem.getExpense());
 		} else {
 			LOG.debug("The logged in user has no access to this expenseItem");
 			throw new AccessException();
@@ -14,7 +14,6 @@ import static ch.uzh.csg.reimbursement.model.ExpenseState.TO_SIGN_BY_USER;
 import static ch.uzh.csg.reimbursement.model.Role.DEPARTMENT_MANAGER;
 import static ch.uzh.csg.reimbursement.model.Role.HEAD_OF_INSTITUTE;
 import static ch.uzh.csg.reimbursement.model.Role.PROF;
-import static ch.uzh.csg.reimbursement.model.Role.USER;
 import static java.util.Calendar.DAY_OF_MONTH;
 import static java.util.Calendar.HOUR_OF_DAY;
 import static java.util.Calendar.MINUTE;
@@ -22,8 +21,9 @@ import static java.util.Calendar.MONTH;
 import static java.util.Calendar.SECOND;
 import static org.apache.xmlgraphics.util.MimeConstants.MIME_PDF;
 
+import java.io.IOException;
+import java.io.OutputStream;
 import java.text.SimpleDateFormat;
-import java.util.ArrayList;
 import java.util.Calendar;
 import java.util.Date;
 import java.util.LinkedHashMap;
@@ -39,9 +39,13 @@ import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 import org.springframework.web.multipart.MultipartFile;
 
+import ch.uzh.csg.reimbursement.application.export.ExpenseExporter;
+import ch.uzh.csg.reimbursement.application.export.ExportFormat;
+import ch.uzh.csg.reimbursement.application.search.ExpenseFullTextIndex;
 import ch.uzh.csg.reimbursement.application.validation.ValidationService;
 import ch.uzh.csg.reimbursement.dto.ExpenseStateStatisticsDto;
 import ch.uzh.csg.reimbursement.dto.SearchExpenseDto;
+import ch.uzh.csg.reimbursement.dto.SearchExpenseResultDto;
 import ch.uzh.csg.reimbursement.model.CostCategory;
 import ch.uzh.csg.reimbursement.model.Document;
 import ch.uzh.csg.reimbursement.model.Expense;
@@ -57,9 +61,11 @@ import ch.uzh.csg.reimbursement.model.exception.MaxFileSizeViolationException;
 import ch.uzh.csg.reimbursement.model.exception.NotSupportedFileTypeException;
 import ch.uzh.csg.reimbursement.model.exception.PdfExportException;
 import ch.uzh.csg.reimbursement.model.exception.PdfSignException;
+import ch.uzh.csg.reimbursement.model.exception.SearchLimitViolationException;
 import ch.uzh.csg.reimbursement.model.exception.TokenNotFoundException;
 import ch.uzh.csg.reimbursement.model.exception.ValidationException;
 import ch.uzh.csg.reimbursement.repository.ExpenseRepositoryProvider;
+import ch.uzh.csg.reimbursement.repository.ExpenseSearchSpecification;
 
 @Service
 @Transactional
@@ -88,11 +94,20 @@ public class ExpenseService {
 	@Autowired
 	private ValidationService validationService;
 
+	@Autowired
+	private ExpenseFullTextIndex fullTextIndex;
+
+	@Autowired
+	private ExpenseExporter expenseExporter;
+
 	@Value("${reimbursement.token.expenseItemAttachmentMobile.expirationInMilliseconds}")
 	private int tokenExpirationInMilliseconds;
 
-	@Value("${reimbursement.filesize.maxUploadFileSize}")
-	private int maxUploadFileSize;
+	@Value("${reimbursement.filesize.maxSignedPdfUploadSize}")
+	private int maxSignedPdfUploadSize;
+
+	@Value("${reimbursement.search.fullText.maxResults}")
+	private int maxFullTextResults;
 
 	public Expense createExpense(String accounting) {
 		User user = userService.getLoggedInUser();
@@ -101,6 +116,7 @@ public class ExpenseService {
 		if (validationService.matches(key, accounting)) {
 			expense = new Expense(user, null, accounting);
 			expenseRepository.create(expense);
+			fullTextIndex.update(expense);
 		} else {
 			throw new ValidationException(key);
 		}
@@ -151,6 +167,7 @@ public class ExpenseService {
 		if (validationService.matches(key, accounting)) {
 			if (authorizationService.checkEditAuthorization(expense)) {
 				expense.setAccounting(accounting);
+				fullTextIndex.update(expense);
 			} else {
 				LOG.debug("The logged in user has no access to this expense");
 				throw new AccessException();
@@ -169,9 +186,21 @@ public class ExpenseService {
 		}
 	}
 
+	// Loads the expense together with the receipts of all its items
+	public Expense getByUidForPdf(String uid) {
+
+		if (userService.userIsLoggedIn()) {
+			return checkViewAuthorization(expenseRepository.findByUidForPdf(uid), uid);
+		} else {
+			return getByTokenUid(uid);
+		}
+	}
+
 	private Expense getByExpenseUid(String uid) {
-		Expense expense = expenseRepository.findByUid(uid);
+		return checkViewAuthorization(expenseRepository.findByUid(uid), uid);
+	}
 
+	private Expense checkViewAuthorization(Expense expense, String uid) {
 		if (expense != null) {
 			if (authorizationService.checkViewAuthorization(expense)) {
 				return expense;
@@ -213,6 +242,7 @@ public class ExpenseService {
 		Expense expense = getByUid(uid);
 
 		if (expense.getState() == DRAFT || expense.getState() == REJECTED) {
+			fullTextIndex.remove(expense);
 			expenseRepository.delete(expense);
 		} else {
 			LOG.debug("Expense cannot be deleted in this state");
@@ -312,9 +342,25 @@ public class ExpenseService {
 	}
 
 	public Set<Expense> search(SearchExpenseDto dto) {
-		String accountingText = "%";
-		Date startTime = null;
-		Date endTime = null;
+		return expenseRepository.search(toSearchSpecification(dto));
+	}
+
+	// Returns the matching expenses together with their facet counts
+	public SearchExpenseResultDto searchWithFacets(SearchExpenseDto dto) {
+		ExpenseSearchSpecification specification = toSearchSpecification(dto);
+
+		return new SearchExpenseResultDto(expenseRepository.search(specification),
+				expenseRepository.countFacets(specification));
+	}
+
+	@Transactional(readOnly = true)
+	public void export(SearchExpenseDto dto, ExportFormat format, OutputStream outputStream) throws IOException {
+		expenseExporter.export(toSearchSpecification(dto), format, outputStream);
+	}
+
+	private ExpenseSearchSpecification toSearchSpecification(SearchExpenseDto dto) {
+		String lastName = null;
+		String accountingText = null;
 		CostCategory costCategory = null;
 
 		if (dto.getCostCategoryUid() != null) {
@@ -322,15 +368,11 @@ public class ExpenseService {
 		}
 
 		if (dto.getAccountingText() != null && !dto.getAccountingText().equals("")) {
-			accountingText = "%" + dto.getAccountingText() + "%";
-		}
-
-		if (dto.getStartTime() != null) {
-			startTime = dto.getStartTime();
+			accountingText = dto.getAccountingText();
 		}
 
-		if (dto.getEndTime() != null) {
-			endTime = dto.getEndTime();
+		if (dto.getLastName() != null && !dto.getLastName().equals("")) {
+			lastName = dto.getLastName();
 		}
 
 		ExpenseState state = null;
@@ -342,45 +384,25 @@ public class ExpenseService {
 			}
 		}
 
-		List<User> relevantUsers = new ArrayList<>();
-
-		// search for the last name
-		List<User> temporaryUsers;
-		if (dto.getLastName() != null && !dto.getLastName().equals("")) {
-			temporaryUsers = userService.getAllByLastName("%" + dto.getLastName() + "%");
-		} else {
-			temporaryUsers = userService.getAll();
-		}
-
-		// filter for the role
+		Role role = null;
 		if (dto.getRole() != null && !dto.getRole().equals("")) {
-			Role role = null;
 			try {
 				role = Role.valueOf(dto.getRole());
 			} catch (IllegalArgumentException e) {
 				LOG.debug("Illegal role name, ignoring.");
 			}
-			if (role != null) {
-				for (User user : temporaryUsers) {
-					Set<Role> roles = user.getRoles();
-					if (role == USER) {
-						// if role is user, only the users and not
-						// admin/fadmin etc are added
-						if (roles.contains(role) && roles.size() == 1) {
-							relevantUsers.add(user);
-						}
-					} else {
-						if (roles.contains(role)) {
-							relevantUsers.add(user);
-						}
-					}
-				}
-			}
-		} else {
-			relevantUsers = temporaryUsers;
 		}
 
-		return expenseRepository.search(relevantUsers, accountingText, startTime, endTime, state, costCategory);
+		return new ExpenseSearchSpecification(lastName, role, accountingText, dto.getStartTime(), dto.getEndTime(),
+				state, costCategory);
+	}
+
+	public List<Expense> searchFullText(String text, int limit) {
+		if (limit < 1 || limit > maxFullTextResults) {
+			LOG.debug("The full-text search returns between 1 and " + maxFullTextResults + " expenses.");
+			throw new SearchLimitViolationException();
+		}
+		return fullTextIndex.search(text, limit);
 	}
 
 	public Document setSignedPdf(String expenseUid, MultipartFile multipartFile) {
@@ -392,8 +414,8 @@ public class ExpenseService {
 		} else if (multipartFile.getSize() <= expense.getExpensePdf().getFileSize()) {
 			LOG.debug("File has not been changed");
 			throw new PdfSignException();
-		} else if (multipartFile.getSize() >= maxUploadFileSize) {
-			LOG.debug("File too big, allowed: " + maxUploadFileSize + " actual: " + multipartFile.getSize());
+		} else if (multipartFile.getSize() >= maxSignedPdfUploadSize) {
+			LOG.debug("File too big, allowed: " + maxSignedPdfUploadSize + " actual: " + multipartFile.getSize());
 			throw new MaxFileSizeViolationException();
 		} else if (!multipartFile.getContentType().equals(MIME_PDF)) {
 			LOG.debug("The uploaded file is not supported");
@@ -479,7 +501,7 @@ public class ExpenseService {
 
 	public Set<Expense> getArchive() {
 		User user = userService.getLoggedInUser();
-		return expenseRepository.findAllByStateForUser(ARCHIVED, user);
+		return expenseRepository.findArchiveByUser(user);
 	}
 
 	public void signElectronically(String uid) {
@@ -1,5 +1,8 @@
 package ch.uzh.csg.reimbursement.service;
 
+import static ch.uzh.csg.reimbursement.model.TokenType.ATTACHMENT_MOBILE;
+import static ch.uzh.csg.reimbursement.model.TokenType.SIGNATURE_MOBILE;
+
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
@@ -23,16 +26,14 @@ public class MobileService {
 	private TokenService tokenService;
 
 	public void createSignature(String tokenString, MultipartFile file) {
-		Token token = tokenService.getByUid(tokenString);
-		tokenService.checkValidity(token);
+		Token token = tokenService.getValidMobileToken(tokenString, SIGNATURE_MOBILE);
 		User user = token.getUser();
 		userService.addSignature(user, file);
 		tokenService.deleteToken(token);
 	}
 
 	public String createExpenseItemAttachment(String tokenString, MultipartFile file) {
-		Token token = tokenService.getByUid(tokenString);
-		tokenService.checkValidity(token);
+		Token token = tokenService.getValidMobileToken(tokenString, ATTACHMENT_MOBILE);
 		Document attachment = expenseItemService.setAttachment(token.getUid(), file);
 		tokenService.deleteToken(token);
 		// TODO Check if token is really deleted
@@ -3,31 +3,37 @@ package ch.uzh.csg.reimbursement.service;
 import static ch.uzh.csg.reimbursement.model.DocumentType.ATTACHMENT;
 import static ch.uzh.csg.reimbursement.model.DocumentType.GENERATED_PDF;
 import static ch.uzh.csg.reimbursement.model.Role.PROF;
-import static net.glxn.qrgen.core.image.ImageType.PNG;
 import static org.apache.xmlgraphics.util.MimeConstants.MIME_PDF;
-import static org.springframework.util.Base64Utils.encodeToString;
 import static org.springframework.util.ResourceUtils.getFile;
 
+import java.io.BufferedOutputStream;
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
 import java.io.IOException;
-import java.io.InputStream;
-import java.net.URI;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.util.ArrayList;
 import java.util.Date;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import javax.annotation.PostConstruct;
 
 import javax.xml.transform.Result;
 import javax.xml.transform.Source;
+import javax.xml.transform.Templates;
 import javax.xml.transform.Transformer;
+import javax.xml.transform.TransformerConfigurationException;
 import javax.xml.transform.TransformerException;
 import javax.xml.transform.TransformerFactory;
 import javax.xml.transform.sax.SAXResult;
 import javax.xml.transform.stream.StreamSource;
 
-import net.glxn.qrgen.javase.QRCode;
-
 import org.apache.commons.lang.time.DateUtils;
 import org.apache.fop.apps.Fop;
 import org.apache.fop.apps.FopFactory;
@@ -49,6 +55,10 @@ import org.springframework.util.Base64Utils;
 import org.springframework.web.multipart.MultipartFile;
 import org.xml.sax.SAXException;
 
+import ch.uzh.csg.reimbursement.application.image.ImageNormalizer;
+import ch.uzh.csg.reimbursement.application.image.ImagePdfWriter;
+import ch.uzh.csg.reimbursement.application.image.PdfImageCache;
+import ch.uzh.csg.reimbursement.application.pdf.ReceiptBundleCache;
 import ch.uzh.csg.reimbursement.application.xml.XmlConverter;
 import ch.uzh.csg.reimbursement.dto.AttachmentPdfDto;
 import ch.uzh.csg.reimbursement.dto.ExpenseItemPdfDto;
@@ -57,8 +67,6 @@ import ch.uzh.csg.reimbursement.dto.IPdfDto;
 import ch.uzh.csg.reimbursement.model.Document;
 import ch.uzh.csg.reimbursement.model.Expense;
 import ch.uzh.csg.reimbursement.model.ExpenseItem;
-import ch.uzh.csg.reimbursement.model.Signature;
-import ch.uzh.csg.reimbursement.model.User;
 import ch.uzh.csg.reimbursement.model.exception.PdfConcatException;
 import ch.uzh.csg.reimbursement.model.exception.PdfGenerationException;
 
@@ -82,80 +90,145 @@ public class PdfGenerationService {
 
 	@Autowired
 	private ExpenseItemService expenseItemService;
+
+	@Autowired
+	private ImageNormalizer imageNormalizer;
+
+	@Autowired
+	private ImagePdfWriter imagePdfWriter;
+
+	@Autowired
+	private PdfImageCache pdfImageCache;
+
+	@Autowired
+	private ReceiptBundleCache receiptBundleCache;
 	
 	@Value("${reimbursement.token.guest.expirationInMonths}")
 	private int guestTokenExpirationInMonths;
 
-	public void generateExpensePdf(String uid, String url) {
-		Expense expense = expenseService.getByUid(uid);
-		if (authorizationService.checkPdfGenerationAuthorization(expense)) {
-			String tokenUid = tokenService.createUniAdminToken(uid);
-			String urlWithTokenUid = url + tokenUid;
-			String xslClasspath = "classpath:xml2fo.xsl";
-			boolean managerHasRoleProf = expense.getAssignedManager().getRoles().contains(PROF);
-			String signatureUser = null;
-			String signatureFAdmin = null;
-			String signatureManager = null;
-			Date expenseExpiryDate = DateUtils.addMonths(new Date(), guestTokenExpirationInMonths);
-
-			if (!expense.getHasDigitalSignature()) {
-				signatureUser = getSignature(expense.getUser());
-				signatureFAdmin = getSignature(expense.getFinanceAdmin());
-				signatureManager = getSignature(expense.getAssignedManager());
-			}
+	@Value("${reimbursement.pdf.directImageConversion}")
+	private boolean directImageConversion;
 
-			// consolidate the second page for the pdf to ensure it's a valid
-			// accounting list
-			Set<ExpenseItemPdfDto> expenseItemsPdfDto = expenseItemService
-					.getConsolidatedExpenseItems(expense.getUid());
+	private final TransformerFactory transformerFactory = TransformerFactory.newInstance();
+	private final Map<String, Templates> templates = new ConcurrentHashMap<String, Templates>();
+	private FopFactory fopFactory;
 
-			ExpensePdfDto dto = new ExpensePdfDto(expense, expenseItemsPdfDto, urlWithTokenUid,
-					this.generateQRCode(urlWithTokenUid), signatureFAdmin, signatureManager, signatureUser,
-					managerHasRoleProf, expenseExpiryDate);
+	// The FopFactory is thread-safe and expensive to create, one instance
+	// serves all generations
+	@PostConstruct
+	public void init() {
+		try {
+			fopFactory = FopFactory.newInstance(getFile("classpath:/").toURI());
+		} catch (FileNotFoundException e) {
+			LOG.error("The base directory of the PDF generation is missing.");
+			throw new PdfGenerationException();
+		}
+	}
 
-			ByteArrayOutputStream outputStream = generatePdf(dto, xslClasspath);
-			ByteArrayOutputStream pdfConcat = concatPdf(new ByteArrayInputStream(outputStream.toByteArray()), expense);
-			Document doc = new Document(MIME_PDF, pdfConcat.size(), pdfConcat.toByteArray(), GENERATED_PDF);
-			expense.setPdf(doc);
+	public void generateExpensePdf(String uid, String url) {
+		Expense expense = expenseService.getByUidForPdf(uid);
+		if (authorizationService.checkPdfGenerationAuthorization(expense)) {
+			expense.setPdf(renderExpensePdf(expense, url));
 		} else {
 			LOG.debug("The PDF cannot be generated in this state");
 			throw new PdfGenerationException();
 		}
 	}
 
-	public Document generateAttachmentPdf(MultipartFile multipartFile) {
-		AttachmentPdfDto dto;
-		String xslClasspath = "classpath:attachmentXml2fo.xsl";
-		String base64String;
+	// Used by the print runs of the finance admins, the generated PDF is
+	// returned so it can be added to the combined PDF of the print run
+	public Document generatePrintPdf(String uid, String url) {
+		Expense expense = expenseService.getByUidForPdf(uid);
+		if (authorizationService.checkPrintPdfGenerationAuthorization(expense)) {
+			Document doc = renderExpensePdf(expense, url);
+			expense.setPdf(doc);
+			return doc;
+		} else {
+			LOG.debug("The PDF cannot be generated for a print run in this state");
+			throw new PdfGenerationException();
+		}
+	}
+
+	private Document renderExpensePdf(Expense expense, String url) {
+		String tokenUid = tokenService.createUniAdminToken(expense.getUid());
+		String urlWithTokenUid = url + tokenUid;
+		String xslClasspath = "classpath:xml2fo.xsl";
+		boolean managerHasRoleProf = expense.getAssignedManager().getRoles().contains(PROF);
+		String signatureUser = null;
+		String signatureFAdmin = null;
+		String signatureManager = null;
+		Date expenseExpiryDate = DateUtils.addMonths(new Date(), guestTokenExpirationInMonths);
+
+		if (!expense.getHasDigitalSignature()) {
+			signatureUser = pdfImageCache.getSignature(expense.getUser().getSignature());
+			signatureFAdmin = pdfImageCache.getSignature(expense.getFinanceAdmin().getSignature());
+			signatureManager = pdfImageCache.getSignature(expense.getAssignedManager().getSignature());
+		}
+
+		// consolidate the second page for the pdf to ensure it's a valid
+		// accounting list
+		Set<ExpenseItemPdfDto> expenseItemsPdfDto = expenseItemService
+				.getConsolidatedExpenseItems(expense.getUid());
 
+		ExpensePdfDto dto = new ExpensePdfDto(expense, expenseItemsPdfDto, urlWithTokenUid,
+				pdfImageCache.getQrCode(urlWithTokenUid), signatureFAdmin, signatureManager, signatureUser,
+				managerHasRoleProf, expenseExpiryDate);
+
+		// The cover pages, the numbered receipts and the merged PDF are written
+		// to temp files, only the merged PDF is read back into the heap once
+		File cover = null;
+		File merged = null;
+		try {
+			cover = createTempFile("pdf-cover-");
+			try (OutputStream outputStream = new BufferedOutputStream(new FileOutputStream(cover))) {
+				generatePdf(dto, xslClasspath, outputStream);
+			}
+			merged = createTempFile("pdf-merged-");
+			concatPdf(cover, expense, merged);
+
+			byte[] content = Files.readAllBytes(merged.toPath());
+			return new Document(MIME_PDF, content.length, content, GENERATED_PDF);
+		} catch (IOException e) {
+			LOG.error("PDF could not be written to the temp directory.", e);
+			throw new PdfGenerationException();
+		} finally {
+			deleteTempFile(cover);
+			deleteTempFile(merged);
+		}
+	}
+
+	public Document generateAttachmentPdf(MultipartFile multipartFile) {
+		byte[] image;
 		try {
-			assert multipartFile.getBytes().length > 0;
-			base64String = Base64Utils.encodeToString(multipartFile.getBytes());
-			dto = new AttachmentPdfDto(base64String);
+			byte[] content = multipartFile.getBytes();
+			assert content.length > 0;
+			image = imageNormalizer.normalize(content);
 		} catch (IOException e) {
 			LOG.error("PDF source file(s) is/are missing.");
 			throw new PdfGenerationException();
 		}
 
-		ByteArrayOutputStream outputStream = generatePdf(dto, xslClasspath);
+		if (directImageConversion) {
+			try {
+				byte[] pdf = imagePdfWriter.write(image);
+				return new Document(MIME_PDF, pdf.length, pdf, ATTACHMENT);
+			} catch (IOException e) {
+				// FOP gets a chance with the images PDFBox cannot embed
+				LOG.warn("The image could not be converted with PDFBox, falling back to FOP.", e);
+			}
+		}
+
+		AttachmentPdfDto dto = new AttachmentPdfDto(Base64Utils.encodeToString(image));
+		ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+		generatePdf(dto, "classpath:attachmentXml2fo.xsl", outputStream);
 		Document doc = new Document(MIME_PDF, outputStream.size(), outputStream.toByteArray(), ATTACHMENT);
 		return doc;
 	}
 
-	private ByteArrayOutputStream generatePdf(IPdfDto dto, String xslClasspath) {
-		FopFactory fopFactory;
-		TransformerFactory tFactory = TransformerFactory.newInstance();
-
+	private void generatePdf(IPdfDto dto, String xslClasspath, OutputStream outputStream) {
 		try {
-			File xslFile = getFile(xslClasspath);
-			URI baseDir = getFile("classpath:/").toURI();
-
-			fopFactory = FopFactory.newInstance(baseDir);
-			ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
 			Fop fop = fopFactory.newFop(MIME_PDF, outputStream);
-
-			Source xsltSrc = new StreamSource(xslFile);
-			Transformer transformer = tFactory.newTransformer(xsltSrc);
+			Transformer transformer = getTemplates(xslClasspath).newTransformer();
 
 			// Make sure the XSL transformation's result is piped through to FOP
 			Result res = new SAXResult(fop.getDefaultHandler());
@@ -166,7 +239,6 @@ public class PdfGenerationService {
 
 			// Start the transformation and rendering process
 			transformer.transform(src, res);
-			return outputStream;
 		} catch (FileNotFoundException e) {
 			LOG.error("PDF source file(s) is/are missing.");
 			throw new PdfGenerationException();
@@ -176,48 +248,112 @@ public class PdfGenerationService {
 		}
 	}
 
-	private ByteArrayOutputStream concatPdf(ByteArrayInputStream generatedExpensePDF, Expense expense) {
-		InputStream source = null;
-		ByteArrayOutputStream output = new ByteArrayOutputStream();
-		MemoryUsageSetting memUsageSetting = MemoryUsageSetting.setupTempFileOnly();
+	// The stylesheets are compiled once, the compiled templates are
+	// thread-safe while the factory is not
+	private Templates getTemplates(String xslClasspath) throws FileNotFoundException,
+	TransformerConfigurationException {
+		Templates compiled = templates.get(xslClasspath);
+		if (compiled == null) {
+			synchronized (transformerFactory) {
+				compiled = templates.get(xslClasspath);
+				if (compiled == null) {
+					compiled = transformerFactory.newTemplates(new StreamSource(getFile(xslClasspath)));
+					templates.put(xslClasspath, compiled);
+				}
+			}
+		}
+		return compiled;
+	}
+
+	// The numbered receipts only change with the attachments, so they are
+	// taken from the cache and merged with the freshly rendered cover pages
+	private void concatPdf(File cover, Expense expense, File destination) {
 		PDFMergerUtility mergerUtility = new PDFMergerUtility();
-		byte[] attachmentByteArray = null;
+		File receipts = getReceiptsBundle(expense);
 
-		Set<ExpenseItem> expenseItemList = expense.getExpenseItems();
+		try {
+			// Add the main two PDF pages
+			mergerUtility.addSource(cover);
+
+			// Add receipts
+			if (receipts != null) {
+				mergerUtility.addSource(receipts);
+			}
 
-		// Add the main two PDF pages
-		mergerUtility.addSource(generatedExpensePDF);
+			mergerUtility.setDestinationFileName(destination.getAbsolutePath());
+			mergerUtility.mergeDocuments(MemoryUsageSetting.setupTempFileOnly());
+		} catch (IOException e) {
+			LOG.error("PDF could not be concatenated.");
+			throw new PdfConcatException();
+		} finally {
+			// the cache must not delete the bundle while it is merged
+			receiptBundleCache.release(receipts);
+		}
+	}
 
-		// Add receipts
-		int iterator = 1;
-		for (ExpenseItem expenseItem : expenseItemList) {
+	// The returned bundle is pinned in the cache and has to be released
+	private File getReceiptsBundle(Expense expense) {
+		List<Document> attachments = new ArrayList<Document>();
+		for (ExpenseItem expenseItem : expense.getExpenseItems()) {
 			if (expenseItem.getAttachment() != null) {
-				attachmentByteArray = expenseItem.getAttachment().getContent();
+				attachments.add(expenseItem.getAttachment());
+			}
+		}
+		if (attachments.isEmpty()) {
+			return null;
+		}
+
+		String key = receiptBundleCache.createKey(attachments);
+		File bundle = receiptBundleCache.get(key);
+		if (bundle == null) {
+			bundle = receiptBundleCache.put(key, buildReceiptsBundle(attachments));
+		} else {
+			LOG.debug("The receipts of expense " + expense.getUid() + " have been taken from the cache.");
+		}
+		return bundle;
+	}
+
+	private File buildReceiptsBundle(List<Document> attachments) {
+		PDFMergerUtility mergerUtility = new PDFMergerUtility();
+		List<File> receipts = new ArrayList<File>();
+		File bundle = null;
+		boolean built = false;
+
+		try {
+			bundle = createTempFile("pdf-receipts-");
+
+			int iterator = 1;
+			for (Document attachment : attachments) {
+				File receipt = createTempFile("pdf-receipt-");
+				receipts.add(receipt);
 
 				// Add receipt numbers on every receipt page
-				attachmentByteArray = addReceiptNumber(attachmentByteArray, iterator);
+				addReceiptNumber(attachment.getContent(), iterator, receipt);
 
 				// Add respective pdf or graphic
-				source = new ByteArrayInputStream(attachmentByteArray);
-				mergerUtility.addSource(source);
+				mergerUtility.addSource(receipt);
 
 				iterator++;
 			}
-		}
-
-		mergerUtility.setDestinationStream(output);
 
-		try {
-			mergerUtility.mergeDocuments(memUsageSetting);
-			return output;
+			mergerUtility.setDestinationFileName(bundle.getAbsolutePath());
+			mergerUtility.mergeDocuments(MemoryUsageSetting.setupTempFileOnly());
+			built = true;
+			return bundle;
 		} catch (IOException e) {
 			LOG.error("PDF could not be concatenated.");
 			throw new PdfConcatException();
+		} finally {
+			for (File receipt : receipts) {
+				deleteTempFile(receipt);
+			}
+			if (!built) {
+				deleteTempFile(bundle);
+			}
 		}
 	}
 
-	private byte[] addReceiptNumber(byte[] attachmentByteArray, int expenseItemId) {
-		ByteArrayOutputStream output = new ByteArrayOutputStream();
+	private void addReceiptNumber(byte[] attachmentByteArray, int expenseItemId, File destination) {
 		PDDocument doc = null;
 		float paddingRight = 80;
 		float paddingTop = 40;
@@ -255,30 +391,22 @@ public class PdfGenerationService {
 				contentStream.close();
 			}
 
-			doc.save(output);
+			doc.save(destination);
 			doc.close();
 
 		} catch (IOException e) {
 			LOG.error("PDF could not be generated.");
 			throw new PdfGenerationException();
 		}
-
-		return output.toByteArray();
 	}
 
-	private String generateQRCode(String url) {
-
-		ByteArrayOutputStream stream = QRCode.from(url).to(PNG).stream();
-		byte[] imageInByte = stream.toByteArray();
-		String base64 = encodeToString(imageInByte);
-
-		return base64;
+	private File createTempFile(String prefix) throws IOException {
+		return File.createTempFile(prefix, ".pdf");
 	}
 
-	private String getSignature(User user) {
-		Signature s = user.getSignature();
-		byte[] signature = s.getContent();
-
-		return Base64Utils.encodeToString(signature);
+	private void deleteTempFile(File file) {
+		if (file != null && !file.delete() && file.exists()) {
+			LOG.warn("The temp file " + file + " could not be deleted.");
+		}
 	}
 }
@@ -9,6 +9,7 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
+import ch.uzh.csg.reimbursement.application.token.MobileTokenRegistry;
 import ch.uzh.csg.reimbursement.model.Token;
 import ch.uzh.csg.reimbursement.model.TokenType;
 import ch.uzh.csg.reimbursement.model.User;
@@ -25,15 +26,20 @@ public class TokenService {
 	@Autowired
 	private UserService userService;
 
+	@Autowired
+	private MobileTokenRegistry mobileTokenRegistry;
+
 	@Value("${reimbursement.token.expenseItemAttachmentMobile.expirationInMilliseconds}")
 	private int tokenExpirationInMilliseconds;
 
 	public void createToken(Token token) {
 		tokenRepository.create(token);
+		mobileTokenRegistry.register(token);
 	}
 
 	public void deleteToken(Token token) {
 		tokenRepository.delete(token);
+		mobileTokenRegistry.remove(token.getUid());
 	}
 
 	public Token getByUid(String uid) {
@@ -53,15 +59,53 @@ public class TokenService {
 	}
 
 	public Token updateToken(Token token, String uid) {
-		if (token.isExpiredInMilliseconds(tokenExpirationInMilliseconds)) {
+		refreshToken(token, tokenExpirationInMilliseconds);
+		token.setContent(uid);
+		return token;
+	}
+
+	public void refreshToken(Token token, int expirationInMilliseconds) {
+		String previousUid = token.getUid();
+		if (token.isExpiredInMilliseconds(expirationInMilliseconds)) {
 			// generate new token uid only if it is expired
 			token.generateNewUid();
 		}
 		token.setCreatedToNow();
-		token.setContent(uid);
+		mobileTokenRegistry.remove(previousUid);
+		mobileTokenRegistry.register(token);
+	}
+
+	/*
+	 * Short-lived tokens registered on this instance are validated in memory,
+	 * all other uids are checked in the database and registered.
+	 */
+	public void checkValidMobileToken(String uid, TokenType type) {
+		if (checkRegisteredExpiration(uid, type) < 0) {
+			getValidMobileToken(uid, type);
+		}
+	}
+
+	// The caller needs the token itself, so only a known expiration saves the query
+	public Token getValidMobileToken(String uid, TokenType type) {
+		checkRegisteredExpiration(uid, type);
+		Token token = getByUid(uid);
+		checkValidity(token);
+		mobileTokenRegistry.register(token);
 		return token;
 	}
 
+	// Returns -1 if the registry does not know the token
+	private long checkRegisteredExpiration(String uid, TokenType type) {
+		if (!mobileTokenRegistry.isShortLived(type)) {
+			return -1;
+		}
+		long expiresAt = mobileTokenRegistry.getExpiresAt(uid, type);
+		if (expiresAt >= 0 && expiresAt <= System.currentTimeMillis()) {
+			throw new TokenExpiredException();
+		}
+		return expiresAt;
+	}
+
 	public Token createExpenseItemAttachmentMobileToken(String uid) {
 		User user = userService.getLoggedInUser();
 		Token token = getByTypeAndUser(ATTACHMENT_MOBILE, user);
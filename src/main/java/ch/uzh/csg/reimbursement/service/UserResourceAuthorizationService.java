@@ -136,6 +136,18 @@ public class UserResourceAuthorizationService {
 		}
 	}
 
+	// Finance admins print the paper-signed expenses, a digitally signed PDF
+	// must not be replaced by a generated one
+	public boolean checkPrintPdfGenerationAuthorization(Expense expense) {
+		User user = userService.getLoggedInUser();
+		if (expense.getState().equals(SIGNED) && !expense.getHasDigitalSignature()
+				&& user.getRoles().contains(FINANCE_ADMIN) && !expense.getUserUid().equals(user.getUid())) {
+			return true;
+		} else {
+			return false;
+		}
+	}
+
 	private boolean projectFieldsSet(Expense expense) {
 		boolean allProjectFieldsSet = true;
 		for (ExpenseItem expenseItem : expense.getExpenseItems()) {
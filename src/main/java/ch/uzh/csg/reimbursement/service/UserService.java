@@ -28,10 +28,12 @@ import org.springframework.transaction.annotation.Transactional;
 import org.springframework.web.multipart.MultipartFile;
 
 import ch.uzh.csg.reimbursement.application.ldap.LdapPerson;
+import ch.uzh.csg.reimbursement.application.search.ExpenseFullTextIndex;
 import ch.uzh.csg.reimbursement.application.validation.ValidationService;
 import ch.uzh.csg.reimbursement.configuration.BuildLevel;
 import ch.uzh.csg.reimbursement.dto.CroppingDto;
 import ch.uzh.csg.reimbursement.model.Language;
+import ch.uzh.csg.reimbursement.model.NotificationFrequency;
 import ch.uzh.csg.reimbursement.model.Role;
 import ch.uzh.csg.reimbursement.model.Signature;
 import ch.uzh.csg.reimbursement.model.Token;
@@ -59,11 +61,14 @@ public class UserService {
 	@Autowired
 	private ValidationService validationService;
 
+	@Autowired
+	private ExpenseFullTextIndex fullTextIndex;
+
 	@Value("${reimbursement.token.signatureMobile.expirationInMilliseconds}")
 	private int tokenExpirationInMilliseconds;
 
-	@Value("${reimbursement.filesize.maxUploadFileSize}")
-	private int maxUploadFileSize;
+	@Value("${reimbursement.filesize.maxSignatureUploadSize}")
+	private int maxSignatureUploadSize;
 
 	@Value("${reimbursement.buildLevel}")
 	private BuildLevel buildLevel;
@@ -99,8 +104,8 @@ public class UserService {
 			LOG.debug("The uploaded file type is not supported.");
 			throw new NotSupportedFileTypeException();
 
-		} else if (file.getSize() >= maxUploadFileSize) {
-			LOG.debug("File too big, allowed: " + maxUploadFileSize + " actual: " + file.getSize());
+		} else if (file.getSize() >= maxSignatureUploadSize) {
+			LOG.debug("File too big, allowed: " + maxSignatureUploadSize + " actual: " + file.getSize());
 			throw new MaxFileSizeViolationException();
 
 		} else {
@@ -145,12 +150,18 @@ public class UserService {
 					ldapPerson.addRole(REGISTERED_USER);
 				}
 
+				boolean nameChanged = !ldapPerson.getFirstName().equals(user.getFirstName())
+						|| !ldapPerson.getLastName().equals(user.getLastName());
+
 				user.setFirstName(ldapPerson.getFirstName());
 				user.setLastName(ldapPerson.getLastName());
 				user.setEmail(ldapPerson.getEmail());
 				user.setManagerName(ldapPerson.getManager());
 				user.setRoles(ldapPerson.getRoles());
 
+				if (nameChanged) {
+					fullTextIndex.updateAllOfUser(user);
+				}
 			} else {
 				user = new User(ldapPerson.getFirstName(), ldapPerson.getLastName(), ldapPerson.getUid(),
 						ldapPerson.getEmail(), ldapPerson.getManager(), ldapPerson.getRoles());
@@ -221,12 +232,7 @@ public class UserService {
 		Token previousToken = tokenService.getByTypeAndUser(SIGNATURE_MOBILE, user);
 
 		if (previousToken != null) {
-			if (previousToken.isExpiredInMilliseconds(tokenExpirationInMilliseconds)) {
-				// generate new token uid only if it is expired
-				previousToken.generateNewUid();
-			}
-			previousToken.setCreatedToNow();
-
+			tokenService.refreshToken(previousToken, tokenExpirationInMilliseconds);
 			token = previousToken;
 		} else {
 			token = new Token(SIGNATURE_MOBILE, user);
@@ -267,6 +273,16 @@ public class UserService {
 		}
 	}
 
+	public void updateNotificationFrequency(NotificationFrequency notificationFrequency) {
+		User user = getLoggedInUser();
+		user.setNotificationFrequency(notificationFrequency);
+	}
+
+	public void updateQuietHours(Integer start, Integer end) {
+		User user = getLoggedInUser();
+		user.setQuietHours(start, end);
+	}
+
 	public void updateIsActive(Boolean isActive) {
 		User user = getLoggedInUser();
 		if (user.getRoles().contains(DEPARTMENT_MANAGER) || (user.getRoles().contains(HEAD_OF_INSTITUTE))) {
@@ -0,0 +1,23 @@
+CREATE TABLE ExpenseSearchIndex_ (
+	id int(10) auto_increment NOT NULL PRIMARY KEY,
+	expense_id int(10) NOT NULL,
+	content varchar NOT NULL
+);
+
+ALTER TABLE ExpenseSearchIndex_ ADD CONSTRAINT EXPENSESEARCHINDEX_EXPENSE_UNIQUE UNIQUE(expense_id);
+ALTER TABLE ExpenseSearchIndex_ ADD FOREIGN KEY (expense_id) REFERENCES Expense_(id) ON DELETE CASCADE;
+
+INSERT INTO ExpenseSearchIndex_ (expense_id, content)
+SELECT e.id, e.accounting || ' ' || u.first_name || ' ' || u.last_name || ' ' || COALESCE((
+		SELECT GROUP_CONCAT(COALESCE(i.explanation, '') || ' ' || COALESCE(i.project, '') || ' ' || COALESCE(n.de, '') || ' ' || COALESCE(n.en, '') SEPARATOR ' ')
+		FROM ExpenseItem_ i
+		JOIN CostCategory_ c ON c.id = i.cost_category_id
+		LEFT JOIN CostCategoryTranslation_ n ON n.id = c.name_id
+		WHERE i.expense_id = e.id), '')
+FROM Expense_ e
+JOIN User_ u ON u.id = e.user_id;
+
+-- the Lucene index is kept up to date by triggers on the table
+CREATE ALIAS IF NOT EXISTS FTL_INIT FOR "org.h2.fulltext.FullTextLucene.init";
+CALL FTL_INIT();
+CALL FTL_CREATE_INDEX('PUBLIC', 'EXPENSESEARCHINDEX_', 'CONTENT');
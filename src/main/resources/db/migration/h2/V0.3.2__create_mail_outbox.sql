@@ -0,0 +1,20 @@
+CREATE TABLE MailOutbox_ (
+	id int(10) auto_increment NOT NULL PRIMARY KEY,
+	from_email varchar NOT NULL,
+	from_name varchar NULL,
+	to_email varchar NOT NULL,
+	cc_email varchar NULL,
+	bcc_email varchar NULL,
+	reply_to_email varchar NULL,
+	subject varchar NULL,
+	body varchar NOT NULL,
+	state varchar NOT NULL,
+	attempts int(10) NOT NULL,
+	next_attempt timestamp NOT NULL,
+	claimed timestamp NULL,
+	last_error varchar NULL,
+	created timestamp NOT NULL
+);
+
+-- the worker claims the due entries in the order they were created
+CREATE INDEX MAILOUTBOX_STATE_NEXT_ATTEMPT ON MailOutbox_ (state, next_attempt);
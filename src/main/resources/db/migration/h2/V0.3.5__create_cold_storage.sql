@@ -0,0 +1,9 @@
+CREATE TABLE ColdStorageContent_ (
+	id int(10) auto_increment NOT NULL PRIMARY KEY,
+	content blob NOT NULL
+);
+
+ALTER TABLE Document_ ADD cold_storage_content_id int(10) NULL;
+
+-- the archivist updates all printed expenses older than the cutoff at once
+CREATE INDEX EXPENSE_STATE_DATE ON Expense_ (state, date);
@@ -0,0 +1,21 @@
+CREATE TABLE ExpenseSearchIndex_ (
+	id serial NOT NULL PRIMARY KEY,
+	expense_id integer NOT NULL,
+	content text NOT NULL
+);
+
+ALTER TABLE ExpenseSearchIndex_ ADD CONSTRAINT EXPENSESEARCHINDEX_EXPENSE_UNIQUE UNIQUE(expense_id);
+ALTER TABLE ExpenseSearchIndex_ ADD FOREIGN KEY (expense_id) REFERENCES Expense_(id) ON DELETE CASCADE;
+
+INSERT INTO ExpenseSearchIndex_ (expense_id, content)
+SELECT e.id, concat_ws(' ', e.accounting, u.first_name, u.last_name, (
+		SELECT string_agg(concat_ws(' ', i.explanation, i.project, n.de, n.en), ' ')
+		FROM ExpenseItem_ i
+		JOIN CostCategory_ c ON c.id = i.cost_category_id
+		LEFT JOIN CostCategoryTranslation_ n ON n.id = c.name_id
+		WHERE i.expense_id = e.id))
+FROM Expense_ e
+JOIN User_ u ON u.id = e.user_id;
+
+-- the expression has to match the one used in the search query
+CREATE INDEX EXPENSESEARCHINDEX_CONTENT_FTS ON ExpenseSearchIndex_ USING gin (to_tsvector('simple', content));
@@ -0,0 +1,9 @@
+CREATE TABLE ColdStorageContent_ (
+	id serial NOT NULL PRIMARY KEY,
+	content bytea NOT NULL
+);
+
+ALTER TABLE Document_ ADD cold_storage_content_id integer NULL;
+
+-- the archivist updates all printed expenses older than the cutoff at once
+CREATE INDEX EXPENSE_STATE_DATE ON Expense_ (state, date);
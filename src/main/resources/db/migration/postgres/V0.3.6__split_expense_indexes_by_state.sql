@@ -0,0 +1,11 @@
+-- The live and the archived expenses get separate partial indexes. The
+-- dashboard queries only touch the small live indexes, however many expenses
+-- are archived, and the archive of a user is read from its own index.
+CREATE INDEX EXPENSE_LIVE_USER ON Expense_ (user_id) WHERE state <> 'ARCHIVED';
+CREATE INDEX EXPENSE_LIVE_ASSIGNED_MANAGER ON Expense_ (assigned_manager_id) WHERE state NOT IN ('ARCHIVED', 'PRINTED');
+CREATE INDEX EXPENSE_LIVE_FINANCE_ADMIN ON Expense_ (finance_admin_id) WHERE state NOT IN ('ARCHIVED', 'PRINTED');
+CREATE INDEX EXPENSE_LIVE_STATE ON Expense_ (state, user_id) WHERE state <> 'ARCHIVED';
+CREATE INDEX EXPENSE_ARCHIVE_USER ON Expense_ (user_id, date) WHERE state = 'ARCHIVED';
+
+-- the items are always loaded by their expense
+CREATE INDEX EXPENSEITEM_EXPENSE ON ExpenseItem_ (expense_id);
@@ -0,0 +1,13 @@
+-- Trigram indexes for the substring search on accounting and last name.
+-- Creating the pg_trgm extension needs a superuser, so it is not done by the
+-- application. A DBA can run "CREATE EXTENSION pg_trgm;" on the database
+-- beforehand, without it the indexes are skipped and the search still works
+-- with a sequential scan.
+DO $$
+BEGIN
+	IF EXISTS (SELECT 1 FROM pg_extension WHERE extname = 'pg_trgm') THEN
+		CREATE INDEX EXPENSE_ACCOUNTING_TRGM ON Expense_ USING gin (lower(accounting) gin_trgm_ops);
+		CREATE INDEX USER_LAST_NAME_TRGM ON User_ USING gin (lower(last_name) gin_trgm_ops);
+	END IF;
+END
+$$;
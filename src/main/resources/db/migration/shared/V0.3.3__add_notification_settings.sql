@@ -0,0 +1,8 @@
+ALTER TABLE User_ ADD COLUMN notification_frequency varchar DEFAULT 'IMMEDIATE' NOT NULL;
+ALTER TABLE User_ ADD COLUMN quiet_hours_start integer NULL;
+ALTER TABLE User_ ADD COLUMN quiet_hours_end integer NULL;
+ALTER TABLE User_ ADD COLUMN last_notification timestamp NULL;
+
+-- every user is queued at most once, the buffer inserts without checking
+DELETE FROM EmailReceiver_ WHERE id NOT IN (SELECT MIN(id) FROM EmailReceiver_ GROUP BY uid);
+ALTER TABLE EmailReceiver_ ADD CONSTRAINT EMAILRECEIVER_UID_UNIQUE UNIQUE(uid);
@@ -0,0 +1,2 @@
+-- the expired tokens are deleted by type and creation time
+CREATE INDEX TOKEN_TYPE_CREATED ON Token_ (type, created);
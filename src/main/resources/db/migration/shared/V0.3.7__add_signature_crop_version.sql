@@ -0,0 +1,2 @@
+-- the cached signature images of the PDF generation are keyed by id and crop version
+ALTER TABLE Signature_ ADD COLUMN crop_version integer DEFAULT 0 NOT NULL;
@@ -0,0 +1,76 @@
+package ch.uzh.csg.reimbursement.application.archive;
+
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyZeroInteractions;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.runners.MockitoJUnitRunner;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import ch.uzh.csg.reimbursement.model.Document;
+import ch.uzh.csg.reimbursement.repository.ExpenseItemRepositoryProvider;
+import ch.uzh.csg.reimbursement.repository.ExpenseRepositoryProvider;
+
+@RunWith(MockitoJUnitRunner.class)
+public class ExpenseArchivistTest {
+
+	@InjectMocks
+	private ExpenseArchivist archivist;
+
+	@Mock
+	private ExpenseRepositoryProvider expenseRepository;
+
+	@Mock
+	private ExpenseItemRepositoryProvider expenseItemRepository;
+
+	@Before
+	public void setup() {
+		ReflectionTestUtils.setField(archivist, "guestTokenExpirationInMonths", 6);
+		ReflectionTestUtils.setField(archivist, "coldStorageBatchSize", 3);
+	}
+
+	@Test
+	public void testArchiveWithoutColdStorage() {
+
+		// given
+		ReflectionTestUtils.setField(archivist, "coldStorageEnabled", false);
+
+		// when
+		archivist.archivePrintedExpenses();
+
+		// then
+		verify(expenseRepository).archivePrintedBefore(any(Date.class));
+		verifyZeroInteractions(expenseItemRepository);
+	}
+
+	@Test
+	public void testColdStorageBatchIsFilledUpWithAttachments() {
+
+		// given
+		ReflectionTestUtils.setField(archivist, "coldStorageEnabled", true);
+		Document pdf = mock(Document.class);
+		Document attachment = mock(Document.class);
+		List<Document> pdfs = new ArrayList<Document>(Arrays.asList(pdf));
+		given(expenseRepository.findArchivedPdfsNotInColdStorage(3)).willReturn(pdfs);
+		given(expenseItemRepository.findArchivedAttachmentsNotInColdStorage(2)).willReturn(Arrays.asList(attachment));
+
+		// when
+		archivist.archivePrintedExpenses();
+
+		// then
+		verify(pdf).moveToColdStorage();
+		verify(attachment).moveToColdStorage();
+	}
+}
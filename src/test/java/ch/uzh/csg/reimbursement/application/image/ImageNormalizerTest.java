@@ -0,0 +1,44 @@
+package ch.uzh.csg.reimbursement.application.image;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.sameInstance;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+public class ImageNormalizerTest {
+
+	private ImageNormalizer normalizer = new ImageNormalizer();
+
+	@Before
+	public void setup() {
+		ReflectionTestUtils.setField(normalizer, "maxWidth", 1496);
+		ReflectionTestUtils.setField(normalizer, "maxHeight", 2181);
+		ReflectionTestUtils.setField(normalizer, "jpegQuality", 0.8f);
+		ReflectionTestUtils.setField(normalizer, "workers", 1);
+		ReflectionTestUtils.setField(normalizer, "timeoutInMilliseconds", 10000L);
+		normalizer.init();
+	}
+
+	@After
+	public void tearDown() {
+		normalizer.destroy();
+	}
+
+	@Test
+	public void testUnreadableImageIsPassedOnAsItIs() {
+
+		// given
+		// ImageIO has no reader for it, FOP may still have one
+		byte[] content = "not an image ImageIO can read".getBytes();
+
+		// when
+		byte[] normalized = normalizer.normalize(content);
+
+		// then
+		assertThat(normalized, is(sameInstance(content)));
+	}
+}
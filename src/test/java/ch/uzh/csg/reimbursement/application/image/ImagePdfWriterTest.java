@@ -0,0 +1,63 @@
+package ch.uzh.csg.reimbursement.application.image;
+
+import static java.awt.image.BufferedImage.TYPE_INT_ARGB;
+import static java.awt.image.BufferedImage.TYPE_INT_RGB;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+
+import javax.imageio.ImageIO;
+
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.junit.Test;
+
+public class ImagePdfWriterTest {
+
+	private ImagePdfWriter writer = new ImagePdfWriter();
+
+	@Test
+	public void testJpegBecomesOnePage() throws IOException {
+
+		// given
+		byte[] photo = encode(new BufferedImage(1496, 1122, TYPE_INT_RGB), "jpeg");
+
+		// when
+		byte[] pdf = writer.write(photo);
+
+		// then
+		try (PDDocument document = PDDocument.load(pdf)) {
+			assertThat(document.getNumberOfPages(), is(1));
+		}
+	}
+
+	@Test
+	public void testPngBecomesOnePage() throws IOException {
+
+		// given
+		byte[] screenshot = encode(new BufferedImage(400, 300, TYPE_INT_ARGB), "png");
+
+		// when
+		byte[] pdf = writer.write(screenshot);
+
+		// then
+		try (PDDocument document = PDDocument.load(pdf)) {
+			assertThat(document.getNumberOfPages(), is(1));
+		}
+	}
+
+	@Test(expected = IOException.class)
+	public void testUnknownFormatIsRejected() throws IOException {
+
+		// when
+		writer.write("no image".getBytes());
+	}
+
+	private byte[] encode(BufferedImage image, String format) throws IOException {
+		ByteArrayOutputStream output = new ByteArrayOutputStream();
+		ImageIO.write(image, format, output);
+		return output.toByteArray();
+	}
+}
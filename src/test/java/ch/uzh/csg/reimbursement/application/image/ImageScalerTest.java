@@ -0,0 +1,64 @@
+package ch.uzh.csg.reimbursement.application.image;
+
+import static java.awt.image.BufferedImage.TYPE_INT_ARGB;
+import static java.awt.image.BufferedImage.TYPE_INT_RGB;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.lessThan;
+import static org.hamcrest.Matchers.sameInstance;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+
+import javax.imageio.ImageIO;
+
+import org.junit.Test;
+
+public class ImageScalerTest {
+
+	private ImageScaler scaler = new ImageScaler(1496, 2181, 0.8f);
+
+	@Test
+	public void testLargePhotoIsScaledIntoTheBounds() throws IOException {
+
+		// given
+		byte[] photo = encode(new BufferedImage(4000, 3000, TYPE_INT_RGB), "jpeg");
+
+		// when
+		byte[] scaled = scaler.scale(photo);
+
+		// then
+		BufferedImage image = ImageIO.read(new ByteArrayInputStream(scaled));
+		assertThat(image.getWidth(), is(1496));
+		assertThat(image.getHeight(), is(1122));
+		assertThat(scaled.length, lessThan(photo.length));
+	}
+
+	@Test
+	public void testSmallImageIsKeptAsItIs() throws IOException {
+
+		// given
+		byte[] screenshot = encode(new BufferedImage(800, 600, TYPE_INT_ARGB), "png");
+
+		// when
+		byte[] scaled = scaler.scale(screenshot);
+
+		// then
+		assertThat(scaled, is(sameInstance(screenshot)));
+	}
+
+	@Test(expected = IOException.class)
+	public void testUnknownFormatIsRejected() throws IOException {
+
+		// when
+		scaler.scale("no image".getBytes());
+	}
+
+	private byte[] encode(BufferedImage image, String format) throws IOException {
+		ByteArrayOutputStream output = new ByteArrayOutputStream();
+		ImageIO.write(image, format, output);
+		return output.toByteArray();
+	}
+}
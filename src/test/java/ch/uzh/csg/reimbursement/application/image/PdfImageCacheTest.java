@@ -0,0 +1,108 @@
+package ch.uzh.csg.reimbursement.application.image;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.sameInstance;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+import org.junit.Test;
+
+import ch.uzh.csg.reimbursement.model.Signature;
+
+public class PdfImageCacheTest {
+
+	// the encoded signatures of the tests are 4 characters per 3 bytes
+	private PdfImageCache cache = new PdfImageCache(2, 8);
+
+	@Test
+	public void testSignatureIsEncodedOncePerCropVersion() {
+
+		// given
+		Signature signature = mock(Signature.class);
+		given(signature.getContent()).willReturn(new byte[] { 1, 2, 3 });
+		given(signature.getCacheKey()).willReturn("7:1", "7:1", "7:2");
+
+		// when
+		String first = cache.getSignature(signature);
+		String second = cache.getSignature(signature);
+		cache.getSignature(signature);
+
+		// then
+		assertThat(second, is(sameInstance(first)));
+		verify(signature, times(2)).getContent();
+	}
+
+	@Test
+	public void testSignaturesAreEvictedByTheirTotalLength() {
+
+		// given
+		Signature first = createSignature("1:0", new byte[] { 1, 2, 3 });
+		Signature second = createSignature("2:0", new byte[] { 4, 5, 6 });
+		Signature third = createSignature("3:0", new byte[] { 7, 8, 9 });
+		cache.getSignature(first);
+		cache.getSignature(second);
+
+		// when
+		cache.getSignature(third);
+		cache.getSignature(first);
+		cache.getSignature(third);
+
+		// then
+		verify(first, times(2)).getContent();
+		verify(third, times(1)).getContent();
+	}
+
+	@Test
+	public void testSignatureLargerThanTheCacheIsNotKept() {
+
+		// given
+		Signature signature = createSignature("1:0", new byte[12]);
+
+		// when
+		cache.getSignature(signature);
+		cache.getSignature(signature);
+
+		// then
+		verify(signature, times(2)).getContent();
+	}
+
+	@Test
+	public void testQrCodeIsRenderedOncePerUrl() {
+
+		// given
+		String url = "https://example.com/public/mobile/token";
+
+		// when
+		String first = cache.getQrCode(url);
+		String second = cache.getQrCode(url);
+
+		// then
+		assertThat(second, is(sameInstance(first)));
+	}
+
+	@Test
+	public void testLeastRecentlyUsedEntryIsEvicted() {
+
+		// given
+		String first = cache.getQrCode("https://example.com/1");
+		cache.getQrCode("https://example.com/2");
+		cache.getQrCode("https://example.com/3");
+
+		// when
+		String rendered = cache.getQrCode("https://example.com/1");
+
+		// then
+		assertThat(rendered, is(first));
+		assertThat(rendered == first, is(false));
+	}
+
+	private Signature createSignature(String cacheKey, byte[] content) {
+		Signature signature = mock(Signature.class);
+		given(signature.getCacheKey()).willReturn(cacheKey);
+		given(signature.getContent()).willReturn(content);
+		return signature;
+	}
+}
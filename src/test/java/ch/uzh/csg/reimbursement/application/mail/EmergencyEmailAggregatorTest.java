@@ -0,0 +1,98 @@
+package ch.uzh.csg.reimbursement.application.mail;
+
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.startsWith;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.runners.MockitoJUnitRunner;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import ch.uzh.csg.reimbursement.service.EmailService;
+
+@RunWith(MockitoJUnitRunner.class)
+public class EmergencyEmailAggregatorTest {
+
+	@InjectMocks
+	private EmergencyEmailAggregator aggregator;
+
+	@Mock
+	private EmailService emailService;
+
+	@Before
+	public void setup() {
+		ReflectionTestUtils.setField(aggregator, "burstSize", 1);
+		ReflectionTestUtils.setField(aggregator, "refillIntervalInMilliseconds", 3600000L);
+		aggregator.init();
+	}
+
+	@Test
+	public void testRepeatedExceptionIsSentOnceAndCountedInDigest() {
+
+		// given
+		for (int i = 0; i < 100; i++) {
+			aggregator.report(createException());
+		}
+
+		// when
+		aggregator.sendNewExceptions();
+		aggregator.sendDigest();
+
+		// then
+		verify(emailService, times(1)).sendEmergencyEmail(any(Exception.class));
+		verify(emailService).sendEmergencyDigest(startsWith("99 unexpected errors of 1 kinds"), any(String.class));
+	}
+
+	@Test
+	public void testNewExceptionsAreRateLimited() {
+
+		// given
+		aggregator.report(new IllegalStateException());
+		aggregator.report(new NullPointerException());
+
+		// when
+		aggregator.sendNewExceptions();
+
+		// then
+		// the bucket holds only one token
+		verify(emailService, times(1)).sendEmergencyEmail(any(Exception.class));
+	}
+
+	@Test
+	public void testNoDigestWithoutNewExceptions() {
+
+		// when
+		aggregator.sendDigest();
+
+		// then
+		verify(emailService, never()).sendEmergencyDigest(any(String.class), any(String.class));
+	}
+
+	@Test
+	public void testExceptionAfterQuietDigestIsCountedAgain() {
+
+		// given
+		aggregator.report(createException());
+		aggregator.sendNewExceptions();
+		// removes the quiet fingerprint
+		aggregator.sendDigest();
+
+		// when
+		aggregator.report(createException());
+		aggregator.report(createException());
+		aggregator.sendDigest();
+
+		// then
+		verify(emailService).sendEmergencyDigest(startsWith("2 unexpected errors of 1 kinds"), any(String.class));
+	}
+
+	private Exception createException() {
+		return new IllegalStateException("exchange rate service unavailable");
+	}
+}
@@ -0,0 +1,107 @@
+package ch.uzh.csg.reimbursement.application.mail;
+
+import static java.util.Arrays.asList;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyInt;
+import static org.mockito.Matchers.anyVararg;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+import javax.mail.internet.MimeMessage;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.Spy;
+import org.mockito.runners.MockitoJUnitRunner;
+import org.springframework.mail.MailSendException;
+import org.springframework.mail.javamail.JavaMailSenderImpl;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import ch.uzh.csg.reimbursement.dto.EmailHeaderInfo;
+import ch.uzh.csg.reimbursement.model.MailOutboxEntry;
+
+import com.icegreen.greenmail.util.GreenMail;
+import com.icegreen.greenmail.util.ServerSetupTest;
+
+/*
+ * Sends the outbox to an in-process SMTP server.
+ */
+@RunWith(MockitoJUnitRunner.class)
+public class MailOutboxWorkerTest {
+
+	@InjectMocks
+	private MailOutboxWorker worker;
+
+	@Mock
+	private MailOutbox mailOutbox;
+
+	@Spy
+	private JavaMailSenderImpl mailSender = new JavaMailSenderImpl();
+
+	private GreenMail smtpServer;
+
+	@Before
+	public void setup() {
+		smtpServer = new GreenMail(ServerSetupTest.SMTP);
+		smtpServer.start();
+
+		mailSender.setHost("localhost");
+		mailSender.setPort(ServerSetupTest.SMTP.getPort());
+		ReflectionTestUtils.setField(worker, "mailBatchSize", 2);
+	}
+
+	@After
+	public void tearDown() {
+		smtpServer.stop();
+	}
+
+	@Test
+	public void testOutboxIsSentInBatches() {
+
+		// given
+		given(mailOutbox.claim(2)).willReturn(asList(createEntry(1), createEntry(2)), asList(createEntry(3)));
+
+		// when
+		worker.drainOutbox();
+
+		// then
+		// three messages in batches of two need two connections
+		verify(mailSender, times(2)).send((MimeMessage[]) anyVararg());
+		verify(mailOutbox).markSent(asList(1, 2));
+		verify(mailOutbox).markSent(asList(3));
+		verify(mailOutbox, never()).markFailed(anyInt(), any(String.class));
+		assertThat(smtpServer.getReceivedMessages().length, is(3));
+	}
+
+	@Test
+	public void testFailedBatchIsMarkedForRetry() {
+
+		// given
+		given(mailOutbox.claim(2)).willReturn(asList(createEntry(1)));
+		doThrow(new MailSendException("connection refused")).when(mailSender).send((MimeMessage[]) anyVararg());
+
+		// when
+		worker.drainOutbox();
+
+		// then
+		verify(mailOutbox).markFailed(eq(1), any(String.class));
+	}
+
+	private MailOutboxEntry createEntry(int id) {
+		EmailHeaderInfo headerInfo = new EmailHeaderInfo("reimbursement-noreply@example.com", "Reimbursement",
+				"user" + id + "@example.com", "Notification");
+		MailOutboxEntry entry = new MailOutboxEntry(headerInfo, "<p>" + id + "</p>");
+		ReflectionTestUtils.setField(entry, "id", id);
+		return entry;
+	}
+}
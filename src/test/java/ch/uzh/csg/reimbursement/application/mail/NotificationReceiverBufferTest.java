@@ -0,0 +1,107 @@
+package ch.uzh.csg.reimbursement.application.mail;
+
+import static java.util.Arrays.asList;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Matchers.anyCollectionOf;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+import org.junit.After;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.runners.MockitoJUnitRunner;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import ch.uzh.csg.reimbursement.repository.EmailReceiverBatchRepository;
+
+@RunWith(MockitoJUnitRunner.class)
+public class NotificationReceiverBufferTest {
+
+	@InjectMocks
+	private NotificationReceiverBuffer buffer;
+
+	@Mock
+	private EmailReceiverBatchRepository batchRepository;
+
+	@After
+	public void tearDown() {
+		if (TransactionSynchronizationManager.isSynchronizationActive()) {
+			TransactionSynchronizationManager.clearSynchronization();
+		}
+	}
+
+	@Test
+	public void testRepeatedUsersAreWrittenOnce() {
+
+		// given
+		buffer.add("user-b");
+		buffer.add("user-a");
+		buffer.add("user-b");
+
+		// when
+		buffer.flush();
+		buffer.flush();
+
+		// then
+		verify(batchRepository).insertAll(asList("user-a", "user-b"));
+	}
+
+	@Test
+	public void testUsersAreKeptWhenTheyCouldNotBeWritten() {
+
+		// given
+		buffer.add("user-a");
+		given(batchRepository.insertAll(anyCollectionOf(String.class))).willThrow(new IllegalStateException())
+		.willReturn(1);
+
+		// when
+		try {
+			buffer.flush();
+		} catch (IllegalStateException e) {
+			// the failed statement
+		}
+		buffer.flush();
+
+		// then
+		verify(batchRepository, times(2)).insertAll(asList("user-a"));
+	}
+
+	@Test
+	public void testUsersAreKeptWhenTheTransactionIsRolledBack() {
+
+		// given
+		buffer.add("user-a");
+		TransactionSynchronizationManager.initSynchronization();
+
+		// when
+		buffer.flush();
+		// the rollback does not call afterCommit
+		TransactionSynchronizationManager.clearSynchronization();
+		buffer.flush();
+
+		// then
+		verify(batchRepository, times(2)).insertAll(asList("user-a"));
+	}
+
+	@Test
+	public void testUsersAreRemovedWhenTheTransactionIsCommitted() {
+
+		// given
+		buffer.add("user-a");
+		TransactionSynchronizationManager.initSynchronization();
+		buffer.flush();
+
+		// when
+		for (TransactionSynchronization synchronization : TransactionSynchronizationManager.getSynchronizations()) {
+			synchronization.afterCommit();
+		}
+		TransactionSynchronizationManager.clearSynchronization();
+		buffer.flush();
+
+		// then
+		verify(batchRepository, times(1)).insertAll(anyCollectionOf(String.class));
+	}
+}
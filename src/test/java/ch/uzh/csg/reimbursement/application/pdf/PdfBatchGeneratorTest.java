@@ -0,0 +1,156 @@
+package ch.uzh.csg.reimbursement.application.pdf;
+
+import static ch.uzh.csg.reimbursement.model.DocumentType.GENERATED_PDF;
+import static java.util.Arrays.asList;
+import static org.apache.xmlgraphics.util.MimeConstants.MIME_PDF;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.fail;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.mock;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.PDPage;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.runners.MockitoJUnitRunner;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import ch.uzh.csg.reimbursement.dto.PdfBatchEventDto;
+import ch.uzh.csg.reimbursement.dto.PdfBatchJobDto;
+import ch.uzh.csg.reimbursement.model.Document;
+import ch.uzh.csg.reimbursement.model.User;
+import ch.uzh.csg.reimbursement.model.exception.PdfBatchJobNotFoundException;
+import ch.uzh.csg.reimbursement.model.exception.PdfBatchSizeViolationException;
+import ch.uzh.csg.reimbursement.model.exception.PdfGenerationException;
+import ch.uzh.csg.reimbursement.service.PdfGenerationService;
+import ch.uzh.csg.reimbursement.service.UserService;
+
+@RunWith(MockitoJUnitRunner.class)
+public class PdfBatchGeneratorTest {
+
+	@InjectMocks
+	private PdfBatchGenerator generator;
+
+	@Mock
+	private PdfGenerationService pdfGenerationService;
+
+	@Mock
+	private UserService userService;
+
+	@Before
+	public void setup() {
+		ReflectionTestUtils.setField(generator, "workers", 2);
+		ReflectionTestUtils.setField(generator, "maxExpenses", 10);
+		ReflectionTestUtils.setField(generator, "retentionInMilliseconds", 60000L);
+		generator.init();
+
+		User financeAdmin = mockUser("fadmin");
+		given(userService.getLoggedInUser()).willReturn(financeAdmin);
+	}
+
+	@After
+	public void tearDown() {
+		generator.destroy();
+	}
+
+	@Test
+	public void testPrintRunReportsEveryExpenseAndMergesTheGeneratedPdfs() throws Exception {
+
+		// given
+		given(pdfGenerationService.generatePrintPdf("first", "url")).willReturn(createPdf(1));
+		given(pdfGenerationService.generatePrintPdf("second", "url")).willThrow(new PdfGenerationException());
+		given(pdfGenerationService.generatePrintPdf("third", "url")).willReturn(createPdf(2));
+
+		// when
+		PdfBatchJobDto job = generator.start(asList("first", "second", "third"), "url", true);
+		PdfBatchJobDto finished = awaitFinished(job.getJobId());
+
+		// then
+		assertThat(finished.getGenerated(), is(2));
+		assertThat(finished.getFailed(), is(1));
+		assertThat(finished.getEvents().size(), is(3));
+		for (PdfBatchEventDto event : finished.getEvents()) {
+			assertThat(event.isSuccess(), is(!event.getExpenseUid().equals("second")));
+		}
+		assertThat(finished.isCombinedPdfAvailable(), is(true));
+
+		ByteArrayOutputStream combined = new ByteArrayOutputStream();
+		generator.writeCombinedPdf(job.getJobId(), combined);
+		try (PDDocument doc = PDDocument.load(combined.toByteArray())) {
+			assertThat(doc.getNumberOfPages(), is(3));
+		}
+	}
+
+	@Test
+	public void testStatusOnlyContainsTheEventsSinceTheGivenNumber() throws Exception {
+
+		// given
+		given(pdfGenerationService.generatePrintPdf("first", "url")).willReturn(createPdf(1));
+		given(pdfGenerationService.generatePrintPdf("second", "url")).willReturn(createPdf(1));
+		PdfBatchJobDto job = generator.start(asList("first", "second"), "url", false);
+		awaitFinished(job.getJobId());
+
+		// when
+		PdfBatchJobDto status = generator.getStatus(job.getJobId(), 1);
+
+		// then
+		assertThat(status.getEvents().size(), is(1));
+		assertThat(status.isCombinedPdfAvailable(), is(false));
+	}
+
+	@Test(expected = PdfBatchJobNotFoundException.class)
+	public void testPrintRunOfAnotherFinanceAdminIsNotFound() throws Exception {
+
+		// given
+		PdfBatchJobDto job = generator.start(asList("first"), "url", false);
+		User otherFinanceAdmin = mockUser("other");
+		given(userService.getLoggedInUser()).willReturn(otherFinanceAdmin);
+
+		// when
+		generator.getStatus(job.getJobId(), 0);
+	}
+
+	@Test(expected = PdfBatchSizeViolationException.class)
+	public void testTooManyExpensesAreRejected() {
+
+		// when
+		generator.start(asList("1", "2", "3", "4", "5", "6", "7", "8", "9", "10", "11"), "url", false);
+	}
+
+	private PdfBatchJobDto awaitFinished(String jobId) throws InterruptedException {
+		for (int i = 0; i < 100; i++) {
+			PdfBatchJobDto status = generator.getStatus(jobId, 0);
+			if (status.isFinished()) {
+				return status;
+			}
+			Thread.sleep(50);
+		}
+		fail("The print run has not finished in time.");
+		return null;
+	}
+
+	private User mockUser(String uid) {
+		User user = mock(User.class);
+		given(user.getUid()).willReturn(uid);
+		return user;
+	}
+
+	private Document createPdf(int pages) throws IOException {
+		ByteArrayOutputStream output = new ByteArrayOutputStream();
+		try (PDDocument doc = new PDDocument()) {
+			for (int i = 0; i < pages; i++) {
+				doc.addPage(new PDPage());
+			}
+			doc.save(output);
+		}
+		return new Document(MIME_PDF, output.size(), output.toByteArray(), GENERATED_PDF);
+	}
+}
@@ -0,0 +1,89 @@
+package ch.uzh.csg.reimbursement.application.pdf;
+
+import static ch.uzh.csg.reimbursement.model.DocumentType.ATTACHMENT;
+import static java.util.Arrays.asList;
+import static org.apache.xmlgraphics.util.MimeConstants.MIME_PDF;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.not;
+import static org.hamcrest.Matchers.nullValue;
+
+import java.io.File;
+import java.io.IOException;
+
+import org.junit.After;
+import org.junit.Test;
+
+import ch.uzh.csg.reimbursement.model.Document;
+
+public class ReceiptBundleCacheTest {
+
+	private ReceiptBundleCache cache = new ReceiptBundleCache(1);
+
+	private Document first = new Document(MIME_PDF, 3, new byte[] { 1, 2, 3 }, ATTACHMENT);
+	private Document second = new Document(MIME_PDF, 3, new byte[] { 4, 5, 6 }, ATTACHMENT);
+
+	@After
+	public void tearDown() {
+		cache.destroy();
+	}
+
+	@Test
+	public void testKeyDependsOnTheAttachmentsAndTheirOrder() {
+
+		// when
+		String key = cache.createKey(asList(first, second));
+
+		// then
+		assertThat(cache.createKey(asList(first, second)), is(key));
+		assertThat(cache.createKey(asList(second, first)), is(not(key)));
+		assertThat(cache.createKey(asList(first)), is(not(key)));
+	}
+
+	@Test
+	public void testBundleOfAConcurrentGenerationIsKept() throws IOException {
+
+		// given
+		File stored = File.createTempFile("bundle-", ".pdf");
+		File concurrent = File.createTempFile("bundle-", ".pdf");
+		cache.put("key", stored);
+
+		// when
+		File bundle = cache.put("key", concurrent);
+
+		// then
+		assertThat(bundle, is(stored));
+		assertThat(concurrent.exists(), is(false));
+	}
+
+	@Test
+	public void testLeastRecentlyUsedBundleIsDeleted() throws IOException {
+
+		// given
+		File evicted = File.createTempFile("bundle-", ".pdf");
+		cache.release(cache.put("first", evicted));
+
+		// when
+		cache.put("second", File.createTempFile("bundle-", ".pdf"));
+
+		// then
+		assertThat(evicted.exists(), is(false));
+		assertThat(cache.get("first"), is(nullValue()));
+	}
+
+	@Test
+	public void testBundleEvictedWhileMergedIsDeletedOnRelease() throws IOException {
+
+		// given
+		File merged = cache.put("first", File.createTempFile("bundle-", ".pdf"));
+		cache.put("second", File.createTempFile("bundle-", ".pdf"));
+
+		// when
+		boolean existsWhileMerged = merged.exists();
+		cache.release(merged);
+
+		// then
+		assertThat(existsWhileMerged, is(true));
+		assertThat(merged.exists(), is(false));
+	}
+}
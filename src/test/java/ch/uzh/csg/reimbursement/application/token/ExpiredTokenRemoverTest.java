@@ -0,0 +1,61 @@
+package ch.uzh.csg.reimbursement.application.token;
+
+import static ch.uzh.csg.reimbursement.model.TokenType.ATTACHMENT_MOBILE;
+import static ch.uzh.csg.reimbursement.model.TokenType.GUEST_MOBILE;
+import static ch.uzh.csg.reimbursement.model.TokenType.SIGNATURE_MOBILE;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoMoreInteractions;
+
+import java.util.Calendar;
+import java.util.GregorianCalendar;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.runners.MockitoJUnitRunner;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import ch.uzh.csg.reimbursement.repository.TokenRepositoryProvider;
+
+@RunWith(MockitoJUnitRunner.class)
+public class ExpiredTokenRemoverTest {
+
+	@InjectMocks
+	private ExpiredTokenRemover remover;
+
+	@Mock
+	private TokenRepositoryProvider repository;
+
+	@Before
+	public void setup() {
+		ReflectionTestUtils.setField(remover, "signatureMobileExpirationInMilliseconds", 1200000);
+		ReflectionTestUtils.setField(remover, "expenseItemAttachmentMobileExpirationInMilliseconds", 1200000);
+		ReflectionTestUtils.setField(remover, "guestTokenExpirationInMonths", 6);
+	}
+
+	@Test
+	public void testOneDeletePerTokenType() {
+
+		// given
+		ArgumentCaptor<Calendar> guestLimit = ArgumentCaptor.forClass(Calendar.class);
+		Calendar sevenMonthsAgo = new GregorianCalendar();
+		sevenMonthsAgo.add(Calendar.MONTH, -7);
+
+		// when
+		remover.removeExpiredTokens();
+
+		// then
+		verify(repository).deleteByTypeAndCreatedBefore(eq(SIGNATURE_MOBILE), any(Calendar.class));
+		verify(repository).deleteByTypeAndCreatedBefore(eq(ATTACHMENT_MOBILE), any(Calendar.class));
+		verify(repository).deleteByTypeAndCreatedBefore(eq(GUEST_MOBILE), guestLimit.capture());
+		verifyNoMoreInteractions(repository);
+		assertThat(guestLimit.getValue().after(sevenMonthsAgo), is(true));
+	}
+}
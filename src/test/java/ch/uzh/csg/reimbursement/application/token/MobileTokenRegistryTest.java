@@ -0,0 +1,107 @@
+package ch.uzh.csg.reimbursement.application.token;
+
+import static ch.uzh.csg.reimbursement.model.TokenType.ATTACHMENT_MOBILE;
+import static ch.uzh.csg.reimbursement.model.TokenType.SIGNATURE_MOBILE;
+import static java.util.Arrays.asList;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.lessThanOrEqualTo;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyCollectionOf;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+
+import java.util.Calendar;
+import java.util.GregorianCalendar;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.runners.MockitoJUnitRunner;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import ch.uzh.csg.reimbursement.model.Token;
+import ch.uzh.csg.reimbursement.model.TokenType;
+import ch.uzh.csg.reimbursement.repository.TokenRepositoryProvider;
+
+@RunWith(MockitoJUnitRunner.class)
+public class MobileTokenRegistryTest {
+
+	private static final int EXPIRATION = 1200000;
+
+	@InjectMocks
+	private MobileTokenRegistry registry;
+
+	@Mock
+	private TokenRepositoryProvider repository;
+
+	@Before
+	public void setup() {
+		ReflectionTestUtils.setField(registry, "signatureMobileExpirationInMilliseconds", EXPIRATION);
+		ReflectionTestUtils.setField(registry, "expenseItemAttachmentMobileExpirationInMilliseconds", EXPIRATION);
+		// every millisecond is a tick, so the test does not have to wait long
+		ReflectionTestUtils.setField(registry, "tickInMilliseconds", 1L);
+		registry.init();
+	}
+
+	@Test
+	public void testExpirationIsKnownOnlyForTheRegisteredType() {
+
+		// given
+		Token token = new Token(ATTACHMENT_MOBILE, null);
+		registry.register(token);
+
+		// then
+		assertThat(registry.getExpiresAt(token.getUid(), ATTACHMENT_MOBILE), is(token.getCreated()
+				.getTimeInMillis() + EXPIRATION));
+		assertThat(registry.getExpiresAt(token.getUid(), SIGNATURE_MOBILE), is(-1L));
+		assertThat(registry.getExpiresAt("unknown", ATTACHMENT_MOBILE), is(-1L));
+	}
+
+	@Test
+	public void testExpiredTokenIsDeletedOnlyIfItIsExpiredInTheDatabase() throws InterruptedException {
+
+		// given
+		ArgumentCaptor<Calendar> createdBefore = ArgumentCaptor.forClass(Calendar.class);
+		Token token = createToken(ATTACHMENT_MOBILE, EXPIRATION + 1000);
+		registry.register(token);
+		Thread.sleep(10);
+
+		// when
+		registry.removeExpiredTokens();
+
+		// then
+		verify(repository).deleteByUidsAndTypeAndCreatedBefore(eq(asList(token.getUid())), eq(ATTACHMENT_MOBILE),
+				createdBefore.capture());
+		assertThat(createdBefore.getValue().getTimeInMillis(), is(lessThanOrEqualTo(System.currentTimeMillis()
+				- EXPIRATION)));
+		assertThat(registry.getExpiresAt(token.getUid(), ATTACHMENT_MOBILE), is(-1L));
+	}
+
+	@Test
+	public void testNothingIsDeletedWithoutExpiredTokens() throws InterruptedException {
+
+		// given
+		registry.register(new Token(SIGNATURE_MOBILE, null));
+		Thread.sleep(10);
+
+		// when
+		registry.removeExpiredTokens();
+
+		// then
+		verify(repository, never()).deleteByUidsAndTypeAndCreatedBefore(anyCollectionOf(String.class),
+				any(TokenType.class), any(Calendar.class));
+	}
+
+	private Token createToken(TokenType type, int ageInMilliseconds) {
+		Token token = new Token(type, null);
+		Calendar created = new GregorianCalendar();
+		created.add(Calendar.MILLISECOND, -ageInMilliseconds);
+		ReflectionTestUtils.setField(token, "created", created);
+		return token;
+	}
+}
@@ -0,0 +1,68 @@
+package ch.uzh.csg.reimbursement.application.token;
+
+import static java.util.Arrays.asList;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.empty;
+import static org.hamcrest.Matchers.is;
+
+import org.junit.Test;
+
+public class TimingWheelTest {
+
+	@Test
+	public void testKeyExpiresAtItsTick() {
+
+		// given
+		TimingWheel<String> wheel = new TimingWheel<String>(1000, 8, 3, 0);
+		wheel.add("token", 5000);
+
+		// when / then
+		assertThat(wheel.advance(4999), is(empty()));
+		assertThat(wheel.contains("token"), is(true));
+		assertThat(wheel.advance(5000), is(asList("token")));
+		assertThat(wheel.contains("token"), is(false));
+	}
+
+	@Test
+	public void testKeyOnHigherLevelMovesDownAndExpires() {
+
+		// given
+		// the first level covers 8 seconds, the key is on the second one
+		TimingWheel<String> wheel = new TimingWheel<String>(1000, 8, 3, 0);
+		wheel.add("token", 20000);
+
+		// when / then
+		assertThat(wheel.advance(19000), is(empty()));
+		assertThat(wheel.advance(20000), is(asList("token")));
+	}
+
+	@Test
+	public void testKeyBeyondTheWheelRangeExpires() {
+
+		// given
+		// three levels of 8 slots cover 512 seconds
+		TimingWheel<String> wheel = new TimingWheel<String>(1000, 8, 3, 0);
+		wheel.add("token", 1200000);
+
+		// when / then
+		assertThat(wheel.advance(1199000), is(empty()));
+		assertThat(wheel.advance(1200000), is(asList("token")));
+	}
+
+	@Test
+	public void testRemovedAndReplacedKeys() {
+
+		// given
+		TimingWheel<String> wheel = new TimingWheel<String>(1000, 8, 3, 0);
+		wheel.add("removed", 3000);
+		wheel.add("refreshed", 3000);
+
+		// when
+		wheel.remove("removed");
+		wheel.add("refreshed", 10000);
+
+		// then
+		assertThat(wheel.advance(9000), is(empty()));
+		assertThat(wheel.advance(10000), is(asList("refreshed")));
+	}
+}
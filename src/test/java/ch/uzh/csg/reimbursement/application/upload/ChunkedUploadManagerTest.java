@@ -0,0 +1,149 @@
+package ch.uzh.csg.reimbursement.application.upload;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.verify;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.runners.MockitoJUnitRunner;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.util.DigestUtils;
+import org.springframework.web.multipart.MultipartFile;
+
+import ch.uzh.csg.reimbursement.dto.UploadSessionDto;
+import ch.uzh.csg.reimbursement.model.exception.ChunkChecksumMismatchException;
+import ch.uzh.csg.reimbursement.model.exception.MaxFileSizeViolationException;
+import ch.uzh.csg.reimbursement.model.exception.UploadOffsetMismatchException;
+import ch.uzh.csg.reimbursement.model.exception.UploadSessionNotFoundException;
+import ch.uzh.csg.reimbursement.service.MobileService;
+import ch.uzh.csg.reimbursement.service.TokenService;
+
+@RunWith(MockitoJUnitRunner.class)
+public class ChunkedUploadManagerTest {
+
+	@InjectMocks
+	private ChunkedUploadManager manager;
+
+	@Mock
+	private TokenService tokenService;
+
+	@Mock
+	private MobileService mobileService;
+
+	private byte[] firstChunk = "first chunk ".getBytes();
+	private byte[] secondChunk = "second chunk".getBytes();
+
+	@Before
+	public void setup() {
+		ReflectionTestUtils.setField(manager, "maxAttachmentUploadSize", 10000000L);
+		ReflectionTestUtils.setField(manager, "maxChunkSize", 1024);
+		ReflectionTestUtils.setField(manager, "idleTimeoutInMilliseconds", 60000L);
+		ReflectionTestUtils.setField(manager, "uploadTempDir", "");
+	}
+
+	@After
+	public void tearDown() {
+		manager.destroy();
+	}
+
+	@Test
+	public void testResentChunkIsAcceptedAndTheUploadIsStoredWhenComplete() throws Exception {
+
+		// given
+		UploadSessionDto upload = manager.start("token", "application/pdf", firstChunk.length + secondChunk.length);
+		given(mobileService.createExpenseItemAttachment(eq("token"), any(MultipartFile.class))).willReturn(
+				"attachment");
+
+		// when
+		manager.appendChunk("token", upload.getUploadId(), 0, md5(firstChunk), stream(firstChunk));
+		UploadSessionDto resent = manager.appendChunk("token", upload.getUploadId(), 0, md5(firstChunk),
+				stream(firstChunk));
+		UploadSessionDto completed = manager.appendChunk("token", upload.getUploadId(), firstChunk.length,
+				md5(secondChunk), stream(secondChunk));
+
+		// then
+		ArgumentCaptor<MultipartFile> file = ArgumentCaptor.forClass(MultipartFile.class);
+		verify(mobileService).createExpenseItemAttachment(eq("token"), file.capture());
+		assertThat(resent.getOffset(), is((long) firstChunk.length));
+		assertThat(resent.isComplete(), is(false));
+		assertThat(completed.isComplete(), is(true));
+		assertThat(completed.getAttachmentUid(), is("attachment"));
+		assertThat(file.getValue().getContentType(), is("application/pdf"));
+	}
+
+	@Test(expected = UploadSessionNotFoundException.class)
+	public void testCompletedUploadIsRemoved() {
+
+		// given
+		UploadSessionDto upload = manager.start("token", "application/pdf", firstChunk.length);
+		manager.appendChunk("token", upload.getUploadId(), 0, md5(firstChunk), stream(firstChunk));
+
+		// when
+		manager.getStatus("token", upload.getUploadId());
+	}
+
+	@Test(expected = ChunkChecksumMismatchException.class)
+	public void testChunkWithWrongChecksumIsRejected() {
+
+		// given
+		UploadSessionDto upload = manager.start("token", "application/pdf", firstChunk.length);
+
+		// when
+		manager.appendChunk("token", upload.getUploadId(), 0, md5(secondChunk), stream(firstChunk));
+	}
+
+	@Test(expected = UploadOffsetMismatchException.class)
+	public void testChunkAfterAGapIsRejected() {
+
+		// given
+		UploadSessionDto upload = manager.start("token", "application/pdf", 100);
+
+		// when
+		manager.appendChunk("token", upload.getUploadId(), 10, md5(firstChunk), stream(firstChunk));
+	}
+
+	@Test(expected = MaxFileSizeViolationException.class)
+	public void testChunkAboveTheLimitIsRejected() {
+
+		// given
+		byte[] chunk = new byte[2048];
+		UploadSessionDto upload = manager.start("token", "application/pdf", chunk.length);
+
+		// when
+		manager.appendChunk("token", upload.getUploadId(), 0, md5(chunk), stream(chunk));
+	}
+
+	@Test(expected = UploadSessionNotFoundException.class)
+	public void testIdleUploadsAreRemoved() {
+
+		// given
+		UploadSessionDto upload = manager.start("token", "application/pdf", 100);
+		ReflectionTestUtils.setField(manager, "idleTimeoutInMilliseconds", -1L);
+
+		// when
+		manager.removeIdleSessions();
+
+		// then
+		manager.getStatus("token", upload.getUploadId());
+	}
+
+	private String md5(byte[] chunk) {
+		return DigestUtils.md5DigestAsHex(chunk);
+	}
+
+	private InputStream stream(byte[] chunk) {
+		return new ByteArrayInputStream(chunk);
+	}
+}
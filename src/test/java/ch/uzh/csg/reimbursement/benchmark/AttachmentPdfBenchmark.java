@@ -0,0 +1,108 @@
+package ch.uzh.csg.reimbursement.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.oxm.castor.CastorMarshaller;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import ch.uzh.csg.reimbursement.application.image.ImageNormalizer;
+import ch.uzh.csg.reimbursement.application.image.ImagePdfWriter;
+import ch.uzh.csg.reimbursement.application.xml.XmlConverter;
+import ch.uzh.csg.reimbursement.model.Document;
+import ch.uzh.csg.reimbursement.service.PdfGenerationService;
+
+/*
+ * Compares the conversion of a receipt photo into an attachment PDF through
+ * XSL-FO with the conversion through PDFBox. The GC profiler reports the
+ * allocation per conversion. Run the main method from the IDE or with the
+ * test classpath.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class AttachmentPdfBenchmark {
+
+	@Param({ "4000x3000", "1280x960" })
+	private String resolution;
+
+	private MockMultipartFile photo;
+	private PdfGenerationService fopService;
+	private PdfGenerationService pdfBoxService;
+	private ImageNormalizer imageNormalizer;
+
+	@Setup
+	public void setup() throws Exception {
+		String[] size = resolution.split("x");
+		byte[] content = ImageNormalizationBenchmark.createPhoto(Integer.parseInt(size[0]),
+				Integer.parseInt(size[1]));
+		photo = new MockMultipartFile("file", "receipt.jpg", "image/jpeg", content);
+
+		CastorMarshaller marshaller = new CastorMarshaller();
+		marshaller.setMappingLocation(new ClassPathResource("xml-mapping.xml"));
+		marshaller.afterPropertiesSet();
+		XmlConverter xmlConverter = new XmlConverter();
+		ReflectionTestUtils.setField(xmlConverter, "marshaller", marshaller);
+
+		imageNormalizer = new ImageNormalizer();
+		ReflectionTestUtils.setField(imageNormalizer, "maxWidth", 1496);
+		ReflectionTestUtils.setField(imageNormalizer, "maxHeight", 2181);
+		ReflectionTestUtils.setField(imageNormalizer, "jpegQuality", 0.8f);
+		ReflectionTestUtils.setField(imageNormalizer, "workers", 1);
+		ReflectionTestUtils.setField(imageNormalizer, "timeoutInMilliseconds", 60000L);
+		imageNormalizer.init();
+
+		fopService = createService(xmlConverter, false);
+		pdfBoxService = createService(xmlConverter, true);
+	}
+
+	@TearDown
+	public void tearDown() {
+		imageNormalizer.destroy();
+	}
+
+	@Benchmark
+	public Document convertWithFop() {
+		return fopService.generateAttachmentPdf(photo);
+	}
+
+	@Benchmark
+	public Document convertWithPdfBox() {
+		return pdfBoxService.generateAttachmentPdf(photo);
+	}
+
+	private PdfGenerationService createService(XmlConverter xmlConverter, boolean directImageConversion) {
+		PdfGenerationService service = new PdfGenerationService();
+		ReflectionTestUtils.setField(service, "xmlConverter", xmlConverter);
+		ReflectionTestUtils.setField(service, "imageNormalizer", imageNormalizer);
+		ReflectionTestUtils.setField(service, "imagePdfWriter", new ImagePdfWriter());
+		ReflectionTestUtils.setField(service, "directImageConversion", directImageConversion);
+		service.init();
+		return service;
+	}
+
+	public static void main(String[] args) throws RunnerException {
+		new Runner(new OptionsBuilder().include(AttachmentPdfBenchmark.class.getSimpleName())
+				.addProfiler(GCProfiler.class).build()).run();
+	}
+}
@@ -0,0 +1,97 @@
+package ch.uzh.csg.reimbursement.benchmark;
+
+import static ch.uzh.csg.reimbursement.model.Role.FINANCE_ADMIN;
+import static java.util.Arrays.asList;
+
+import java.io.StringWriter;
+import java.util.HashSet;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.velocity.Template;
+import org.apache.velocity.app.VelocityEngine;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import ch.uzh.csg.reimbursement.application.mail.EmailTemplateRenderer;
+import ch.uzh.csg.reimbursement.dto.EmailHeaderInfo;
+import ch.uzh.csg.reimbursement.dto.ExpenseCountsDto;
+import ch.uzh.csg.reimbursement.model.NotificationSendJob;
+import ch.uzh.csg.reimbursement.model.Role;
+import ch.uzh.csg.reimbursement.model.User;
+
+/*
+ * Compares the cost of rendering one notification email with a template
+ * loaded per email and with the EmailTemplateRenderer. Run the main method
+ * from the IDE or with the test classpath.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class EmailRenderBenchmark {
+
+	private static final String TEMPLATE_PATH = "/email/notificationEmailTemplate.vm";
+
+	private VelocityEngine uncachedEngine;
+	private EmailTemplateRenderer renderer;
+	private NotificationSendJob sendJob;
+
+	@Setup
+	public void setup() {
+		uncachedEngine = createEngine(false);
+
+		renderer = new EmailTemplateRenderer();
+		ReflectionTestUtils.setField(renderer, "velocityEngine", createEngine(true));
+		ReflectionTestUtils.setField(renderer, "defaultEmailTemplatePath", "/email/defaultEmailTemplate.vm");
+		ReflectionTestUtils.setField(renderer, "notificationEmailTemplatePath", TEMPLATE_PATH);
+		renderer.init();
+
+		User user = new User("Junior", "Developer", "junior", "junior@example.com", "Manager",
+				new HashSet<Role>(asList(FINANCE_ADMIN)));
+		EmailHeaderInfo headerInfo = new EmailHeaderInfo("noreply@example.com", "Reimbursement", user.getEmail(),
+				"Notification");
+		sendJob = new NotificationSendJob(headerInfo, TEMPLATE_PATH, user, "http://localhost",
+				new ExpenseCountsDto(3, 2, 1, 1, 0));
+	}
+
+	// the way the emails were rendered before
+	@Benchmark
+	public String renderWithTemplatePerEmail() {
+		Template template = uncachedEngine.getTemplate(TEMPLATE_PATH);
+		StringWriter writer = new StringWriter();
+		template.merge(sendJob.getContext(), writer);
+		return writer.toString();
+	}
+
+	@Benchmark
+	public String renderWithRenderer() {
+		return renderer.render(sendJob);
+	}
+
+	private VelocityEngine createEngine(boolean cache) {
+		Properties props = new Properties();
+		props.put("resource.loader", "class");
+		props.put("class.resource.loader.class", "org.apache.velocity.runtime.resource.loader.ClasspathResourceLoader");
+		props.put("class.resource.loader.cache", Boolean.toString(cache));
+		return new VelocityEngine(props);
+	}
+
+	public static void main(String[] args) throws RunnerException {
+		new Runner(new OptionsBuilder().include(EmailRenderBenchmark.class.getSimpleName()).build()).run();
+	}
+}
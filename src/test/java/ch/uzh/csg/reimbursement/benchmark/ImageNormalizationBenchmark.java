@@ -0,0 +1,92 @@
+package ch.uzh.csg.reimbursement.benchmark;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import javax.imageio.ImageIO;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import ch.uzh.csg.reimbursement.application.image.ImageScaler;
+
+/*
+ * Measures how long it takes to bring a phone photo down to print resolution
+ * and prints the size of the photo before and after. The photo is generated,
+ * a noisy gradient compresses about as badly as a real receipt photo. Run
+ * the main method from the IDE or with the test classpath.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ImageNormalizationBenchmark {
+
+	@Param({ "4000x3000", "3264x2448", "1280x960" })
+	private String resolution;
+
+	private byte[] photo;
+	private ImageScaler scaler;
+
+	@Setup
+	public void setup() throws IOException {
+		String[] size = resolution.split("x");
+		photo = createPhoto(Integer.parseInt(size[0]), Integer.parseInt(size[1]));
+		scaler = new ImageScaler(1496, 2181, 0.8f);
+	}
+
+	// the full decode the PDF rendering did with every photo before
+	@Benchmark
+	public BufferedImage decodeFullResolution() throws IOException {
+		return ImageIO.read(new ByteArrayInputStream(photo));
+	}
+
+	@Benchmark
+	public byte[] normalize() throws IOException {
+		return scaler.scale(photo);
+	}
+
+	static byte[] createPhoto(int width, int height) throws IOException {
+		BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+		Random random = new Random(42);
+		for (int y = 0; y < height; y++) {
+			for (int x = 0; x < width; x++) {
+				int base = 160 + (x + y) * 64 / (width + height);
+				int noise = random.nextInt(32);
+				image.setRGB(x, y, (base + noise) << 16 | (base + noise) << 8 | base);
+			}
+		}
+		ByteArrayOutputStream output = new ByteArrayOutputStream();
+		ImageIO.write(image, "jpeg", output);
+		return output.toByteArray();
+	}
+
+	public static void main(String[] args) throws RunnerException, IOException {
+		ImageScaler scaler = new ImageScaler(1496, 2181, 0.8f);
+		for (String resolution : new String[] { "4000x3000", "3264x2448", "1280x960" }) {
+			String[] size = resolution.split("x");
+			byte[] photo = createPhoto(Integer.parseInt(size[0]), Integer.parseInt(size[1]));
+			System.out.println(resolution + ": " + photo.length + " bytes, normalized " + scaler.scale(photo).length
+					+ " bytes");
+		}
+		new Runner(new OptionsBuilder().include(ImageNormalizationBenchmark.class.getSimpleName()).build()).run();
+	}
+}
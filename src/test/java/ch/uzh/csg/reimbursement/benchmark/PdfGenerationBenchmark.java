@@ -0,0 +1,344 @@
+package ch.uzh.csg.reimbursement.benchmark;
+
+import static ch.uzh.csg.reimbursement.model.DocumentType.ATTACHMENT;
+import static ch.uzh.csg.reimbursement.model.Role.FINANCE_ADMIN;
+import static ch.uzh.csg.reimbursement.model.Role.PROF;
+import static java.util.Arrays.asList;
+import static org.apache.xmlgraphics.util.MimeConstants.MIME_PDF;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.springframework.test.util.ReflectionTestUtils.invokeMethod;
+import static org.springframework.test.util.ReflectionTestUtils.setField;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.PDPage;
+import org.apache.pdfbox.pdmodel.PDPageContentStream;
+import org.apache.pdfbox.pdmodel.font.PDType1Font;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.BenchmarkParams;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.Result;
+import org.openjdk.jmh.results.RunResult;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.oxm.castor.CastorMarshaller;
+
+import ch.uzh.csg.reimbursement.application.image.ImageNormalizer;
+import ch.uzh.csg.reimbursement.application.image.ImagePdfWriter;
+import ch.uzh.csg.reimbursement.application.image.ImageScaler;
+import ch.uzh.csg.reimbursement.application.image.PdfImageCache;
+import ch.uzh.csg.reimbursement.application.pdf.ReceiptBundleCache;
+import ch.uzh.csg.reimbursement.application.xml.XmlConverter;
+import ch.uzh.csg.reimbursement.dto.CostCategoryDto;
+import ch.uzh.csg.reimbursement.dto.CostCategoryTranslationDto;
+import ch.uzh.csg.reimbursement.dto.ExpenseItemDto;
+import ch.uzh.csg.reimbursement.dto.ExpenseItemPdfDto;
+import ch.uzh.csg.reimbursement.dto.ExpensePdfDto;
+import ch.uzh.csg.reimbursement.model.CostCategory;
+import ch.uzh.csg.reimbursement.model.Document;
+import ch.uzh.csg.reimbursement.model.Expense;
+import ch.uzh.csg.reimbursement.model.ExpenseItem;
+import ch.uzh.csg.reimbursement.model.Role;
+import ch.uzh.csg.reimbursement.model.Signature;
+import ch.uzh.csg.reimbursement.model.User;
+import ch.uzh.csg.reimbursement.service.ExpenseItemService;
+import ch.uzh.csg.reimbursement.service.PdfGenerationService;
+import ch.uzh.csg.reimbursement.service.TokenService;
+
+/*
+ * Measures the steps of the expense PDF generation against a synthetic
+ * expense with 1 to 15 receipts. The receipts alternate between a large and
+ * a small photo converted to PDF and a two-page text PDF. The receipts are
+ * cached after the first merge, buildReceiptsBundle measures the part a
+ * regeneration with unchanged attachments saves. Every benchmark is run for
+ * throughput and for the latency distribution, the GC profiler reports the
+ * allocation per generation.
+ *
+ * The main method fails if the p99 latency or the allocation of a whole
+ * expense PDF exceeds the thresholds given by the system properties
+ * pdf.benchmark.maxP99Millis and pdf.benchmark.maxAllocatedMegabytes. The
+ * pdf-benchmark Maven profile runs it after the tests.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({ Mode.Throughput, Mode.SampleTime })
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PdfGenerationBenchmark {
+
+	private static final String URL = "https://example.com/public/expenses/";
+
+	@Param({ "1", "5", "15" })
+	private int receipts;
+
+	private PdfGenerationService service;
+	private ImageNormalizer imageNormalizer;
+	private ReceiptBundleCache receiptBundleCache;
+	private Expense expense;
+	private ExpensePdfDto coverDto;
+	private List<byte[]> attachments;
+	private List<Document> attachmentDocuments;
+	private MockMultipartFile photo;
+	private ByteArrayOutputStream coverOutput;
+	private File cover;
+	private File receipt;
+	private File merged;
+
+	@Setup
+	public void setup() throws Exception {
+		CastorMarshaller marshaller = new CastorMarshaller();
+		marshaller.setMappingLocation(new ClassPathResource("xml-mapping.xml"));
+		marshaller.afterPropertiesSet();
+		XmlConverter xmlConverter = new XmlConverter();
+		setField(xmlConverter, "marshaller", marshaller);
+
+		imageNormalizer = new ImageNormalizer();
+		setField(imageNormalizer, "maxWidth", 1496);
+		setField(imageNormalizer, "maxHeight", 2181);
+		setField(imageNormalizer, "jpegQuality", 0.8f);
+		setField(imageNormalizer, "workers", 1);
+		setField(imageNormalizer, "timeoutInMilliseconds", 60000L);
+		imageNormalizer.init();
+		receiptBundleCache = new ReceiptBundleCache(10);
+
+		expense = createExpense(receipts);
+		Set<ExpenseItemPdfDto> consolidatedItems = new LinkedHashSet<ExpenseItemPdfDto>();
+		attachments = new ArrayList<byte[]>();
+		attachmentDocuments = new ArrayList<Document>();
+		for (ExpenseItem item : expense.getExpenseItems()) {
+			consolidatedItems.add(new ExpenseItemPdfDto("Reisekosten", 320000, item.getProject(), item
+					.getCalculatedAmount(), 1));
+			attachments.add(item.getAttachment().getContent());
+			attachmentDocuments.add(item.getAttachment());
+		}
+
+		TokenService tokenService = mock(TokenService.class);
+		given(tokenService.createUniAdminToken(anyString())).willReturn("token");
+		ExpenseItemService expenseItemService = mock(ExpenseItemService.class);
+		given(expenseItemService.getConsolidatedExpenseItems(anyString())).willReturn(consolidatedItems);
+
+		service = new PdfGenerationService();
+		setField(service, "xmlConverter", xmlConverter);
+		setField(service, "imageNormalizer", imageNormalizer);
+		setField(service, "imagePdfWriter", new ImagePdfWriter());
+		setField(service, "pdfImageCache", new PdfImageCache(500, 16777216));
+		setField(service, "receiptBundleCache", receiptBundleCache);
+		setField(service, "tokenService", tokenService);
+		setField(service, "expenseItemService", expenseItemService);
+		setField(service, "guestTokenExpirationInMonths", 6);
+		setField(service, "directImageConversion", true);
+		service.init();
+
+		PdfImageCache imageCache = new PdfImageCache(10, 16777216);
+		String signature = imageCache.getSignature(expense.getUser().getSignature());
+		coverDto = new ExpensePdfDto(expense, consolidatedItems, URL + "token", imageCache.getQrCode(URL + "token"),
+				signature, signature, signature, true, new Date());
+		photo = new MockMultipartFile("file", "receipt.jpg", "image/jpeg",
+				ImageNormalizationBenchmark.createPhoto(4000, 3000));
+
+		coverOutput = new ByteArrayOutputStream();
+		cover = File.createTempFile("benchmark-cover-", ".pdf");
+		receipt = File.createTempFile("benchmark-receipt-", ".pdf");
+		merged = File.createTempFile("benchmark-merged-", ".pdf");
+		try (OutputStream outputStream = new FileOutputStream(cover)) {
+			invokeMethod(service, "generatePdf", coverDto, "classpath:xml2fo.xsl", outputStream);
+		}
+	}
+
+	@TearDown
+	public void tearDown() {
+		imageNormalizer.destroy();
+		receiptBundleCache.destroy();
+		cover.delete();
+		receipt.delete();
+		merged.delete();
+	}
+
+	// the XSL-FO rendering of the cover and accounting pages
+	@Benchmark
+	public int generatePdf() {
+		coverOutput.reset();
+		invokeMethod(service, "generatePdf", coverDto, "classpath:xml2fo.xsl", coverOutput);
+		return coverOutput.size();
+	}
+
+	@Benchmark
+	public long addReceiptNumber() {
+		for (int i = 0; i < attachments.size(); i++) {
+			invokeMethod(service, "addReceiptNumber", attachments.get(i), i + 1, receipt);
+		}
+		return receipt.length();
+	}
+
+	// the numbering and merging of all receipts, which is skipped on a
+	// regeneration with unchanged attachments
+	@Benchmark
+	public File buildReceiptsBundle() {
+		File bundle = (File) invokeMethod(service, "buildReceiptsBundle", attachmentDocuments);
+		bundle.delete();
+		return bundle;
+	}
+
+	// the cover pages merged with the cached receipts
+	@Benchmark
+	public long concatPdf() {
+		invokeMethod(service, "concatPdf", cover, expense, merged);
+		return merged.length();
+	}
+
+	// the whole expense PDF, without the state change of the expense
+	@Benchmark
+	public Document generateExpensePdf() {
+		return (Document) invokeMethod(service, "renderExpensePdf", expense, URL);
+	}
+
+	@Benchmark
+	public Document generateAttachmentPdf() {
+		return service.generateAttachmentPdf(photo);
+	}
+
+	private Expense createExpense(int numberOfReceipts) throws IOException {
+		byte[] signatureImage = ImageNormalizationBenchmark.createPhoto(400, 150);
+		Signature signature = new Signature("image/jpeg", signatureImage.length, signatureImage);
+		User user = createUser("junior", Role.USER, signature);
+		User manager = createUser("prof", PROF, signature);
+		User financeAdmin = createUser("fadmin", FINANCE_ADMIN, signature);
+
+		Expense expense = new Expense(user, financeAdmin, "Conference in Lisbon");
+		setField(expense, "assignedManager", manager);
+		setField(expense, "hasDigitalSignature", false);
+
+		CostCategoryTranslationDto name = new CostCategoryTranslationDto();
+		name.setDe("Reisekosten");
+		name.setEn("Travel expenses");
+		CostCategoryDto costCategoryDto = new CostCategoryDto();
+		costCategoryDto.setName(name);
+		costCategoryDto.setDescription(name);
+		costCategoryDto.setAccountNumber(320000);
+		CostCategory costCategory = new CostCategory(costCategoryDto);
+
+		ImageScaler scaler = new ImageScaler(1496, 2181, 0.8f);
+		ImagePdfWriter pdfWriter = new ImagePdfWriter();
+		byte[] largePhoto = pdfWriter.write(scaler.scale(ImageNormalizationBenchmark.createPhoto(4000, 3000)));
+		byte[] smallPhoto = pdfWriter.write(scaler.scale(ImageNormalizationBenchmark.createPhoto(1280, 960)));
+		byte[] textPdf = createTextPdf(2);
+		List<byte[]> receiptTypes = asList(largePhoto, smallPhoto, textPdf);
+
+		Set<ExpenseItem> items = new LinkedHashSet<ExpenseItem>();
+		for (int i = 0; i < numberOfReceipts; i++) {
+			ExpenseItemDto dto = new ExpenseItemDto();
+			dto.setDate(new Date());
+			dto.setExplanation("Receipt " + (i + 1));
+			dto.setCurrency("CHF");
+			dto.setOriginalAmount(100 + i);
+			dto.setProject("Project " + (i % 3));
+
+			ExpenseItem item = new ExpenseItem(costCategory, 1.0, 100 + i, expense, dto);
+			byte[] content = receiptTypes.get(i % receiptTypes.size());
+			item.setAttachment(new Document(MIME_PDF, content.length, content, ATTACHMENT));
+			items.add(item);
+		}
+		setField(expense, "expenseItems", items);
+		return expense;
+	}
+
+	private User createUser(String uid, Role role, Signature signature) {
+		User user = new User(uid, uid, uid, uid + "@example.com", null, new HashSet<Role>(asList(role)));
+		setField(user, "signature", signature);
+		return user;
+	}
+
+	// a receipt which has been uploaded as PDF, with some lines of text on
+	// every page
+	private byte[] createTextPdf(int pages) throws IOException {
+		ByteArrayOutputStream output = new ByteArrayOutputStream();
+		try (PDDocument doc = new PDDocument()) {
+			for (int i = 0; i < pages; i++) {
+				PDPage page = new PDPage();
+				doc.addPage(page);
+				PDPageContentStream contentStream = new PDPageContentStream(doc, page);
+				contentStream.setFont(PDType1Font.HELVETICA, 10);
+				for (int line = 0; line < 40; line++) {
+					contentStream.beginText();
+					contentStream.newLineAtOffset(50, 700 - line * 15);
+					contentStream.showText("Position " + line + " of the invoice, CHF " + (line * 12.5));
+					contentStream.endText();
+				}
+				contentStream.close();
+			}
+			doc.save(output);
+		}
+		return output.toByteArray();
+	}
+
+	public static void main(String[] args) throws RunnerException {
+		Collection<RunResult> results = new Runner(new OptionsBuilder()
+		.include(PdfGenerationBenchmark.class.getSimpleName()).addProfiler(GCProfiler.class).build()).run();
+		checkThresholds(results);
+	}
+
+	private static void checkThresholds(Collection<RunResult> results) {
+		double maxP99Millis = Double.parseDouble(System.getProperty("pdf.benchmark.maxP99Millis", "5000"));
+		double maxAllocatedMegabytes = Double.parseDouble(System.getProperty("pdf.benchmark.maxAllocatedMegabytes",
+				"512"));
+		List<String> violations = new ArrayList<String>();
+
+		for (RunResult result : results) {
+			BenchmarkParams params = result.getParams();
+			if (!params.getBenchmark().endsWith(".generateExpensePdf") || params.getMode() != Mode.SampleTime) {
+				continue;
+			}
+			String receipts = params.getParam("receipts");
+
+			double p99 = result.getPrimaryResult().getStatistics().getPercentile(99);
+			if (p99 > maxP99Millis) {
+				violations.add(receipts + " receipts: p99 of " + p99 + " ms exceeds " + maxP99Millis + " ms");
+			}
+
+			for (Map.Entry<String, Result> secondary : result.getSecondaryResults().entrySet()) {
+				if (secondary.getKey().endsWith("gc.alloc.rate.norm")) {
+					double megabytes = secondary.getValue().getScore() / (1024 * 1024);
+					if (megabytes > maxAllocatedMegabytes) {
+						violations.add(receipts + " receipts: " + megabytes + " MB allocated per PDF exceeds "
+								+ maxAllocatedMegabytes + " MB");
+					}
+				}
+			}
+		}
+
+		if (!violations.isEmpty()) {
+			throw new IllegalStateException("The PDF generation has regressed: " + violations);
+		}
+	}
+}
@@ -0,0 +1,129 @@
+package ch.uzh.csg.reimbursement.integrationtesting;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.csrf;
+import static org.springframework.security.test.web.servlet.setup.SecurityMockMvcConfigurers.springSecurity;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+import javax.persistence.EntityManagerFactory;
+
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.MediaType;
+import org.springframework.mock.web.MockHttpSession;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
+import org.springframework.test.context.web.WebAppConfiguration;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import org.springframework.web.context.WebApplicationContext;
+
+import ch.uzh.csg.reimbursement.configuration.HibernateConfiguration;
+import ch.uzh.csg.reimbursement.configuration.LdapConfiguration;
+import ch.uzh.csg.reimbursement.configuration.MailConfiguration;
+import ch.uzh.csg.reimbursement.configuration.WebMvcConfiguration;
+import ch.uzh.csg.reimbursement.configuration.WebSecurityConfiguration;
+import ch.uzh.csg.reimbursement.model.ExpenseState;
+
+/*
+ * Asserts that the number of SQL statements per endpoint does not grow with
+ * the number of loaded expenses and expense-items (no N+1 selects), and that
+ * combined endpoints need fewer statements than the calls they replace.
+ */
+@RunWith(SpringJUnit4ClassRunner.class)
+@ContextConfiguration(classes = { HibernateConfiguration.class, LdapConfiguration.class, MailConfiguration.class,
+		WebMvcConfiguration.class, WebSecurityConfiguration.class })
+@WebAppConfiguration
+public class ExpenseQueryCountIT {
+
+	@Autowired
+	private WebApplicationContext context;
+
+	@Autowired
+	private EntityManagerFactory entityManagerFactory;
+
+	private MockMvc mvc;
+	private MockHttpSession session;
+	private IntegrationTestHelper helper;
+	private Statistics statistics;
+
+	@Before
+	public void setup() throws Exception {
+		helper = new IntegrationTestHelper();
+		mvc = MockMvcBuilders.webAppContextSetup(context).apply(springSecurity()).build();
+		session = helper.loginUser(mvc, "junior", "password");
+
+		statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+		statistics.setStatisticsEnabled(true);
+	}
+
+	@Test
+	public void dashboardStatementCountIsIndependentOfExpenseCount() throws Exception {
+		createExpenseWithItems("Query Count Dashboard", 1);
+		long before = countStatements("/expenses");
+
+		createExpenseWithItems("Query Count Dashboard", 3);
+		createExpenseWithItems("Query Count Dashboard", 2);
+		long after = countStatements("/expenses");
+
+		assertEquals(before, after);
+	}
+
+	@Test
+	public void detailStatementCountIsIndependentOfItemCount() throws Exception {
+		String smallExpenseUid = createExpenseWithItems("Query Count Detail", 1);
+		String largeExpenseUid = createExpenseWithItems("Query Count Detail", 4);
+
+		assertEquals(countStatements("/expenses/" + smallExpenseUid),
+				countStatements("/expenses/" + largeExpenseUid));
+	}
+
+	@Test
+	public void facetedSearchNeedsFewerStatementsThanSeparateSearches() throws Exception {
+		createExpenseWithItems("Query Count Facets", 2);
+		MockHttpSession financeAdminSession = helper.loginUser(mvc, "fadmin", "password");
+
+		statistics.clear();
+		search("/expenses/search/faceted", "{\"accountingText\":\"Query Count\"}", financeAdminSession);
+		long faceted = statistics.getPrepareStatementCount();
+
+		// the state facet alone would need one filtered search per state
+		statistics.clear();
+		for (ExpenseState state : ExpenseState.values()) {
+			search("/expenses/search", "{\"accountingText\":\"Query Count\",\"expenseState\":\"" + state.name()
+					+ "\"}", financeAdminSession);
+		}
+		long separate = statistics.getPrepareStatementCount();
+
+		assertTrue(faceted < separate);
+	}
+
+	private void search(String url, String criteria, MockHttpSession session) throws Exception {
+		mvc.perform(
+				post(url).contentType(MediaType.APPLICATION_JSON).content(criteria).session(session)
+				.with(csrf().asHeader())).andExpect(status().isOk());
+	}
+
+	private String createExpenseWithItems(String accounting, int numberOfItems) throws Exception {
+		String expenseUid = helper.createExpense(mvc, session, accounting);
+		String jsonString = helper.generateInitialExpenseItemJsonString(mvc);
+
+		for (int i = 0; i < numberOfItems; i++) {
+			helper.createInitialExpenseItem(mvc, session, expenseUid, jsonString);
+		}
+		return expenseUid;
+	}
+
+	private long countStatements(String url) throws Exception {
+		statistics.clear();
+		mvc.perform(get(url).session(session)).andExpect(status().isOk());
+		return statistics.getPrepareStatementCount();
+	}
+}
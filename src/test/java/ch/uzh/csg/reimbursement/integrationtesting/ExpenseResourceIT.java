@@ -2,6 +2,7 @@ package ch.uzh.csg.reimbursement.integrationtesting;
 
 import static org.apache.xmlgraphics.util.MimeConstants.MIME_PDF;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertTrue;
 import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestBuilders.formLogin;
@@ -615,4 +616,43 @@ public class ExpenseResourceIT {
 		// Test state via RepoProvider in DB
 		assertEquals(ExpenseState.SIGNED, expRepo.findByUid(expenseUid).getState());
 	}
+
+	@Test
+	public void fullTextSearchFindsExpenseByPrefix() throws Exception {
+		String expenseUid = helper.createExpense(mvc, session, "Fulltext Zebraexpedition");
+		String jsonString = helper.generateExtendedExpenseItemJsonString(mvc, "Okapiprojekt", "Giraffenfutter");
+		helper.createInitialExpenseItem(mvc, session, expenseUid, jsonString);
+
+		// login as fadmin
+		session = helper.loginUser(mvc, "fadmin", "password");
+
+		String result = mvc.perform(get("/expenses/search/fulltext").param("text", "zebraexp okapi").session(session))
+				.andExpect(status().isOk()).andReturn().getResponse().getContentAsString();
+		assertTrue(result.contains(expenseUid));
+
+		result = mvc.perform(get("/expenses/search/fulltext").param("text", "zebraexp nashorn").session(session))
+				.andExpect(status().isOk()).andReturn().getResponse().getContentAsString();
+		assertFalse(result.contains(expenseUid));
+	}
+
+	@Test
+	public void exportSearchedExpensesAsCsv() throws Exception {
+		String expenseUid = helper.createExpense(mvc, session, "Export Csv Test");
+		String jsonString = helper.generateExtendedExpenseItemJsonString(mvc, "Export Project", "Export Explanation");
+		String expenseItemUid = helper.createInitialExpenseItem(mvc, session, expenseUid, jsonString);
+
+		// login as fadmin
+		session = helper.loginUser(mvc, "fadmin", "password");
+
+		String result = mvc.perform(
+				post("/expenses/search/export").param("format", "CSV").contentType(MediaType.APPLICATION_JSON)
+				.content("{\"accountingText\":\"Export Csv Test\"}").session(session).with(csrf().asHeader()))
+				.andExpect(status().isOk()).andReturn().getResponse().getContentAsString();
+
+		String[] lines = result.split("\r\n");
+		assertTrue(lines[0].startsWith("expenseUid,date,state,accounting"));
+		assertTrue(result.contains(expenseUid + ","));
+		assertTrue(result.contains(expenseItemUid));
+		assertTrue(result.contains("Export Explanation"));
+	}
 }
@@ -0,0 +1,95 @@
+package ch.uzh.csg.reimbursement.model;
+
+import static ch.uzh.csg.reimbursement.model.NotificationFrequency.DAILY;
+import static ch.uzh.csg.reimbursement.model.NotificationFrequency.HOURLY;
+import static ch.uzh.csg.reimbursement.model.NotificationFrequency.IMMEDIATE;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+
+import java.util.Date;
+import java.util.GregorianCalendar;
+import java.util.HashSet;
+
+import org.junit.Test;
+
+public class UserTest {
+
+	private User user = new User("Peter", "Muster", "pmuster", "peter.muster@example.com", "Manager",
+			new HashSet<Role>());
+
+	@Test
+	public void testFirstNotificationIsDue() {
+
+		// when
+		boolean due = user.isNotificationDue(at(12, 0));
+
+		// then
+		assertThat(due, is(true));
+	}
+
+	@Test
+	public void testQuietHoursWrappingMidnightHoldBackTheNotification() {
+
+		// given
+		user.setQuietHours(22, 6);
+
+		// then
+		assertThat(user.isNotificationDue(at(21, 59)), is(true));
+		assertThat(user.isNotificationDue(at(22, 0)), is(false));
+		assertThat(user.isNotificationDue(at(0, 30)), is(false));
+		assertThat(user.isNotificationDue(at(5, 59)), is(false));
+		assertThat(user.isNotificationDue(at(6, 0)), is(true));
+	}
+
+	@Test
+	public void testQuietHoursWithinADayHoldBackTheNotification() {
+
+		// given
+		user.setQuietHours(12, 14);
+
+		// then
+		assertThat(user.isNotificationDue(at(11, 59)), is(true));
+		assertThat(user.isNotificationDue(at(13, 0)), is(false));
+		assertThat(user.isNotificationDue(at(14, 0)), is(true));
+	}
+
+	@Test
+	public void testImmediateNotificationIsAlwaysDue() {
+
+		// given
+		user.setNotificationFrequency(IMMEDIATE);
+		user.notificationSent(at(12, 0));
+
+		// then
+		assertThat(user.isNotificationDue(at(12, 0)), is(true));
+	}
+
+	@Test
+	public void testHourlyNotificationIsDueAfterAnHour() {
+
+		// given
+		user.setNotificationFrequency(HOURLY);
+		user.notificationSent(at(12, 0));
+
+		// then
+		assertThat(user.isNotificationDue(at(12, 59)), is(false));
+		assertThat(user.isNotificationDue(at(13, 0)), is(true));
+	}
+
+	@Test
+	public void testDailyNotificationIsDueAfterADay() {
+
+		// given
+		user.setNotificationFrequency(DAILY);
+		user.notificationSent(at(12, 0));
+
+		// then
+		assertThat(user.isNotificationDue(at(23, 59)), is(false));
+		assertThat(user.isNotificationDue(new Date(at(12, 0).getTime() + DAILY.getIntervalInMilliseconds())),
+				is(true));
+	}
+
+	private Date at(int hour, int minute) {
+		return new GregorianCalendar(2015, 5, 15, hour, minute).getTime();
+	}
+}
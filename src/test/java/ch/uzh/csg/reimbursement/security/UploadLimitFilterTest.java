@@ -0,0 +1,158 @@
+package ch.uzh.csg.reimbursement.security;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.notNullValue;
+import static org.hamcrest.Matchers.nullValue;
+
+import java.io.IOException;
+import java.util.Map;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.ServletRequest;
+import javax.servlet.ServletResponse;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.util.StreamUtils;
+import org.springframework.web.multipart.MultipartException;
+
+public class UploadLimitFilterTest {
+
+	private static final long SIGNATURE_LIMIT = 4096;
+	private static final int ABOVE_SIGNATURE_LIMIT = 8192;
+
+	private UploadLimitFilter filter;
+	private MockHttpServletResponse response;
+
+	@Before
+	@SuppressWarnings("unchecked")
+	public void setup() {
+		filter = new UploadLimitFilter();
+		response = new MockHttpServletResponse();
+
+		// the signature limit is lowered, all endpoints default to 10 MB
+		((Map<String, Long>) ReflectionTestUtils.getField(filter, "limits")).put("/user/signature", SIGNATURE_LIMIT);
+	}
+
+	@Test
+	public void testUploadIsRejectedByTheContentLengthOfItsPath() throws Exception {
+
+		// given
+		MockHttpServletRequest request = createUpload("/user/signature");
+		request.addHeader("Content-Length", ABOVE_SIGNATURE_LIMIT);
+		MockFilterChain filterChain = new MockFilterChain();
+
+		// when
+		filter.doFilter(request, response, filterChain);
+
+		// then
+		assertThat(response.getStatus(), is(400));
+		assertThat(response.getHeader("Connection"), is("close"));
+		assertThat(filterChain.getRequest(), is(nullValue()));
+	}
+
+	@Test
+	public void testSameUploadIsAcceptedByAPathWithAHigherLimit() throws Exception {
+
+		// given
+		MockHttpServletRequest request = createUpload("/expenses/expense-items/item-uid/attachments");
+		request.addHeader("Content-Length", ABOVE_SIGNATURE_LIMIT);
+		MockFilterChain filterChain = new MockFilterChain();
+
+		// when
+		filter.doFilter(request, response, filterChain);
+
+		// then
+		assertThat(response.getStatus(), is(200));
+		assertThat(filterChain.getRequest(), is(notNullValue()));
+	}
+
+	@Test
+	public void testUploadWithoutContentLengthIsAbortedWhileReading() throws Exception {
+
+		// given
+		MockHttpServletRequest request = createUpload("/user/signature");
+		request.setContent(new byte[ABOVE_SIGNATURE_LIMIT]);
+
+		// when
+		filter.doFilter(request, response, new ReadingFilterChain());
+
+		// then
+		assertThat(response.getStatus(), is(400));
+		assertThat(response.getHeader("Connection"), is("close"));
+	}
+
+	@Test
+	public void testUploadWithinTheLimitIsReadCompletely() throws Exception {
+
+		// given
+		MockHttpServletRequest request = createUpload("/user/signature");
+		request.setContent(new byte[(int) SIGNATURE_LIMIT]);
+
+		// when
+		filter.doFilter(request, response, new ReadingFilterChain());
+
+		// then
+		assertThat(response.getStatus(), is(200));
+	}
+
+	@Test
+	public void testChunkIsRejectedByItsContentLength() throws Exception {
+
+		// given
+		// reimbursement.upload.chunked.maxChunkSize is 1048576
+		MockHttpServletRequest request = new MockHttpServletRequest("PUT",
+				"/public/mobile/token/attachment/uploads/upload-id");
+		request.setContentType("application/octet-stream");
+		request.addHeader("Content-Length", 1048577);
+		MockFilterChain filterChain = new MockFilterChain();
+
+		// when
+		filter.doFilter(request, response, filterChain);
+
+		// then
+		assertThat(response.getStatus(), is(400));
+		assertThat(filterChain.getRequest(), is(nullValue()));
+	}
+
+	@Test(expected = MultipartException.class)
+	public void testOtherMultipartExceptionsAreNotMapped() throws Exception {
+
+		// given
+		MockHttpServletRequest request = createUpload("/user/signature");
+		FilterChain filterChain = new FilterChain() {
+			@Override
+			public void doFilter(ServletRequest request, ServletResponse response) {
+				throw new MultipartException("Could not parse multipart servlet request", new IOException());
+			}
+		};
+
+		// when
+		filter.doFilter(request, response, filterChain);
+	}
+
+	private MockHttpServletRequest createUpload(String path) {
+		MockHttpServletRequest request = new MockHttpServletRequest("POST", path);
+		request.setContentType("multipart/form-data; boundary=upload");
+		return request;
+	}
+
+	// Reads the whole body and wraps a failure like the multipart resolver
+	private static class ReadingFilterChain implements FilterChain {
+
+		@Override
+		public void doFilter(ServletRequest request, ServletResponse response) throws IOException, ServletException {
+			try {
+				StreamUtils.copyToByteArray(request.getInputStream());
+			} catch (IOException e) {
+				throw new MultipartException("Could not parse multipart servlet request", e);
+			}
+		}
+	}
+}
@@ -0,0 +1,156 @@
+package ch.uzh.csg.reimbursement.service;
+
+import static ch.uzh.csg.reimbursement.model.ExpenseState.TO_BE_ASSIGNED;
+import static ch.uzh.csg.reimbursement.model.ExpenseState.TO_SIGN_BY_USER;
+import static ch.uzh.csg.reimbursement.model.Role.FINANCE_ADMIN;
+import static ch.uzh.csg.reimbursement.model.Role.USER;
+import static java.util.Arrays.asList;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoMoreInteractions;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.List;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.runners.MockitoJUnitRunner;
+
+import ch.uzh.csg.reimbursement.application.mail.EmailTemplateRenderer;
+import ch.uzh.csg.reimbursement.application.mail.MailOutbox;
+import ch.uzh.csg.reimbursement.application.mail.NotificationReceiverBuffer;
+import ch.uzh.csg.reimbursement.dto.EmailHeaderInfo;
+import ch.uzh.csg.reimbursement.model.EmailReceiver;
+import ch.uzh.csg.reimbursement.model.NotificationSendJob;
+import ch.uzh.csg.reimbursement.model.Role;
+import ch.uzh.csg.reimbursement.model.User;
+import ch.uzh.csg.reimbursement.repository.EmailReceiverRepositoryProvider;
+import ch.uzh.csg.reimbursement.repository.ExpenseRepositoryProvider;
+import ch.uzh.csg.reimbursement.repository.UserRepositoryProvider;
+
+@RunWith(MockitoJUnitRunner.class)
+public class EmailServiceTest {
+
+	@InjectMocks
+	private EmailService service;
+
+	@Mock
+	private ExpenseRepositoryProvider expenseRepoProvider;
+
+	@Mock
+	private EmailReceiverRepositoryProvider emailReceiverProvider;
+
+	@Mock
+	private UserRepositoryProvider userProvider;
+
+	@Mock
+	private MailOutbox mailOutbox;
+
+	@Mock
+	private NotificationReceiverBuffer receiverBuffer;
+
+	@Mock
+	private EmailTemplateRenderer templateRenderer;
+
+	@Test
+	public void testSendOutEmailsLoadsAllCountsWithOneQuery() {
+
+		// given
+		EmailReceiver financeAdminReceiver = new EmailReceiver("fadmin");
+		EmailReceiver userReceiver = new EmailReceiver("junior");
+		given(emailReceiverProvider.findAll()).willReturn(asList(financeAdminReceiver, userReceiver));
+
+		User financeAdmin = mockUser("fadmin", FINANCE_ADMIN);
+		User user = mockUser("junior", USER);
+		given(userProvider.findAllByUids(asList("fadmin", "junior"))).willReturn(asList(financeAdmin, user));
+
+		List<Object[]> rows = new ArrayList<Object[]>();
+		rows.add(new Object[] { "fadmin", TO_BE_ASSIGNED, 0L, 0L, 0L, 2L });
+		rows.add(new Object[] { "fadmin", TO_SIGN_BY_USER, 1L, 0L, 0L, 0L });
+		given(expenseRepoProvider.countNotificationsOfEmailReceivers()).willReturn(rows);
+
+		given(templateRenderer.render(any(NotificationSendJob.class))).willReturn("<p>notification</p>");
+
+		// when
+		service.sendOutEmails();
+
+		// then
+		// only the finance admin has something to do
+		verify(mailOutbox, times(1)).enqueue(any(EmailHeaderInfo.class), eq("<p>notification</p>"));
+		verify(emailReceiverProvider).delete(financeAdminReceiver);
+		verify(emailReceiverProvider).delete(userReceiver);
+		verify(expenseRepoProvider).countNotificationsOfEmailReceivers();
+		verifyNoMoreInteractions(expenseRepoProvider);
+	}
+
+	@Test
+	public void testSendOutEmailsWithEmptyQueue() {
+
+		// given
+		given(emailReceiverProvider.findAll()).willReturn(new ArrayList<EmailReceiver>());
+
+		// when
+		service.sendOutEmails();
+
+		// then
+		verify(mailOutbox, never()).enqueue(any(EmailHeaderInfo.class), any(String.class));
+		verifyNoMoreInteractions(expenseRepoProvider);
+	}
+
+	@Test
+	public void testReceiverInQuietHoursStaysQueued() {
+
+		// given
+		EmailReceiver financeAdminReceiver = new EmailReceiver("fadmin");
+		given(emailReceiverProvider.findAll()).willReturn(asList(financeAdminReceiver));
+
+		User financeAdmin = mockUser("fadmin", FINANCE_ADMIN);
+		given(financeAdmin.isNotificationDue(any(Date.class))).willReturn(false);
+		given(userProvider.findAllByUids(asList("fadmin"))).willReturn(asList(financeAdmin));
+
+		List<Object[]> rows = new ArrayList<Object[]>();
+		rows.add(new Object[] { "fadmin", TO_BE_ASSIGNED, 0L, 0L, 0L, 2L });
+		given(expenseRepoProvider.countNotificationsOfEmailReceivers()).willReturn(rows);
+
+		// when
+		service.sendOutEmails();
+
+		// then
+		verify(receiverBuffer).flush();
+		verify(mailOutbox, never()).enqueue(any(EmailHeaderInfo.class), any(String.class));
+		verify(emailReceiverProvider, never()).delete(financeAdminReceiver);
+	}
+
+	@Test
+	public void testAddToQueueOnlyBuffersTheReceiver() {
+
+		// given
+		User user = mockUser("junior", USER);
+
+		// when
+		service.addToNotificationEmailReceiverQueue(user);
+		service.addToNotificationEmailReceiverQueue(user);
+
+		// then
+		verify(receiverBuffer, times(2)).add("junior");
+		verifyNoMoreInteractions(emailReceiverProvider);
+	}
+
+	private User mockUser(String uid, Role role) {
+		User user = mock(User.class);
+		given(user.getUid()).willReturn(uid);
+		given(user.getEmail()).willReturn(uid + "@example.com");
+		given(user.getRoles()).willReturn(new HashSet<Role>(asList(role)));
+		given(user.isNotificationDue(any(Date.class))).willReturn(true);
+		return user;
+	}
+}
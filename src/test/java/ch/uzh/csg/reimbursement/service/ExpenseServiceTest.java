@@ -5,6 +5,7 @@ import static java.lang.Boolean.TRUE;
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.Matchers.equalTo;
 import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
 import static org.mockito.BDDMockito.given;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.verify;
@@ -20,12 +21,17 @@ import org.mockito.Captor;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.runners.MockitoJUnitRunner;
+import org.springframework.test.util.ReflectionTestUtils;
 
+import ch.uzh.csg.reimbursement.dto.SearchExpenseDto;
 import ch.uzh.csg.reimbursement.model.Expense;
+import ch.uzh.csg.reimbursement.model.Role;
 import ch.uzh.csg.reimbursement.model.User;
 import ch.uzh.csg.reimbursement.model.exception.AccessException;
 import ch.uzh.csg.reimbursement.model.exception.ExpenseNotFoundException;
+import ch.uzh.csg.reimbursement.model.exception.SearchLimitViolationException;
 import ch.uzh.csg.reimbursement.repository.ExpenseRepositoryProvider;
+import ch.uzh.csg.reimbursement.repository.ExpenseSearchSpecification;
 
 @RunWith(MockitoJUnitRunner.class)
 public class ExpenseServiceTest {
@@ -45,6 +51,9 @@ public class ExpenseServiceTest {
 	@Captor
 	private ArgumentCaptor<Expense> argumentCaptorExpense;
 
+	@Captor
+	private ArgumentCaptor<ExpenseSearchSpecification> argumentCaptorSpecification;
+
 	@Ignore
 	@Test
 	public void testCreateExpense() {
@@ -133,4 +142,50 @@ public class ExpenseServiceTest {
 		// then
 		// throw ExpenseNotFoundException
 	}
+
+	@Test
+	public void testSearchOnlyPassesGivenCriteria() {
+
+		// given
+		SearchExpenseDto dto = new SearchExpenseDto();
+		dto.setLastName("Fahrer");
+		dto.setRole("PROF");
+		dto.setAccountingText("");
+		dto.setExpenseState("NOT_A_STATE");
+
+		// when
+		service.search(dto);
+
+		// then
+		verify(expenseRepository).search(argumentCaptorSpecification.capture());
+
+		ExpenseSearchSpecification specification = argumentCaptorSpecification.getValue();
+		assertThat(specification.getLastName(), is(equalTo("Fahrer")));
+		assertThat(specification.getRole(), is(equalTo(Role.PROF)));
+		assertThat(specification.getAccountingText(), is(nullValue()));
+		assertThat(specification.getStartTime(), is(nullValue()));
+		assertThat(specification.getEndTime(), is(nullValue()));
+		assertThat(specification.getState(), is(nullValue()));
+		assertThat(specification.getCostCategory(), is(nullValue()));
+	}
+
+	@Test(expected = SearchLimitViolationException.class)
+	public void testFullTextSearchRejectsANegativeLimit() {
+
+		// given
+		ReflectionTestUtils.setField(service, "maxFullTextResults", 200);
+
+		// when
+		service.searchFullText("travel", -1);
+	}
+
+	@Test(expected = SearchLimitViolationException.class)
+	public void testFullTextSearchRejectsALimitAboveTheMaximum() {
+
+		// given
+		ReflectionTestUtils.setField(service, "maxFullTextResults", 200);
+
+		// when
+		service.searchFullText("travel", 201);
+	}
 }
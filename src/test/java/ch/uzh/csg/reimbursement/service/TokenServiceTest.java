@@ -0,0 +1,105 @@
+package ch.uzh.csg.reimbursement.service;
+
+import static ch.uzh.csg.reimbursement.model.TokenType.ATTACHMENT_MOBILE;
+import static org.junit.Assert.fail;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+import java.util.Calendar;
+import java.util.GregorianCalendar;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.runners.MockitoJUnitRunner;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import ch.uzh.csg.reimbursement.application.token.MobileTokenRegistry;
+import ch.uzh.csg.reimbursement.model.Token;
+import ch.uzh.csg.reimbursement.model.exception.TokenExpiredException;
+import ch.uzh.csg.reimbursement.repository.TokenRepositoryProvider;
+
+@RunWith(MockitoJUnitRunner.class)
+public class TokenServiceTest {
+
+	private static final int EXPIRATION = 1200000;
+
+	@InjectMocks
+	private TokenService service;
+
+	@Mock
+	private TokenRepositoryProvider tokenRepository;
+
+	@Mock
+	private UserService userService;
+
+	@Before
+	public void setup() {
+		MobileTokenRegistry registry = new MobileTokenRegistry();
+		ReflectionTestUtils.setField(registry, "repository", tokenRepository);
+		ReflectionTestUtils.setField(registry, "signatureMobileExpirationInMilliseconds", EXPIRATION);
+		ReflectionTestUtils.setField(registry, "expenseItemAttachmentMobileExpirationInMilliseconds", EXPIRATION);
+		ReflectionTestUtils.setField(registry, "tickInMilliseconds", 1000L);
+		registry.init();
+
+		ReflectionTestUtils.setField(service, "mobileTokenRegistry", registry);
+		ReflectionTestUtils.setField(service, "tokenExpirationInMilliseconds", EXPIRATION);
+	}
+
+	@Test
+	public void testRegisteredValidTokenIsCheckedWithoutAQuery() {
+
+		// given
+		Token token = new Token(ATTACHMENT_MOBILE, null, "item-uid");
+		service.createToken(token);
+
+		// when
+		service.checkValidMobileToken(token.getUid(), ATTACHMENT_MOBILE);
+
+		// then
+		verify(tokenRepository, never()).findByUid(anyString());
+	}
+
+	@Test
+	public void testRegisteredExpiredTokenIsRejectedWithoutAQuery() {
+
+		// given
+		Token token = new Token(ATTACHMENT_MOBILE, null, "item-uid");
+		Calendar created = new GregorianCalendar();
+		created.add(Calendar.MILLISECOND, -EXPIRATION - 1000);
+		ReflectionTestUtils.setField(token, "created", created);
+		service.createToken(token);
+
+		// when
+		try {
+			service.checkValidMobileToken(token.getUid(), ATTACHMENT_MOBILE);
+			fail("The expired token has been accepted.");
+		} catch (TokenExpiredException e) {
+			// expected
+		}
+
+		// then
+		verify(tokenRepository, never()).findByUid(anyString());
+	}
+
+	@Test
+	public void testUnknownTokenIsCheckedInTheDatabaseOnce() {
+
+		// given
+		// e.g. created by another instance
+		Token token = new Token(ATTACHMENT_MOBILE, null, "item-uid");
+		given(tokenRepository.findByUid(token.getUid())).willReturn(token);
+
+		// when
+		service.checkValidMobileToken(token.getUid(), ATTACHMENT_MOBILE);
+		service.checkValidMobileToken(token.getUid(), ATTACHMENT_MOBILE);
+
+		// then
+		verify(tokenRepository, times(1)).findByUid(token.getUid());
+	}
+}